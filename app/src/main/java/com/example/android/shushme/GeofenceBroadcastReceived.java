@@ -1,18 +1,24 @@
 package com.example.android.shushme;
 
-import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.BitmapFactory;
-import android.media.AudioManager;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 
+import com.example.android.shushme.metrics.Metrics;
+import com.example.android.shushme.provider.ScheduleCache;
+import com.example.android.shushme.schedule.ScheduleRules;
+import com.example.android.shushme.transition.HysteresisConfig;
 import com.example.android.shushme.util.Util;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Created by Yuri Levenhagen on 2017-12-27 as part
  * of the Udacity-Google Advanced Android App Development course.
@@ -37,31 +43,142 @@ public class GeofenceBroadcastReceived extends BroadcastReceiver {
 
     public static final String LOG_TAG = GeofenceBroadcastReceived.class.getCanonicalName();
     public static final int RINGER_NOTIFICATION_ID = 100;
+    // Sent by an alarm once held back exits are due
+    public static final String ACTION_FLUSH_TRANSITIONS =
+            "com.example.android.shushme.action.FLUSH_TRANSITIONS";
+
+    // Transitions are handled one at a time, in the order they were received
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * A broadcast kept alive while it's handled in the background
+     */
+    interface AsyncBroadcast {
+        /**
+         * Handles the broadcast, on the background thread
+         */
+        void handle();
+
+        /**
+         * Lets the broadcast go (e.g. finishes its PendingResult), even if handling it failed
+         */
+        void finish();
+    }
 
     /**
-     * This will be invoked when a broadcast is made once the user crosses the boundary of the GeoFence
+     * This will be invoked when a broadcast is made once the user crosses the boundary of the GeoFence.
+     * The broadcast is kept alive (goAsync) while the transition is handled on a background thread,
+     * so bursts of transitions never block the main thread. The ringer notifications are held
+     * until the last queued transition is handled, so a burst posts a single update before its
+     * last broadcast finishes.
      * @param context - The context that caused the trigger
      * @param intent - The intent itself
      */
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onReceive(Context context, final Intent intent) {
+        final long receivedAt = System.nanoTime();
+        final PendingResult pendingResult = goAsync();
+        final Context appContext = context.getApplicationContext();
+        Util.holdRingerNotifications();
+
+        dispatch(sExecutor, new AsyncBroadcast() {
+            @Override
+            public void handle() {
+                boolean isRingerChanged;
+                if (ACTION_FLUSH_TRANSITIONS.equals(intent.getAction())) {
+                    isRingerChanged = RingerController.getInstance(appContext).flush();
+                } else {
+                    Metrics.TRANSITIONS_RECEIVED.increment();
+                    isRingerChanged = handleTransition(appContext, intent);
+                    Metrics.TRANSITION_LATENCY.recordSince(receivedAt);
+                }
+                if (isRingerChanged) Metrics.RINGER_CHANGE_LATENCY.recordSince(receivedAt);
+            }
+
+            @Override
+            public void finish() {
+                Util.releaseRingerNotifications(appContext);
+                pendingResult.finish();
+            }
+        });
+    }
+
+    /**
+     * Queues a broadcast on the executor, finishing it once handled. Split from onReceive,
+     * so the queueing runs without a PendingResult.
+     * @param executor - Where the broadcast is handled (a single thread keeps the order)
+     * @param broadcast - The broadcast to be handled
+     */
+    static void dispatch(Executor executor, final AsyncBroadcast broadcast) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    broadcast.handle();
+                } finally {
+                    broadcast.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Changes the ringer mode according to the transition. Runs on the background thread.
+     * @param context - The application context
+     * @param intent - The intent sent by Play Services
+     * @return - Whether the ringer mode was changed
+     */
+    private static boolean handleTransition(Context context, Intent intent) {
         GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+        if (event == null || event.hasError()) {
+            Log.e(LOG_TAG, "Invalid geofence event received");
+            return false;
+        }
+
+        // Every fence triggered by this event is applied in a single pass
+        List<Geofence> triggering = event.getTriggeringGeofences();
+        if (triggering == null || triggering.isEmpty()) {
+            Log.i(LOG_TAG, "Geofence transition received without triggering geofences");
+            return false;
+        }
+        List<String> fenceIds = new ArrayList<>(triggering.size());
+        for (Geofence geofence : triggering) {
+            fenceIds.add(geofence.getRequestId());
+        }
 
         switch (event.getGeofenceTransition()) {
             case Geofence.GEOFENCE_TRANSITION_ENTER:
-                Util.setRingerMode(context, AudioManager.RINGER_MODE_SILENT);
-                Util.notifyUserOfRingerChange(context, true);
-                break;
             case Geofence.GEOFENCE_TRANSITION_DWELL:
-                Util.setRingerMode(context, AudioManager.RINGER_MODE_SILENT);
-                Util.notifyUserOfRingerChange(context, true);
-                break;
+                // A fence may still be registered right after its window closed. Exits are
+                // always let through, so the ringer is never left silenced.
+                if (!keepActive(context, fenceIds)) {
+                    Log.i(LOG_TAG, "Geofence transition received outside of the places' schedules");
+                    return false;
+                }
+                // Falls through
             case Geofence.GEOFENCE_TRANSITION_EXIT:
-                Util.setRingerMode(context, AudioManager.RINGER_MODE_NORMAL);
-                Util.notifyUserOfRingerChange(context, false);
-                break;
+                return RingerController.getInstance(context)
+                        .onTransition(event.getGeofenceTransition(), fenceIds);
             default:
                 Log.i(LOG_TAG, "Unknown geofence transition received");
+                return false;
+        }
+    }
+
+    /**
+     * Drops the fences of the places which are outside of their quiet schedule
+     * @param context - The application context
+     * @param fenceIds - The request ids of the triggering fences. Changed in place.
+     * @return - Whether any fence is left
+     */
+    private static boolean keepActive(Context context, List<String> fenceIds) {
+        ScheduleRules rules = ScheduleCache.read(context.getContentResolver());
+        long now = System.currentTimeMillis();
+        for (int i = fenceIds.size() - 1; i >= 0; i--) {
+            if (!rules.isActive(HysteresisConfig.placeIdOf(fenceIds.get(i)), now)) {
+                fenceIds.remove(i);
+            }
         }
+        return !fenceIds.isEmpty();
     }
 }
@@ -0,0 +1,381 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.example.android.shushme.fence.GeofenceBackend;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.util.Backoff;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.List;
+
+/**
+ * Owns the geofences for the whole process, so the activity, receivers and services can all
+ * change them without a UI bound GoogleApiClient.
+ * <p>
+ * It connects its own client when there's something to do, and disconnects it once idle.
+ * Requests made while connecting (or before the previous ones were applied) are batched:
+ * only the latest places and the strongest command are kept, and applied as a single
+ * reconciliation. Add/remove calls failing with a transient status are retried with backoff.
+ * <p>
+ * The public methods can be called from any thread. The work runs on a dedicated thread,
+ * which is also where the client delivers its callbacks.
+ */
+public class GeofenceManager implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener, Geofencing.OnResultListener {
+
+    private static final String LOG_TAG = GeofenceManager.class.getCanonicalName();
+
+    // How long the client stays connected once there's nothing left to do (in milliseconds)
+    private static final long IDLE_DISCONNECT_DELAY = 60 * 1000;
+    // Retries of failed connections and add/remove calls (in milliseconds)
+    private static final long INITIAL_RETRY_DELAY = 2 * 1000;
+    private static final long MAX_RETRY_DELAY = 10 * 60 * 1000;
+    private static final int MAX_RETRIES = 8;
+
+    // What a request asks for, besides new places (see mergeCommands)
+    private static final int COMMAND_NONE = 0;
+    private static final int COMMAND_REGISTER = 1;
+    private static final int COMMAND_RENEW = 2;
+    private static final int COMMAND_UNREGISTER = 3;
+
+    private static GeofenceManager sInstance;
+
+    private final Handler mHandler;
+    private final GoogleApiClient mApiClient;
+    private final Geofencing mGeofencing;
+    private final Backoff mConnectBackoff;
+    private final Backoff mResultBackoff;
+
+    // Guarded by this
+    private List<PlaceSnapshot> mPendingPlaces;
+    private int mPendingCommand = COMMAND_NONE;
+    private boolean mPendingForget;
+    private boolean mIsApplyScheduled;
+    private boolean mIsRetryScheduled;
+    private boolean mIsIdle = true;
+
+    // Only used on the handler thread
+    private boolean mIsRegistered;
+    private boolean mHasPlaces;
+
+    /**
+     * Applies the pending requests, connecting the client first if needed
+     */
+    private final Runnable mApply = new Runnable() {
+        @Override
+        public void run() {
+            if (!mApiClient.isConnected()) {
+                // The requests keep piling up until onConnected, then they're applied at once
+                if (!mApiClient.isConnecting()) mApiClient.connect();
+                return;
+            }
+            applyPending();
+        }
+    };
+
+    /**
+     * Reconciles again, so the changes of a failed call are made once more
+     */
+    private final Runnable mRetry = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GeofenceManager.this) {
+                mIsRetryScheduled = false;
+            }
+            enqueue(null, mIsRegistered ? COMMAND_REGISTER : COMMAND_UNREGISTER, false);
+        }
+    };
+
+    private final Runnable mDisconnect = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GeofenceManager.this) {
+                if (!mIsIdle) return;
+            }
+            // The location updates would be dropped along with the connection
+            if (mGeofencing.isTrackingLocation()) return;
+            mApiClient.disconnect();
+        }
+    };
+
+    /**
+     * Gets the GeofenceManager of the process, creating it on first use
+     * @param context - The context of the caller
+     * @return - The GeofenceManager
+     */
+    public static synchronized GeofenceManager getInstance(Context context) {
+        if (sInstance == null) sInstance = new GeofenceManager(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private GeofenceManager(Context context) {
+        HandlerThread thread = new HandlerThread(LOG_TAG);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+
+        mApiClient = new GoogleApiClient.Builder(context)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(LocationServices.API)
+                .setHandler(mHandler)
+                .build();
+        mGeofencing = new Geofencing(context, mApiClient, thread.getLooper());
+        mGeofencing.setOnResultListener(this);
+        mConnectBackoff = new Backoff(INITIAL_RETRY_DELAY, MAX_RETRY_DELAY, MAX_RETRIES);
+        mResultBackoff = new Backoff(INITIAL_RETRY_DELAY, MAX_RETRY_DELAY, MAX_RETRIES);
+    }
+
+    /**
+     * Sets the places to be fenced
+     * @param places - The stored places (only the enabled ones are fenced)
+     * @param register - Whether the geofences should be registered with the new places
+     */
+    public void setPlaces(List<PlaceSnapshot> places, boolean register) {
+        enqueue(places, register ? COMMAND_REGISTER : COMMAND_NONE, false);
+    }
+
+    /**
+     * Registers the geofences of the places last set
+     */
+    public void registerGeofences() {
+        enqueue(null, COMMAND_REGISTER, false);
+    }
+
+    /**
+     * Registers every geofence again, restarting their expiration
+     * @param places - The stored places (only the enabled ones are fenced)
+     * @param wereDropped - Whether Play Services dropped every geofence (e.g. on reboot)
+     */
+    public void renewGeofences(List<PlaceSnapshot> places, boolean wereDropped) {
+        enqueue(places, COMMAND_RENEW, wereDropped);
+    }
+
+    /**
+     * Unregisters every geofence
+     */
+    public void unregisterGeofences() {
+        enqueue(null, COMMAND_UNREGISTER, false);
+    }
+
+    /**
+     * Blocks until every request was applied and answered (failed ones retried), or the time
+     * is up. Must not be called from the main thread.
+     * @param timeout - How long to wait at most (in milliseconds)
+     * @return - Whether it became idle within the time
+     */
+    public synchronized boolean awaitIdle(long timeout) {
+        long deadline = SystemClock.elapsedRealtime() + timeout;
+        while (!mIsIdle) {
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) return false;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues a request, batching it with any other which wasn't applied yet
+     * @param places - The new places (nullable, if they didn't change)
+     * @param command - One of the COMMAND_* constants
+     * @param forget - Whether the registered geofences should be forgotten first
+     */
+    private synchronized void enqueue(@Nullable List<PlaceSnapshot> places, int command, boolean forget) {
+        if (places != null) mPendingPlaces = places;
+        mPendingCommand = mergeCommands(mPendingCommand, command);
+        mPendingForget |= forget;
+        mIsIdle = false;
+        mHandler.removeCallbacks(mDisconnect);
+
+        // Applied along with the pending ones
+        if (mIsApplyScheduled) return;
+        mIsApplyScheduled = true;
+        mHandler.post(mApply);
+    }
+
+    /**
+     * Merges a command into the pending one. Renewing also registers, and whatever was
+     * asked last between registering and unregistering wins.
+     */
+    private static int mergeCommands(int pending, int command) {
+        if (command == COMMAND_NONE) return pending;
+        if (command == COMMAND_REGISTER && pending == COMMAND_RENEW) return pending;
+        return command;
+    }
+
+    /**
+     * Applies the pending requests. Runs on the handler thread, with the client connected.
+     */
+    private void applyPending() {
+        List<PlaceSnapshot> places;
+        int command;
+        boolean forget;
+        synchronized (this) {
+            places = mPendingPlaces;
+            command = mPendingCommand;
+            forget = mPendingForget;
+            mPendingPlaces = null;
+            mPendingCommand = COMMAND_NONE;
+            mPendingForget = false;
+            mIsApplyScheduled = false;
+        }
+
+        if (places != null) {
+            mGeofencing.updateGeofencesList(places);
+            mHasPlaces = true;
+        }
+        if (forget) mGeofencing.forgetRegisteredGeofences();
+
+        switch (command) {
+            case COMMAND_REGISTER:
+                mIsRegistered = true;
+                // Registering no places would remove every registered geofence, so it waits
+                // for the places to be set
+                if (mHasPlaces) mGeofencing.registerGeofences();
+                break;
+            case COMMAND_RENEW:
+                mIsRegistered = true;
+                mGeofencing.renewGeofences();
+                break;
+            case COMMAND_UNREGISTER:
+                mIsRegistered = false;
+                mGeofencing.unregisterGeofences();
+                break;
+            default:
+                // New places are fenced right away once registered
+                if (places != null && mIsRegistered) mGeofencing.registerGeofences();
+        }
+        checkIdle();
+    }
+
+    @Override
+    public void onConnected(@Nullable Bundle bundle) {
+        Log.d(LOG_TAG, "Google API client connection established");
+        synchronized (this) {
+            mConnectBackoff.reset();
+            if (!mIsApplyScheduled) return;
+        }
+        applyPending();
+    }
+
+    @Override
+    public void onConnectionSuspended(int i) {
+        // The client reconnects by itself
+        Log.d(LOG_TAG, "Google API client connection suspended");
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        Log.e(LOG_TAG, String.format("Google API client connection failed: %s",
+                connectionResult.toString()));
+
+        synchronized (this) {
+            long delay = mConnectBackoff.nextDelay();
+            if (delay >= 0) {
+                mHandler.postDelayed(mApply, delay);
+                return;
+            }
+
+            // Gives up on the pending requests, the next one connects again
+            Log.e(LOG_TAG, "Giving up connecting the Google API client");
+            mConnectBackoff.reset();
+            mPendingPlaces = null;
+            mPendingCommand = COMMAND_NONE;
+            mPendingForget = false;
+            mIsApplyScheduled = false;
+        }
+        checkIdle();
+    }
+
+    /**
+     * Called once an add/remove call reported its status, after the geofences were rolled
+     * back if it failed. Transient failures are retried with backoff.
+     * @param statusCode - The status of the call
+     */
+    @Override
+    public void onGeofencingResult(int statusCode) {
+        synchronized (this) {
+            if (statusCode == GeofenceBackend.STATUS_SUCCESS) {
+                mResultBackoff.reset();
+            } else if (!isTransient(statusCode)) {
+                Log.e(LOG_TAG, String.format("Not retrying geofences: %d", statusCode));
+            } else if (!mIsRetryScheduled) {
+                long delay = mResultBackoff.nextDelay();
+                if (delay >= 0) {
+                    mIsRetryScheduled = true;
+                    mHandler.postDelayed(mRetry, delay);
+                } else {
+                    Log.e(LOG_TAG, "Giving up retrying geofences");
+                    mResultBackoff.reset();
+                }
+            }
+        }
+        checkIdle();
+    }
+
+    /**
+     * Returns whether a failed call is worth retrying later on
+     * @param statusCode - The status of the failed call
+     * @return - Whether the status is likely to change by itself
+     */
+    private static boolean isTransient(int statusCode) {
+        switch (statusCode) {
+            case CommonStatusCodes.INTERNAL_ERROR:
+            case CommonStatusCodes.INTERRUPTED:
+            case CommonStatusCodes.NETWORK_ERROR:
+            case CommonStatusCodes.TIMEOUT:
+            // The location is turned off, which the user may undo
+            case GeofenceBackend.STATUS_GEOFENCE_NOT_AVAILABLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Wakes up awaitIdle() callers, and schedules the disconnection, once there's nothing left
+     * to apply, answer or retry
+     */
+    private synchronized void checkIdle() {
+        if (mIsApplyScheduled || mIsRetryScheduled || mGeofencing.hasPendingCalls()) return;
+
+        mIsIdle = true;
+        notifyAll();
+        mHandler.removeCallbacks(mDisconnect);
+        mHandler.postDelayed(mDisconnect, IDLE_DISCONNECT_DELAY);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the geofences currently registered on Google Play Services, so a refresh
+ * only adds and removes what actually changed instead of re-registering everything.
+ * <p>
+ * Each registered request id is stored along with a signature of its parameters
+ * (coordinates, radius, transitions...), so a geofence which changed is added again.
+ * The state is persisted, so it survives the process being killed.
+ */
+class GeofenceReconciler {
+
+    private static final String PREFERENCES_NAME = "registered_geofences";
+
+    private final Context mContext;
+    private SharedPreferences mPreferences;
+    private Map<String, String> mRegistered;
+
+    /**
+     * The changes needed to go from the registered geofences to the desired ones
+     */
+    static class Diff {
+        // Request ids to be added (or added again, as their parameters changed)
+        final List<String> added = new ArrayList<>();
+        // Request ids to be removed
+        final List<String> removed = new ArrayList<>();
+
+        boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    GeofenceReconciler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Loads the persisted state on first use, so it's read on whichever thread reconciles
+     * (the refresh pipeline's background thread) rather than where this is constructed
+     */
+    private void ensureLoaded() {
+        if (mRegistered != null) return;
+
+        mPreferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mRegistered = new HashMap<>();
+        for (Map.Entry<String, ?> entry : mPreferences.getAll().entrySet()) {
+            mRegistered.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+    }
+
+    /**
+     * Computes what must be added and removed to register exactly the desired geofences
+     * @param desired - The desired geofences, as request id to signature
+     * @return - The Diff against the registered geofences
+     */
+    synchronized Diff diff(Map<String, String> desired) {
+        ensureLoaded();
+        Diff diff = new Diff();
+        for (Map.Entry<String, String> entry : desired.entrySet()) {
+            String registeredSignature = mRegistered.get(entry.getKey());
+            if (registeredSignature == null || !registeredSignature.equals(entry.getValue())) {
+                diff.added.add(entry.getKey());
+            }
+        }
+        for (String requestId : mRegistered.keySet()) {
+            if (!desired.containsKey(requestId)) diff.removed.add(requestId);
+        }
+        return diff;
+    }
+
+    /**
+     * Records geofences as registered
+     * @param requestIds - The request ids which were added
+     * @param signatures - The signatures of (at least) the added request ids
+     */
+    synchronized void markAdded(Collection<String> requestIds, Map<String, String> signatures) {
+        ensureLoaded();
+        SharedPreferences.Editor editor = mPreferences.edit();
+        for (String requestId : requestIds) {
+            String signature = signatures.get(requestId);
+            mRegistered.put(requestId, signature);
+            editor.putString(requestId, signature);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Records geofences as no longer registered
+     * @param requestIds - The request ids which were removed
+     */
+    synchronized void markRemoved(Collection<String> requestIds) {
+        ensureLoaded();
+        SharedPreferences.Editor editor = mPreferences.edit();
+        for (String requestId : requestIds) {
+            mRegistered.remove(requestId);
+            editor.remove(requestId);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Forgets every registered geofence (e.g. once they were all removed at once)
+     */
+    synchronized void clear() {
+        ensureLoaded();
+        mRegistered.clear();
+        mPreferences.edit().clear().apply();
+    }
+
+    /**
+     * @return - A copy of the registered geofences, as request id to signature
+     */
+    synchronized Map<String, String> getRegistered() {
+        ensureLoaded();
+        return new HashMap<>(mRegistered);
+    }
+}
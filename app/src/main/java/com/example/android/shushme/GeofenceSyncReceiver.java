@@ -0,0 +1,150 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.content.WakefulBroadcastReceiver;
+
+import com.example.android.shushme.util.Util;
+
+/**
+ * Brings the geofences back whenever Play Services may have dropped them: once the device
+ * boots, once the app is updated, and periodically, before they expire. It also applies
+ * the places' quiet schedules, whenever a window opens or closes and whenever the clock or
+ * the time zone changes.
+ * The work itself is handed to the GeofenceSyncService, holding a wake lock until it's done.
+ */
+public class GeofenceSyncReceiver extends WakefulBroadcastReceiver {
+
+    // Sent by a repeating alarm, so the geofences are renewed before they expire
+    public static final String ACTION_RENEW_GEOFENCES =
+            "com.example.android.shushme.action.RENEW_GEOFENCES";
+    // How often the geofences are renewed (in milliseconds). Half their lifetime, as the
+    // inexact alarm may be delivered late.
+    private static final long RENEW_INTERVAL = Geofencing.GEOFENCE_TIMEOUT / 2;
+    // Sent by an alarm once a schedule window opens or closes
+    public static final String ACTION_APPLY_SCHEDULES =
+            "com.example.android.shushme.action.APPLY_SCHEDULES";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        boolean wereDropped = Intent.ACTION_BOOT_COMPLETED.equals(action)
+                || Intent.ACTION_MY_PACKAGE_REPLACED.equals(action);
+        // The windows are in local time, so they move along with the clock
+        boolean isScheduleChange = ACTION_APPLY_SCHEDULES.equals(action)
+                || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action);
+        if (!wereDropped && !isScheduleChange && !ACTION_RENEW_GEOFENCES.equals(action)) return;
+
+        // Nothing to bring back if the user turned the geofences off
+        if (!Util.isGeofencingEnabled(context)) return;
+
+        // Alarms don't survive a reboot either (the schedule's alarm is set by the service)
+        if (wereDropped) schedule(context, true);
+
+        startWakefulService(context, new Intent(context, GeofenceSyncService.class)
+                .setAction(isScheduleChange ? ACTION_APPLY_SCHEDULES : ACTION_RENEW_GEOFENCES)
+                .putExtra(GeofenceSyncService.EXTRA_WERE_DROPPED, wereDropped));
+    }
+
+    /**
+     * Schedules the periodic renewal of the geofences
+     * @param context - The context of the caller
+     * @param replace - Whether an existing schedule is replaced. Otherwise it's kept as is,
+     *                so calling this again doesn't keep postponing the renewal.
+     */
+    public static void schedule(Context context, boolean replace) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+        if (!replace && buildRenewIntent(context, PendingIntent.FLAG_NO_CREATE) != null) return;
+
+        alarmManager.setInexactRepeating(
+                AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                SystemClock.elapsedRealtime() + RENEW_INTERVAL,
+                RENEW_INTERVAL,
+                buildRenewIntent(context, PendingIntent.FLAG_UPDATE_CURRENT)
+        );
+    }
+
+    /**
+     * Sets the alarm applying the schedules at their next boundary, replacing the previous one.
+     * The alarm is exact (where the platform allows it), so a window's fences aren't late.
+     * @param context - The context of the caller
+     * @param time - When the next window opens or closes (epoch, in milliseconds), or
+     *             Long.MAX_VALUE to cancel the alarm
+     */
+    public static void scheduleBoundary(Context context, long time) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+
+        PendingIntent pendingIntent = buildBoundaryIntent(context);
+        if (time == Long.MAX_VALUE) {
+            alarmManager.cancel(pendingIntent);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, time, pendingIntent);
+        }
+    }
+
+    /**
+     * Cancels the periodic renewal of the geofences, and the schedule's alarm
+     * @param context - The context of the caller
+     */
+    public static void cancel(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pendingIntent = buildRenewIntent(context, PendingIntent.FLAG_UPDATE_CURRENT);
+        if (alarmManager != null) {
+            alarmManager.cancel(pendingIntent);
+            alarmManager.cancel(buildBoundaryIntent(context));
+        }
+        // So schedule() no longer finds it
+        pendingIntent.cancel();
+    }
+
+    /**
+     * Builds the PendingIntent sent by the renewal alarm
+     * @param context - The context of the caller
+     * @param flags - The PendingIntent flags
+     * @return - The PendingIntent (null if FLAG_NO_CREATE was passed and there's none)
+     */
+    private static PendingIntent buildRenewIntent(Context context, int flags) {
+        Intent intent = new Intent(context, GeofenceSyncReceiver.class)
+                .setAction(ACTION_RENEW_GEOFENCES);
+        return PendingIntent.getBroadcast(context, 0, intent, flags);
+    }
+
+    /**
+     * Builds the PendingIntent sent by the schedule's alarm
+     * @param context - The context of the caller
+     * @return - The PendingIntent
+     */
+    private static PendingIntent buildBoundaryIntent(Context context) {
+        Intent intent = new Intent(context, GeofenceSyncReceiver.class)
+                .setAction(ACTION_APPLY_SCHEDULES);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
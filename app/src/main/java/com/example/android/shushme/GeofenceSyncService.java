@@ -0,0 +1,90 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.util.Log;
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.provider.PlaceCache;
+import com.example.android.shushme.provider.ScheduleCache;
+import com.example.android.shushme.schedule.ScheduleRules;
+import com.example.android.shushme.util.Util;
+
+import java.util.List;
+
+/**
+ * Registers the stored geofences again without any UI: the places are read from the local
+ * database (no Places API calls) and handed to the GeofenceManager, which is awaited before
+ * the wake lock is released. Only the places within their quiet schedule are fenced, and the
+ * alarm at the schedule's next boundary is set again.
+ */
+public class GeofenceSyncService extends IntentService {
+
+    private static final String LOG_TAG = GeofenceSyncService.class.getCanonicalName();
+    // Whether Play Services dropped every geofence (reboot, app update) rather than them expiring
+    static final String EXTRA_WERE_DROPPED = "were_dropped";
+    // How long to wait for the geofences to be registered (in milliseconds)
+    private static final long SYNC_TIMEOUT = 20 * 1000;
+
+    public GeofenceSyncService() {
+        super(GeofenceSyncService.class.getSimpleName());
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) return;
+        try {
+            syncGeofences(GeofenceSyncReceiver.ACTION_APPLY_SCHEDULES.equals(intent.getAction()),
+                    intent.getBooleanExtra(EXTRA_WERE_DROPPED, false));
+        } finally {
+            GeofenceSyncReceiver.completeWakefulIntent(intent);
+        }
+    }
+
+    /**
+     * Registers the geofences of the stored places
+     * @param isScheduleChange - Whether only the places' schedules changed, so only the
+     *                         geofences of the places entering or leaving them are changed
+     * @param wereDropped - Whether Play Services holds none of the previously registered ones
+     */
+    private void syncGeofences(boolean isScheduleChange, boolean wereDropped) {
+        // The user may have turned them off since this was scheduled
+        if (!Util.isGeofencingEnabled(this)) return;
+
+        List<PlaceSnapshot> places = PlaceCache.read(getContentResolver(), null);
+        ScheduleRules rules = ScheduleCache.read(getContentResolver());
+        long now = System.currentTimeMillis();
+        places = rules.filterActive(places, now);
+        GeofenceSyncReceiver.scheduleBoundary(this, rules.getNextBoundary(now));
+
+        GeofenceManager manager = GeofenceManager.getInstance(this);
+        if (isScheduleChange) {
+            manager.setPlaces(places, true);
+        } else {
+            manager.renewGeofences(places, wereDropped);
+        }
+        // Retries go on without the wake lock, as long as the process lives
+        if (!manager.awaitIdle(SYNC_TIMEOUT)) {
+            Log.w(LOG_TAG, "Geofences not registered yet, releasing the wake lock anyway");
+        }
+    }
+}
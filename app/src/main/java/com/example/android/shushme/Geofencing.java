@@ -1,23 +1,31 @@
 package com.example.android.shushme;
 
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
-import android.support.annotation.NonNull;
+import android.location.Location;
+import android.os.Looper;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.example.android.shushme.fence.FenceSpec;
+import com.example.android.shushme.fence.FenceTuning;
+import com.example.android.shushme.fence.GeofenceBackend;
+import com.example.android.shushme.fence.GeofenceSelection;
+import com.example.android.shushme.fence.PlaceFences;
+import com.example.android.shushme.metrics.Counter;
+import com.example.android.shushme.metrics.LatencyHistogram;
+import com.example.android.shushme.metrics.Metrics;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResults;
-import com.google.android.gms.common.api.Result;
-import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.location.Geofence;
-import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.places.Place;
-import com.google.android.gms.location.places.PlaceBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Yuri Levenhagen on 2017-12-27 as part
@@ -39,154 +47,369 @@ import java.util.List;
  * limitations under the License.
  */
 
-public class Geofencing implements ResultCallback {
+/**
+ * Builds and registers the geofences of the stored places.
+ * The public methods are synchronized, as they may be called from other threads than the
+ * GeofenceManager's, which the location updates are delivered on as well.
+ */
+public class Geofencing implements GeofenceBackend.Callback, LocationListener {
 
     private static final String LOG_TAG = Geofence.class.getCanonicalName();
     // Limits the Geofence lifetime 10 hours (in miliseconds)
-    private static final int GEOFENCE_TIMEOUT = 10 * 60 * 60 * 1000;
-    // Determines the radius of the geofence (in meters)
+    static final int GEOFENCE_TIMEOUT = 10 * 60 * 60 * 1000;
+    // The smallest radius of a geofence, for places which have none of their own (in meters)
     private static final int GEOFENCE_RADIUS = 20;
+    // The platform rejects an addGeofences call once the app holds more geofences than this
+    public static final int MAX_GEOFENCES = 100;
+    // How far the device may move before the nearest places are selected again (in meters)
+    public static final float DEFAULT_RESELECT_DISTANCE = 1000;
+    // How often the location is checked while waiting to select again (in milliseconds)
+    private static final long LOCATION_UPDATE_INTERVAL = 5 * 60 * 1000;
 
     private GoogleApiClient mApiClient;
+    private GeofenceBackend mBackend;
     private Context mContext;
-    private List<Geofence> mGeofences;
-    private PendingIntent mGeofencePendingIntent;
+    // Where the location updates are delivered
+    private Looper mLooper;
+    private GeofenceReconciler mReconciler;
+    // The desired geofences
+    private GeofenceSelection mSelection;
+    private int mMaxGeofences = MAX_GEOFENCES;
+    private float mReselectDistance = DEFAULT_RESELECT_DISTANCE;
+    private volatile boolean mIsTrackingLocation;
+    private HysteresisConfig mHysteresis = HysteresisConfig.DEFAULT;
+    // Add/remove calls which haven't reported their result yet
+    private final AtomicInteger mPendingCalls = new AtomicInteger();
+    private volatile OnResultListener mResultListener;
 
-    public Geofencing(Context context, GoogleApiClient apiClient) {
+    /**
+     * Receives the status of every add/remove call, once the geofences were rolled back if it failed
+     */
+    public interface OnResultListener {
+        void onGeofencingResult(int statusCode);
+    }
+
+    /**
+     * @param context - The context of the caller
+     * @param apiClient - The client used for location updates
+     * @param looper - The thread the location updates are delivered on (the owner's thread)
+     */
+    public Geofencing(Context context, GoogleApiClient apiClient, Looper looper) {
+        this(context, apiClient, looper, new PlayGeofenceBackend(context, apiClient));
+    }
+
+    /**
+     * @param context - The context of the caller
+     * @param apiClient - The client used for location updates
+     * @param looper - The thread the location updates are delivered on (the owner's thread)
+     * @param backend - Where the geofences are registered
+     */
+    public Geofencing(Context context, GoogleApiClient apiClient, Looper looper, GeofenceBackend backend) {
         mApiClient = apiClient;
+        mBackend = backend;
         mContext = context;
-        mGeofences = new ArrayList<>();
-        mGeofencePendingIntent = null;
+        mLooper = looper;
+        mReconciler = new GeofenceReconciler(context);
+        mSelection = buildSelection(null);
+        mSelection.selectFirst();
     }
 
     /**
-     * Checks if the geofences can be set, and, if so, register them
+     * Sets how many geofences are registered at most (the nearest places are picked)
+     * @param maxGeofences - A number between 1 and MAX_GEOFENCES
      */
-    public void registerGeofences() {
-        // Returns early if the geofences can't be set
-        if (!canRegisterGeofences()) return;
+    public void setMaxGeofences(int maxGeofences) {
+        mMaxGeofences = Math.max(1, Math.min(MAX_GEOFENCES, maxGeofences));
+    }
 
-        try {
-            LocationServices.GeofencingApi.addGeofences(
-                    mApiClient,
-                    getGeofencingRequest(),
-                    getGeofencingPendingIntent()
-            ).setResultCallback(this);
-        } catch (SecurityException sException) {
-            Log.e(LOG_TAG, sException.getLocalizedMessage());
-        }
+    /**
+     * Sets the hysteresis applied to the geofences (loitering delay, exit fence radius)
+     * @param hysteresis - The hysteresis settings
+     */
+    public synchronized void setHysteresisConfig(HysteresisConfig hysteresis) {
+        mHysteresis = hysteresis;
     }
 
     /**
-     * Deregister the Geofences (the cient has to be set and connected)
+     * Sets who's told about the result of the add/remove calls (e.g. to retry failed ones)
+     * @param listener - The listener (nullable)
      */
-    public void unregisterGeofences() {
-        // Returns early if the client isn't set or connected
-        if (!isClientAvailable()) return;
+    public void setOnResultListener(OnResultListener listener) {
+        mResultListener = listener;
+    }
 
-        try {
-            LocationServices.GeofencingApi.removeGeofences(
-                    mApiClient,
-                    getGeofencingPendingIntent()
-            ).setResultCallback(this);
-        } catch (SecurityException sException) {
-            Log.e(LOG_TAG, sException.getLocalizedMessage());
-        }
+    /**
+     * @return - Whether some add/remove call hasn't reported its result yet
+     */
+    public boolean hasPendingCalls() {
+        return mPendingCalls.get() > 0;
     }
 
     /**
-     * Register a set of places as Geofences on the Google Play Services API
+     * @return - Whether location updates are requested (which needs the client connected)
+     */
+    public boolean isTrackingLocation() {
+        return mIsTrackingLocation;
+    }
+
+    /**
+     * Sets how far the device may move before the nearest places are selected again
+     * @param reselectDistance - The distance (in meters)
+     */
+    public void setReselectDistance(float reselectDistance) {
+        mReselectDistance = reselectDistance;
+    }
+
+    /**
+     * Checks if the geofences can be set, and, if so, register them.
+     * Only the geofences which aren't registered yet (or changed) are added, and the ones
+     * registered but no longer desired are removed, each in a single call.
+     */
+    public synchronized void registerGeofences() {
+        // Returns early if the backend can't be reached
+        if (!mBackend.isAvailable()) return;
+
+        reconcileGeofences();
+
+        // Only needed when some places were left out of the selection, or their fences are
+        // tuned to the device's location
+        if (mSelection.isPartial() || mSelection.isLocationTuned()) startTrackingLocation();
+    }
+
+    /**
+     * Registers every desired geofence again, even the ones which look registered.
+     * Adding a geofence with the same request id replaces it, which restarts its expiration,
+     * and brings back the ones Play Services dropped (e.g. on reboot or when the app is updated).
+     */
+    public synchronized void renewGeofences() {
+        // Returns early if the backend can't be reached
+        if (!mBackend.isAvailable()) return;
+
+        // The other registered ones are still removed if they're no longer desired
+        mReconciler.markRemoved(mSelection.getSignatures().keySet());
+        registerGeofences();
+    }
+
+    /**
+     * Forgets which geofences are registered, once Play Services dropped all of them
+     * (e.g. on reboot), so none is removed and every desired one is added again.
+     * The places the device was inside of are doubted too, until the fences report them again.
+     */
+    public synchronized void forgetRegisteredGeofences() {
+        mReconciler.clear();
+        RingerController.getInstance(mContext).markStale();
+    }
+
+    /**
+     * Deregister the Geofences (the backend has to be available)
+     */
+    public synchronized void unregisterGeofences() {
+        // Returns early if the backend can't be reached
+        if (!mBackend.isAvailable()) return;
+
+        stopTrackingLocation();
+
+        mBackend.removeAllGeofences(track(this,
+                Metrics.GEOFENCE_REMOVE_LATENCY, Metrics.GEOFENCE_REMOVE_FAILURES));
+        // Everything registered through the backend is gone
+        mReconciler.clear();
+        RingerController.getInstance(mContext).reset();
+    }
+
+    /**
+     * Register a set of places as Geofences on the Google Play Services API.
+     * Only the places nearest to the device are kept, up to the geofence limit.
      * @param places - The list of places to be registered as virtual fences
      */
-    public void updateGeofencesList(PlaceBuffer places) {
-        mGeofences.clear();
+    public synchronized void updateGeofencesList(List<PlaceSnapshot> places) {
+        mSelection = buildSelection(places);
+        selectGeofences(getLastLocation());
+    }
 
-        // Return early if no places were passed
-        if (places == null || places.getCount() == 0) return;
+    /**
+     * Called with the device location while some places are left out of the selection, or
+     * tuned to the location. Selects the nearest places again once the device moved far enough,
+     * or their fences would be tuned differently. Delivered on the owner's looper.
+     * @param location - The new location of the device
+     */
+    @Override
+    public synchronized void onLocationChanged(Location location) {
+        if (location == null) return;
+        if (!mSelection.needsReselection(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0)) {
+            return;
+        }
+
+        selectGeofences(location);
 
-        for (Place place : places) {
-            String placeUID = place.getId();
-            double placeLat = place.getLatLng().latitude;
-            double placeLong = place.getLatLng().longitude;
+        // Swaps the fences which left the selection (or were tuned differently) for the new ones
+        if (mBackend.isAvailable()) reconcileGeofences();
+    }
 
-            // Build a new Geofence and adds it to the list
-            Geofence geofence = new Geofence.Builder()
-                    .setRequestId(placeUID)
-                    .setExpirationDuration(GEOFENCE_TIMEOUT)
-                    .setCircularRegion(placeLat, placeLong, GEOFENCE_RADIUS)
-                    // More bitflags can be found within the Geofence class
-                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
-                    .build();
+    /**
+     * Adds and removes geofences so the registered ones match the selected ones.
+     * The reconciler is updated right away and rolled back if a call fails.
+     */
+    private void reconcileGeofences() {
+        Map<String, FenceSpec> desired = mSelection.getFences();
+        Map<String, String> signatures = mSelection.getSignatures();
+        GeofenceReconciler.Diff diff = mReconciler.diff(signatures);
 
-            mGeofences.add(geofence);
+        // Returns early if everything is already registered
+        if (diff.isEmpty()) return;
+
+        if (!diff.removed.isEmpty()) {
+            final List<String> removed = diff.removed;
+            final Map<String, String> previous = mReconciler.getRegistered();
+            mReconciler.markRemoved(removed);
+            // Those fences won't report an exit anymore
+            RingerController.getInstance(mContext).forgetFences(removed);
+            mBackend.removeGeofences(removed, track(new GeofenceBackend.Callback() {
+                @Override
+                public void onResult(int statusCode) {
+                    // They're likely still registered
+                    if (statusCode != GeofenceBackend.STATUS_SUCCESS) {
+                        mReconciler.markAdded(removed, previous);
+                    }
+                    Geofencing.this.onResult(statusCode);
+                }
+            }, Metrics.GEOFENCE_REMOVE_LATENCY, Metrics.GEOFENCE_REMOVE_FAILURES));
+        }
+
+        if (!diff.added.isEmpty()) {
+            final List<String> added = diff.added;
+            List<FenceSpec> fences = new ArrayList<>(added.size());
+            for (String requestId : added) {
+                fences.add(desired.get(requestId));
+            }
+            mReconciler.markAdded(added, signatures);
+            mBackend.addGeofences(fences, PlaceFences.getInitialTrigger(),
+                    track(new GeofenceBackend.Callback() {
+                        @Override
+                        public void onResult(int statusCode) {
+                            // They'll be added again on the next refresh
+                            if (statusCode != GeofenceBackend.STATUS_SUCCESS) {
+                                mReconciler.markRemoved(added);
+                            }
+                            Geofencing.this.onResult(statusCode);
+                        }
+                    }, Metrics.GEOFENCE_ADD_LATENCY, Metrics.GEOFENCE_ADD_FAILURES));
         }
     }
 
     /**
-     * This will be called as a callback to addGeofences()
-     * @param result - The result passed to the callback
+     * Wraps the callback of an add/remove call, keeping count of the calls still waiting
+     * for their result and recording how long they took
+     * @param callback - Receives the status
+     * @param latency - Records the time from the call to its result
+     * @param failures - Counts the calls which failed
+     * @return - The callback to be passed to the backend
      */
-    @Override
-    public void onResult(@NonNull Result result) {
-        if (result.getStatus().isSuccess()) {
-            Log.d(LOG_TAG, "Successfully added/removed geofences");
+    private GeofenceBackend.Callback track(final GeofenceBackend.Callback callback,
+                                           final LatencyHistogram latency, final Counter failures) {
+        mPendingCalls.incrementAndGet();
+        final long startNanos = System.nanoTime();
+        return new GeofenceBackend.Callback() {
+            @Override
+            public void onResult(int statusCode) {
+                latency.recordSince(startNanos);
+                if (statusCode != GeofenceBackend.STATUS_SUCCESS) failures.increment();
+                mPendingCalls.decrementAndGet();
+                callback.onResult(statusCode);
+            }
+        };
+    }
+
+    /**
+     * Builds the selection of the passed places with the current settings
+     * @param places - The stored places (nullable)
+     * @return - A GeofenceSelection, nothing selected yet
+     */
+    private GeofenceSelection buildSelection(@Nullable List<PlaceSnapshot> places) {
+        return new GeofenceSelection(places, mMaxGeofences,
+                new FenceTuning(GEOFENCE_RADIUS, mHysteresis), GEOFENCE_TIMEOUT, mReselectDistance);
+    }
+
+    /**
+     * Selects the places nearest to the passed location, tuning their fences to it
+     * @param location - The location of the device. If null, the first places are taken.
+     */
+    private void selectGeofences(@Nullable Location location) {
+        if (location == null) {
+            mSelection.selectFirst();
         } else {
-            Log.e(LOG_TAG, String.format("Error adding/removing geofences: %s",
-                    result.getStatus().toString()));
+            mSelection.selectNearest(location.getLatitude(), location.getLongitude(),
+                    location.hasAccuracy() ? location.getAccuracy() : 0);
         }
     }
 
     /**
-     * Creates a GeofencingRequest object using its builder.
-     * This will be used to actually request their inclusion on the API.
-     * @return - A GeofencingRequest
+     * Starts listening to location changes, so the nearest places can be selected again
      */
-    private GeofencingRequest getGeofencingRequest() {
-        GeofencingRequest.Builder geoBuilder = new GeofencingRequest.Builder();
-        // This control behaviour in case the device is already inside a GeoFence.
-        // The passed flag will cause it to fire an event immediately if it IS already inside one.
-        geoBuilder.setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER);
-        geoBuilder.addGeofences(mGeofences);
-        return geoBuilder.build();
+    private void startTrackingLocation() {
+        if (mIsTrackingLocation || !isClientAvailable()) return;
+
+        LocationRequest request = LocationRequest.create()
+                .setPriority(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY)
+                .setInterval(LOCATION_UPDATE_INTERVAL)
+                .setSmallestDisplacement(mReselectDistance);
+        try {
+            // Updates are delivered on the owner's thread (off the main thread, as they may
+            // select the places again and write to the disk)
+            LocationServices.FusedLocationApi.requestLocationUpdates(
+                    mApiClient, request, this, mLooper);
+            mIsTrackingLocation = true;
+        } catch (SecurityException sException) {
+            Log.e(LOG_TAG, sException.getLocalizedMessage());
+        }
     }
 
     /**
-     * Getter for the pending intent. It will try to reuse a currently set Pending Intent
-     * and, only if it's null, build a new one before returning it.
-     * @return - This class' mGeofencePendingIntent property
+     * Stops listening to location changes
      */
-    private PendingIntent getGeofencingPendingIntent() {
-        // If we already have a PendingIntent set, return it
-        if (mGeofencePendingIntent != null) return mGeofencePendingIntent;
+    private void stopTrackingLocation() {
+        if (!mIsTrackingLocation || !isClientAvailable()) return;
 
-        // Otherwise, build a new one and return it
-        mGeofencePendingIntent = buildPendingIntent();
-        return mGeofencePendingIntent;
+        LocationServices.FusedLocationApi.removeLocationUpdates(mApiClient, this);
+        mIsTrackingLocation = false;
     }
 
     /**
-     * Builds a new PendingIntent
-     * @return - A Pending Intent registered to the GeofenceBroadcastReceived class
+     * Gets the last known location of the device, if the client is available
+     * @return - The last known location (nullable)
      */
-    private PendingIntent buildPendingIntent() {
-        // Registers the GeofenceBroadcastReceived as the received of the intent
-        Intent intent = new Intent(mContext, GeofenceBroadcastReceived.class);
-        return PendingIntent.getBroadcast(mContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    @Nullable
+    private Location getLastLocation() {
+        if (!isClientAvailable()) return null;
+        try {
+            return LocationServices.FusedLocationApi.getLastLocation(mApiClient);
+        } catch (SecurityException sException) {
+            Log.e(LOG_TAG, sException.getLocalizedMessage());
+            return null;
+        }
     }
 
     /**
-     * Return wether the cient is set and connected
-     * @return - A boolean stating the availability of the client
+     * This will be called as a callback to addGeofences()
+     * @param statusCode - The status passed to the callback
      */
-    private boolean isClientAvailable() {
-        return mApiClient != null && mApiClient.isConnected();
+    @Override
+    public void onResult(int statusCode) {
+        if (statusCode == GeofenceBackend.STATUS_SUCCESS) {
+            Log.d(LOG_TAG, "Successfully added/removed geofences");
+        } else {
+            Log.e(LOG_TAG, String.format("Error adding/removing geofences: %d", statusCode));
+        }
+
+        OnResultListener listener = mResultListener;
+        if (listener != null) listener.onGeofencingResult(statusCode);
     }
 
     /**
-     * Checks if the client is available and there are GeoFences in the list
-     * @return - A boolean stating if Geofences can be registered
+     * Return wether the cient is set and connected
+     * @return - A boolean stating the availability of the client
      */
-    private boolean canRegisterGeofences() {
-        return  isClientAvailable() && mGeofences != null && mGeofences.size() > 0;
+    private boolean isClientAvailable() {
+        return mApiClient != null && mApiClient.isConnected();
     }
 }
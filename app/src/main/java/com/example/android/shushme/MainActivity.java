@@ -20,54 +20,54 @@ import android.Manifest;
 import android.app.NotificationManager;
 import android.content.ContentValues;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.Switch;
 import android.widget.Toast;
 
-import com.example.android.shushme.provider.PlaceContract;
+import com.example.android.shushme.provider.PlaceCache;
+import com.example.android.shushme.transfer.PlaceFormat;
 import com.example.android.shushme.util.Util;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GooglePlayServicesNotAvailableException;
 import com.google.android.gms.common.GooglePlayServicesRepairableException;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.places.Place;
-import com.google.android.gms.location.places.PlaceBuffer;
 import com.google.android.gms.location.places.Places;
 import com.google.android.gms.location.places.ui.PlacePicker;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class MainActivity extends AppCompatActivity
     implements GoogleApiClient.ConnectionCallbacks,
-               GoogleApiClient.OnConnectionFailedListener {
+               GoogleApiClient.OnConnectionFailedListener,
+               PlacesRefresher.Listener {
 
     // Constants
     private static final String LOG_TAG = MainActivity.class.getCanonicalName();
     private static final int FINE_LOCATION_PERMISSION = 111;
     private static final int PLACE_PICKER_REQUEST = 112;
+    private static final int IMPORT_REQUEST = 113;
+    // Export requests carry the format's ordinal
+    private static final int EXPORT_REQUEST = 114;
 
     // Member variables
     private PlaceListAdapter mAdapter;
     private RecyclerView mRecyclerView;
     private GoogleApiClient mClient;
-    private Geofencing mGeofencing;
+    private PlacesRefresher mRefresher;
     private Switch mOnOffSwitch;
     private boolean mIsEnabled;
 
@@ -89,14 +89,24 @@ public class MainActivity extends AppCompatActivity
 
         // Sets the initial state of the switch view
         mOnOffSwitch = (Switch) findViewById(R.id.enable_switch);
-        mIsEnabled = getPreferences(MODE_PRIVATE)
-                .getBoolean(getString(R.string.setting_enabled), false);
+        mIsEnabled = Util.isGeofencingEnabled(this);
         mOnOffSwitch.setChecked(mIsEnabled);
+        // Picks up the renewal for installs enabled before it existed
+        if (mIsEnabled) GeofenceSyncReceiver.schedule(this, false);
 
         // Bind this activity to the Google Api Client
         bindToGoogleApiClient();
 
-        mGeofencing = new Geofencing(this, mClient);
+        mRefresher = new PlacesRefresher(this, mClient, this);
+        // The list and the geofences only need the local cache, so they don't wait on the client
+        mRefresher.load(mIsEnabled);
+    }
+
+    @Override
+    protected void onDestroy() {
+        mRefresher.release();
+        mAdapter.release();
+        super.onDestroy();
     }
 
     /**
@@ -126,6 +136,86 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main, menu);
+
+        // The list is searched as the user types, collapsing the search shows every place again
+        final SearchView searchView =
+                (SearchView) MenuItemCompat.getActionView(menu.findItem(R.id.action_search));
+        searchView.setQueryHint(getString(R.string.search_places));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // Hides the keyboard, the results are already shown
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mAdapter.setSearch(newText);
+                return true;
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // Exports need a document to be created, only possible from KitKat on
+        menu.findItem(R.id.action_export).setVisible(
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_metrics:
+                startActivity(new Intent(this, MetricsActivity.class));
+                return true;
+            case R.id.action_import:
+                onImportClicked();
+                return true;
+            case R.id.action_export_csv:
+                onExportClicked(PlaceFormat.CSV);
+                return true;
+            case R.id.action_export_json:
+                onExportClicked(PlaceFormat.JSON);
+                return true;
+            case R.id.action_export_binary:
+                onExportClicked(PlaceFormat.BINARY);
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * Lets the user pick a file of places to be imported (in any format)
+     */
+    private void onImportClicked() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType("*/*");
+        startActivityForResult(intent, IMPORT_REQUEST);
+    }
+
+    /**
+     * Lets the user create the file the places are exported into
+     * @param format - The format to be exported
+     */
+    private void onExportClicked(PlaceFormat format) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) return;
+
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType(format.getMimeType())
+                .putExtra(Intent.EXTRA_TITLE, getString(R.string.export_file_name, format.getExtension()));
+        startActivityForResult(intent, EXPORT_REQUEST + format.ordinal());
+    }
+
     /**
      * This is called when the location permission checkbox is toggled
      * @param view - The caller. We won't use it, but it is necessary so Android can find and call this method
@@ -179,16 +269,16 @@ public class MainActivity extends AppCompatActivity
      */
     public void onToggleEnableSwitch(View view) {
         mIsEnabled = mOnOffSwitch.isChecked();
-        SharedPreferences.Editor preferencesEditor = getPreferences(MODE_PRIVATE).edit();
-        preferencesEditor.putBoolean(getString(R.string.setting_enabled), mIsEnabled);
-        preferencesEditor.apply();
+        Util.setGeofencingEnabled(this, mIsEnabled);
 
+        mRefresher.setGeofencesEnabled(mIsEnabled);
+
+        // Keeps the geofences alive past their expiration, even if the app isn't opened again
         if (mIsEnabled) {
-            mGeofencing.registerGeofences();
+            GeofenceSyncReceiver.schedule(this, true);
         } else {
-            mGeofencing.unregisterGeofences();
+            GeofenceSyncReceiver.cancel(this);
         }
-
     }
 
     @Override
@@ -202,21 +292,25 @@ public class MainActivity extends AppCompatActivity
                 return;
             }
 
-            // Persists the retrieved information to the database
-            String placeID = place.getId();
-            ContentValues contentValues = new ContentValues();
-            contentValues.put(PlaceContract.PlaceEntry.COLUMN_PLACE_ID, placeID);
-            getContentResolver().insert(PlaceContract.PlaceEntry.CONTENT_URI, contentValues);
-
-            // Refreshes the data on the recycler view
-            refreshPlacesData();
+            // Persists the retrieved information to the database. The picked place already
+            // carries its details, so they're cached right away.
+            // The data on the recycler view is refreshed afterwards.
+            ContentValues contentValues = PlaceCache.toContentValues(
+                    PlaceCache.toSnapshot(place), System.currentTimeMillis());
+            mRefresher.addPlace(contentValues, mIsEnabled);
+        } else if (requestCode == IMPORT_REQUEST && resultCode == RESULT_OK && data != null) {
+            mRefresher.importPlaces(data.getData(), mIsEnabled);
+        } else if (requestCode >= EXPORT_REQUEST
+                && requestCode < EXPORT_REQUEST + PlaceFormat.values().length
+                && resultCode == RESULT_OK && data != null) {
+            mRefresher.exportPlaces(data.getData(), PlaceFormat.values()[requestCode - EXPORT_REQUEST]);
         }
     }
 
     @Override
     public void onConnected(@Nullable Bundle bundle) {
-        // Refreshes the data on the recycler view
-        refreshPlacesData();
+        // Only the stale place details need the client, the cached ones are already shown
+        mRefresher.revalidate(mIsEnabled);
         Log.d(LOG_TAG, "Google API client connection established");
     }
 
@@ -231,56 +325,28 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Refreshes the data places from the GoogleAPI,
-     * setting them to the recycle view adapter
+     * Called on the main thread once the places were refreshed in the background
      */
-    private void refreshPlacesData() {
-        Cursor dataCursor = null;
-        try {
-            dataCursor = getContentResolver().query(
-                    PlaceContract.PlaceEntry.CONTENT_URI,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null
-            );
-
-            // Return early if no data is currently stored
-            if (dataCursor == null || dataCursor.getCount() == 0) return;
-
-            // Adds the data to a ids array
-            List<String> ids = new ArrayList<>();
-            while (dataCursor.moveToNext()) {
-                ids.add(
-                    dataCursor.getString(
-                        dataCursor.getColumnIndex(PlaceContract.PlaceEntry.COLUMN_PLACE_ID)
-                    )
-                );
-            }
+    @Override
+    public void onPlacesRefreshed() {
+        mAdapter.invalidate();
+    }
 
-            // Get the places data from the Google maps API
-            PendingResult<PlaceBuffer> placeResult = Places.GeoDataApi
-                    .getPlaceById(
-                            mClient,
-                            ids.toArray(new String[ids.size()])
-                    );
-
-            // Passes a callback to be invoked once the PendingResult
-            // promise is resolved.
-            placeResult.setResultCallback(new ResultCallback<PlaceBuffer>() {
-                @Override
-                public void onResult(@NonNull PlaceBuffer places) {
-                    mAdapter.updatePlaces(places);
-                    mGeofencing.updateGeofencesList(places);
-                    if (mIsEnabled) mGeofencing.registerGeofences();
-                }
-            });
-
-        } finally {
-            // Frees the cursor
-            if (dataCursor != null) dataCursor.close();
+    /**
+     * Called on the main thread once places were imported or exported in the background
+     */
+    @Override
+    public void onPlacesTransferred(boolean isImport, int count, int rejected, boolean isSuccess) {
+        String message;
+        if (isImport && rejected > 0) {
+            message = getString(isSuccess ? R.string.places_imported_rejected : R.string.import_failed_rejected,
+                    count, rejected);
+        } else if (isImport) {
+            message = isSuccess ? getString(R.string.places_imported, count) : getString(R.string.import_failed);
+        } else {
+            message = isSuccess ? getString(R.string.places_exported, count) : getString(R.string.export_failed);
         }
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
     /**
@@ -290,7 +356,6 @@ public class MainActivity extends AppCompatActivity
         mClient = new GoogleApiClient.Builder(this)
                 .addConnectionCallbacks(this)
                 .addOnConnectionFailedListener(this)
-                .addApi(LocationServices.API)
                 .addApi(Places.GEO_DATA_API)
                 .enableAutoManage(this, this)
                 .build();
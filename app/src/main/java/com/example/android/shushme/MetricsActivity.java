@@ -0,0 +1,92 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.example.android.shushme.metrics.Metrics;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Shows the app's metrics, in the same text format dumpsys gets, and shares them
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        if (getSupportActionBar() != null) getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        mMetricsTextView = (TextView) findViewById(R.id.metrics_text_view);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_refresh_metrics:
+                showMetrics();
+                return true;
+            case R.id.action_share_metrics:
+                Intent intent = new Intent(Intent.ACTION_SEND)
+                        .setType("text/plain")
+                        .putExtra(Intent.EXTRA_SUBJECT, getString(R.string.share_metrics_subject))
+                        .putExtra(Intent.EXTRA_TEXT, dumpMetrics());
+                startActivity(Intent.createChooser(intent, getString(R.string.share_metrics)));
+                return true;
+            case R.id.action_reset_metrics:
+                Metrics.REGISTRY.reset();
+                showMetrics();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    private void showMetrics() {
+        mMetricsTextView.setText(dumpMetrics());
+    }
+
+    private static String dumpMetrics() {
+        StringWriter text = new StringWriter();
+        Metrics.REGISTRY.dump(new PrintWriter(text));
+        return text.toString();
+    }
+}
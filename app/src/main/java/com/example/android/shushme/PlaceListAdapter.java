@@ -17,19 +17,57 @@ package com.example.android.shushme;
 */
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
-import com.google.android.gms.location.places.Place;
-import com.google.android.gms.location.places.PlaceBuffer;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.paging.PagedList;
+import com.example.android.shushme.provider.PlacePageSource;
 
-public class PlaceListAdapter extends RecyclerView.Adapter<PlaceListAdapter.PlaceViewHolder> {
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows the stored places, reading them off the database a page at a time as the list is
+ * scrolled (see PagedList), so opening a list of thousands of places only loads the first
+ * page, and the memory held doesn't grow with the list.
+ * <p>
+ * Items are told apart by their row id (their key in the list, and their stable id), so a
+ * reloaded list is diffed with the shown one before any place is loaded: only the inserted
+ * and removed items are notified, then the loaded ones which changed.
+ */
+public class PlaceListAdapter extends RecyclerView.Adapter<PlaceListAdapter.PlaceViewHolder>
+        implements PagedList.Callback {
+
+    // Pages of 50 places, loaded 25 places ahead of the screen, holding at most 8 pages
+    private static final PagedList.Config PAGING_CONFIG = new PagedList.Config(50, 25, 8);
+
+    // Pages are loaded off the main thread, one at a time
+    private static final ExecutorService sPageExecutor = Executors.newSingleThreadExecutor();
+    // Diffs are calculated off the main thread, one at a time
+    private static final ExecutorService sDiffExecutor = Executors.newSingleThreadExecutor();
 
     private Context mContext;
-    private PlaceBuffer mPlaces;
+    private PlacePageSource mSource;
+    // The words the places are searched for, or null for every place
+    private String mSearch;
+    private PagedList<PlaceSnapshot> mPlaces;
+    // The list mPlaces replaced: its places stay on screen until the new ones are loaded
+    private PagedList<PlaceSnapshot> mPrevious;
+    private final Handler mMainHandler;
+    private final Executor mMainExecutor;
+    // Bumped on every invalidation, so a list loaded against outdated places is dropped
+    private int mGeneration;
+    // The last position bound, so a new list starts loading where the user is
+    private int mLastPosition;
 
     /**
      * Constructor using the context and the db cursor
@@ -38,6 +76,16 @@ public class PlaceListAdapter extends RecyclerView.Adapter<PlaceListAdapter.Plac
      */
     PlaceListAdapter(Context context) {
         mContext = context;
+        mSource = new PlacePageSource(context.getContentResolver());
+        mPlaces = PagedList.empty();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mMainHandler.post(command);
+            }
+        };
+        setHasStableIds(true);
     }
 
     /**
@@ -63,26 +111,107 @@ public class PlaceListAdapter extends RecyclerView.Adapter<PlaceListAdapter.Plac
      */
     @Override
     public void onBindViewHolder(PlaceViewHolder holder, int position) {
-        Place place = mPlaces.get(position);
-        holder.nameTextView.setText(place.getName().toString());
-        holder.addressTextView.setText(place.getAddress().toString());
+        mLastPosition = position;
+        // A place which isn't loaded yet shows what was there before (or is left blank),
+        // it's bound again once it's loaded if it differs
+        PlaceSnapshot place = getShown(position);
+        holder.nameTextView.setText(place != null ? place.getName() : null);
+        holder.addressTextView.setText(place != null ? place.getAddress() : null);
+    }
+
+    /**
+     * Reloads the places, once they changed on the database. The current places stay on
+     * screen until the new list's keys and the page the user is on are loaded. The keys are
+     * diffed with the shown ones in the background, so only the inserted and removed items
+     * are notified, and the items which changed are bound again once they're loaded.
+     */
+    void invalidate() {
+        final int generation = ++mGeneration;
+        PagedList.load(mSource, PAGING_CONFIG, mLastPosition, sPageExecutor, mMainExecutor,
+                new PagedList.ReadyListener<PlaceSnapshot>() {
+                    @Override
+                    public void onReady(final PagedList<PlaceSnapshot> list) {
+                        // A newer invalidation is on its way
+                        if (generation != mGeneration) {
+                            list.detach();
+                            return;
+                        }
+
+                        final PagedList<PlaceSnapshot> oldPlaces = mPlaces;
+                        // Nothing to diff against (or nothing left), everything is inserted
+                        // (or removed) at once
+                        if (oldPlaces.size() == 0 || list.size() == 0) {
+                            swapPlaces(list, null);
+                            return;
+                        }
+
+                        sDiffExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                // Only the keys are read, the pages belong to the main thread
+                                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                                        new KeyDiffCallback(oldPlaces, list), false);
+                                mMainHandler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (generation != mGeneration) {
+                                            list.detach();
+                                            return;
+                                        }
+                                        swapPlaces(list, result);
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
     }
 
     /**
-     * Updates the places currently stored on the adapter
-     * with a new batch received from the Google maps API
-     * @param newPlaces - The places which will be showed next
+     * Shows the places matching a search instead, starting from the top of the list
+     * @param search - The words typed by the user. Blank shows every place.
      */
-    void updatePlaces(PlaceBuffer newPlaces) {
-        // Returns early if no valid places were passed
-        if (newPlaces == null) return;
-
-        // Swap the current places and notifies the view
-        // so it reflects the new data
-        mPlaces = newPlaces;
-        notifyDataSetChanged();
+    void setSearch(@Nullable String search) {
+        if (search != null) {
+            search = search.trim();
+            if (search.isEmpty()) search = null;
+        }
+        if (search == null ? mSearch == null : search.equals(mSearch)) return;
+
+        mSearch = search;
+        mSource = new PlacePageSource(mContext.getContentResolver(), search);
+        mLastPosition = 0;
+        invalidate();
     }
 
+    /**
+     * Stops loading places (e.g. once the activity is destroyed)
+     */
+    void release() {
+        mGeneration++;
+        mPlaces.detach();
+        mPrevious = null;
+    }
+
+    /**
+     * Called once a page of places is loaded, so the items which differ from what's shown
+     * are bound again (runs of them, in as few notifications as possible)
+     */
+    @Override
+    public void onItemsLoaded(int position, int count) {
+        int changed = -1;
+        for (int i = position; i < position + count; i++) {
+            PlaceSnapshot shown = getPrevious(i);
+            boolean isChanged = shown == null || !shown.equals(mPlaces.peek(i));
+            if (isChanged && changed < 0) {
+                changed = i;
+            } else if (!isChanged && changed >= 0) {
+                notifyItemRangeChanged(changed, i - changed);
+                changed = -1;
+            }
+        }
+        if (changed >= 0) notifyItemRangeChanged(changed, position + count - changed);
+    }
 
     /**
      * Returns the number of items in the cursor
@@ -91,8 +220,98 @@ public class PlaceListAdapter extends RecyclerView.Adapter<PlaceListAdapter.Plac
      */
     @Override
     public int getItemCount() {
-        if (mPlaces == null) return 0;
-        return mPlaces.getCount();
+        return mPlaces.size();
+    }
+
+    /**
+     * Returns a stable id for the item: the row id of its place, known before it's loaded
+     *
+     * @param position The position of the item
+     * @return The row id of the place
+     */
+    @Override
+    public long getItemId(int position) {
+        return mPlaces.getKey(position);
+    }
+
+    /**
+     * Replaces the shown places with a new list, keeping the old one to compare the new places
+     * with as they're loaded
+     * @param list - The new places
+     * @param diff - The difference between the old keys and the new ones, or null if either
+     *             list is empty
+     */
+    private void swapPlaces(PagedList<PlaceSnapshot> list, @Nullable DiffUtil.DiffResult diff) {
+        int oldSize = mPlaces.size();
+        mPlaces.detach();
+        mPrevious = mPlaces;
+        mPlaces = list;
+        if (diff != null) {
+            diff.dispatchUpdatesTo(this);
+        } else if (oldSize > 0) {
+            notifyItemRangeRemoved(0, oldSize);
+        } else if (list.size() > 0) {
+            notifyItemRangeInserted(0, list.size());
+        }
+        mPlaces.setCallback(this);
+        mPlaces.dispatchLoaded();
+    }
+
+    /**
+     * Gets the place shown at a position: the loaded one, or else the one of the replaced list
+     * @param position - The position of the item
+     * @return - The place, or null if neither list has it loaded
+     */
+    @Nullable
+    private PlaceSnapshot getShown(int position) {
+        PlaceSnapshot place = mPlaces.get(position);
+        return place != null ? place : getPrevious(position);
+    }
+
+    /**
+     * Gets the place the replaced list holds for an item (matched by key, it may have moved)
+     * @param position - The position of the item in the current list
+     * @return - The place, or null if the replaced list doesn't have it loaded
+     */
+    @Nullable
+    private PlaceSnapshot getPrevious(int position) {
+        if (mPrevious == null) return null;
+        return mPrevious.peek(mPrevious.indexOfKey(mPlaces.getKey(position)));
+    }
+
+    /**
+     * Compares two lists of places by their keys. The contents are compared once the places
+     * are loaded (see onItemsLoaded).
+     */
+    private static class KeyDiffCallback extends DiffUtil.Callback {
+
+        private final PagedList<PlaceSnapshot> mOldPlaces;
+        private final PagedList<PlaceSnapshot> mNewPlaces;
+
+        KeyDiffCallback(PagedList<PlaceSnapshot> oldPlaces, PagedList<PlaceSnapshot> newPlaces) {
+            mOldPlaces = oldPlaces;
+            mNewPlaces = newPlaces;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldPlaces.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewPlaces.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldPlaces.getKey(oldItemPosition) == mNewPlaces.getKey(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return true;
+        }
     }
 
     /**
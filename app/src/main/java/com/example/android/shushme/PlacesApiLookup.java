@@ -0,0 +1,71 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.fetch.PlaceLookup;
+import com.example.android.shushme.metrics.Metrics;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.provider.PlaceCache;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.places.PlaceBuffer;
+import com.google.android.gms.location.places.Places;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up places against the Places API, through a connected GoogleApiClient
+ */
+class PlacesApiLookup implements PlaceLookup {
+
+    private final GoogleApiClient mApiClient;
+    private final long mTimeout;
+
+    /**
+     * @param apiClient - The client the Places API is reached through
+     * @param timeout - How long to wait on a lookup before giving up on it (in seconds)
+     */
+    PlacesApiLookup(GoogleApiClient apiClient, long timeout) {
+        mApiClient = apiClient;
+        mTimeout = timeout;
+    }
+
+    @Override
+    public List<PlaceSnapshot> lookup(List<String> ids) throws IOException {
+        if (!mApiClient.isConnected()) throw new IOException("Not connected to the Places API");
+
+        long startNanos = System.nanoTime();
+        PlaceBuffer places = Places.GeoDataApi
+                .getPlaceById(mApiClient, ids.toArray(new String[ids.size()]))
+                .await(mTimeout, TimeUnit.SECONDS);
+        Metrics.PLACES_FETCH_LATENCY.recordSince(startNanos);
+        Status status = places.getStatus();
+        if (!status.isSuccess()) {
+            Metrics.PLACES_FETCH_FAILURES.increment();
+            places.release();
+            throw new IOException(String.format("Error fetching places: %s", status.toString()));
+        }
+
+        // Copies the details out of the buffer, releasing it right away
+        return PlaceCache.copyAndRelease(places);
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.example.android.shushme.fetch.ChunkedPlaceFetcher;
+import com.example.android.shushme.fetch.PlaceRevalidator;
+import com.example.android.shushme.fetch.TokenBucket;
+import com.example.android.shushme.metrics.Metrics;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.provider.PlaceCache;
+import com.example.android.shushme.provider.PlaceContract;
+import com.example.android.shushme.provider.PlaceTransfer;
+import com.example.android.shushme.provider.ScheduleCache;
+import com.example.android.shushme.schedule.ScheduleRules;
+import com.example.android.shushme.transfer.PlaceFormat;
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Runs the places pipeline off the main thread: reads the stored places, builds and registers
+ * the geofences, revalidates stale details against the Places API, and only notifies the main
+ * thread once the places changed.
+ * <p>
+ * Every step runs on a single background thread, so they never overlap each other. Only the
+ * Places API lookups are spread over a few more threads (see ChunkedPlaceFetcher), and waited
+ * on by one more (see PlaceRevalidator), so a slow or failing network never holds back what
+ * the user does meanwhile.
+ */
+class PlacesRefresher {
+
+    private static final String LOG_TAG = PlacesRefresher.class.getCanonicalName();
+    // How long to wait on the Places API before giving up on a chunk (in seconds)
+    private static final long FETCH_TIMEOUT = 30;
+    // How the stale places are split and fetched: chunks of 10 places, 3 at a time, each retried
+    // up to 3 times (waiting 1 to 30 seconds)
+    private static final ChunkedPlaceFetcher.Config FETCH_CONFIG =
+            new ChunkedPlaceFetcher.Config(10, 3, 1000, 30 * 1000, 3);
+    // How often the Places API is called at most: 5 times a second, in bursts of up to 5
+    private static final double FETCH_RATE = 5;
+    private static final int FETCH_BURST = 5;
+    // How often fetched places are published at most (in milliseconds)
+    private static final long PUBLISH_INTERVAL = 500;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    // Runs the chunks' lookups, shared (along with its rate limit) by every refresher
+    private static final ScheduledExecutorService sFetchExecutor =
+            Executors.newScheduledThreadPool(FETCH_CONFIG.getMaxConcurrent());
+    private static final TokenBucket sFetchRateLimiter = new TokenBucket(FETCH_RATE, FETCH_BURST);
+    // Waits on the fetches, handing the places fetched back to sExecutor
+    private static final ExecutorService sRevalidationExecutor =
+            Executors.newSingleThreadExecutor();
+
+    /**
+     * Notified on the main thread once the places are refreshed. The list reads them
+     * off the database itself, a page at a time.
+     */
+    interface Listener {
+        void onPlacesRefreshed();
+
+        /**
+         * @param isImport - Whether places were imported (or exported)
+         * @param count - How many places were transferred
+         * @param rejected - How many imported places were skipped as invalid
+         * @param isSuccess - Whether every place was (or the transfer stopped on an error)
+         */
+        void onPlacesTransferred(boolean isImport, int count, int rejected, boolean isSuccess);
+    }
+
+    private final Context mContext;
+    private final ContentResolver mResolver;
+    private final GoogleApiClient mApiClient;
+    private final PlaceRevalidator mRevalidator;
+    private final GeofenceManager mGeofenceManager;
+    private final Handler mMainHandler;
+    private volatile Listener mListener;
+
+    PlacesRefresher(Context context, GoogleApiClient apiClient, Listener listener) {
+        mContext = context.getApplicationContext();
+        mResolver = context.getContentResolver();
+        mApiClient = apiClient;
+        mRevalidator = new PlaceRevalidator(
+                new ChunkedPlaceFetcher(new PlacesApiLookup(apiClient, FETCH_TIMEOUT),
+                        sFetchRateLimiter, sFetchExecutor, FETCH_CONFIG),
+                sExecutor, sRevalidationExecutor, PUBLISH_INTERVAL);
+        mGeofenceManager = GeofenceManager.getInstance(context);
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mListener = listener;
+    }
+
+    /**
+     * Refreshes the places from the local cache, revalidating any stale details afterwards
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    void refresh(final boolean registerGeofences) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                List<String> staleIds = new ArrayList<>();
+                publish(PlaceCache.read(mResolver, staleIds), registerGeofences);
+
+                if (!staleIds.isEmpty()) revalidatePlaces(staleIds, registerGeofences);
+                Metrics.REFRESH_LATENCY.recordSince(startNanos);
+            }
+        });
+    }
+
+    /**
+     * Refreshes the places from the local cache only. This doesn't need the Places API,
+     * so it can run before its client is connected.
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    void load(final boolean registerGeofences) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                publish(PlaceCache.read(mResolver, null), registerGeofences);
+                Metrics.REFRESH_LATENCY.recordSince(startNanos);
+            }
+        });
+    }
+
+    /**
+     * Revalidates the stale details of the cached places against the Places API, publishing
+     * only the places which were fetched again (e.g. once its client is connected)
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    void revalidate(final boolean registerGeofences) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> staleIds = new ArrayList<>();
+                PlaceCache.read(mResolver, staleIds);
+                if (!staleIds.isEmpty()) revalidatePlaces(staleIds, registerGeofences);
+            }
+        });
+    }
+
+    /**
+     * Persists a new place and refreshes the places afterwards. A place which is already stored
+     * only has its details updated, keeping the user's settings (and its row).
+     * @param values - The values of the new places row, the place id included
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    void addPlace(final ContentValues values, final boolean registerGeofences) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Inserting would replace the stored row (the place id is unique)
+                int rowsUpdated = mResolver.update(PlaceContract.PlaceEntry.CONTENT_URI, values,
+                        PlaceContract.PlaceEntry.COLUMN_PLACE_ID + "=?",
+                        new String[]{values.getAsString(PlaceContract.PlaceEntry.COLUMN_PLACE_ID)});
+                if (rowsUpdated == 0) mResolver.insert(PlaceContract.PlaceEntry.CONTENT_URI, values);
+            }
+        });
+        refresh(registerGeofences);
+    }
+
+    /**
+     * Imports the places of a file (in any PlaceFormat) and refreshes the places afterwards
+     * @param uri - The file to be imported
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    void importPlaces(final Uri uri, final boolean registerGeofences) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = 0;
+                boolean isSuccess = false;
+                List<String> errors = new ArrayList<>();
+                FileInputStream stream = null;
+                try {
+                    stream = new ParcelFileDescriptor.AutoCloseInputStream(openFile(uri, "r"));
+                    count = PlaceTransfer.importPlaces(mResolver, PlaceFormat.detect(stream.getChannel()), errors);
+                    isSuccess = true;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to import places", e);
+                } finally {
+                    close(stream);
+                }
+                for (String error : errors) {
+                    Log.w(LOG_TAG, "Skipped imported place: " + error);
+                }
+                notifyTransferred(true, count, errors.size(), isSuccess);
+            }
+        });
+        refresh(registerGeofences);
+    }
+
+    /**
+     * Exports the places into a file
+     * @param uri - The file to be written
+     * @param format - The format to be written
+     */
+    void exportPlaces(final Uri uri, final PlaceFormat format) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int count = 0;
+                boolean isSuccess = false;
+                FileOutputStream stream = null;
+                try {
+                    stream = new ParcelFileDescriptor.AutoCloseOutputStream(openFile(uri, "w"));
+                    count = PlaceTransfer.exportPlaces(mResolver, format.newWriter(stream.getChannel()));
+                    isSuccess = true;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to export places", e);
+                } finally {
+                    close(stream);
+                }
+                notifyTransferred(false, count, 0, isSuccess);
+            }
+        });
+    }
+
+    /**
+     * Registers or unregisters the geofences
+     * @param enabled - Whether the geofences should be registered
+     */
+    void setGeofencesEnabled(boolean enabled) {
+        if (enabled) {
+            // The schedules may have moved on while they were off, so the places are read again
+            sExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    publish(PlaceCache.read(mResolver, null), true);
+                }
+            });
+        } else {
+            mGeofenceManager.unregisterGeofences();
+        }
+    }
+
+    /**
+     * Stops delivering places to the listener (e.g. once the activity is destroyed)
+     */
+    void release() {
+        mListener = null;
+    }
+
+    /**
+     * Starts fetching the details of the passed places from the Google maps API, caching them
+     * locally. The places are fetched a chunk at a time, and every chunk fetched is published
+     * (at most every PUBLISH_INTERVAL), so a slow or failing chunk doesn't hold back the others.
+     * This returns right away: the chunks are stored on the background thread as they come,
+     * after whatever was queued there meanwhile.
+     * @param ids - The ids of the places to be fetched
+     * @param registerGeofences - Whether the geofences should be registered with the new places
+     */
+    private void revalidatePlaces(List<String> ids, final boolean registerGeofences) {
+        // Keep showing whatever is cached while offline
+        if (!mApiClient.isConnected()) return;
+
+        mRevalidator.revalidate(ids, new PlaceRevalidator.Sink() {
+            @Override
+            public void onPlacesFetched(List<PlaceSnapshot> places) {
+                PlaceCache.store(mResolver, places, System.currentTimeMillis());
+            }
+
+            @Override
+            public void onChunkFailed(List<String> failedIds, IOException error) {
+                // Those keep their cached details, and are fetched again on the next refresh
+                Log.e(LOG_TAG, String.format("Giving up on fetching %d places", failedIds.size()),
+                        error);
+            }
+
+            @Override
+            public void onPublish() {
+                publish(PlaceCache.read(mResolver, null), registerGeofences);
+            }
+        });
+    }
+
+    /**
+     * Opens a file through its provider (e.g. the Storage Access Framework)
+     */
+    private ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        ParcelFileDescriptor descriptor = mResolver.openFileDescriptor(uri, mode);
+        if (descriptor == null) throw new FileNotFoundException("Can't open " + uri);
+        return descriptor;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to close a file", e);
+        }
+    }
+
+    private void notifyTransferred(final boolean isImport, final int count, final int rejected,
+                                   final boolean isSuccess) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = mListener;
+                if (listener != null) listener.onPlacesTransferred(isImport, count, rejected, isSuccess);
+            }
+        });
+    }
+
+    /**
+     * Hands a new list of places to the geofences and, on the main thread, notifies the listener
+     * @param places - The places read from the local cache
+     * @param registerGeofences - Whether the geofences should be registered
+     */
+    private void publish(List<PlaceSnapshot> places, boolean registerGeofences) {
+        List<PlaceSnapshot> snapshot = Collections.unmodifiableList(places);
+
+        // Only the places within their quiet schedule are fenced, until the next boundary
+        ScheduleRules rules = ScheduleCache.read(mResolver);
+        long now = System.currentTimeMillis();
+        mGeofenceManager.setPlaces(rules.filterActive(snapshot, now), registerGeofences);
+        if (registerGeofences) {
+            GeofenceSyncReceiver.scheduleBoundary(mContext, rules.getNextBoundary(now));
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Listener listener = mListener;
+                if (listener != null) listener.onPlacesRefreshed();
+            }
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.example.android.shushme.fence.FenceSpec;
+import com.example.android.shushme.fence.GeofenceBackend;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers geofences on Play Services. Transitions are broadcast to GeofenceBroadcastReceived,
+ * and the statuses are delivered on the client's looper.
+ */
+class PlayGeofenceBackend implements GeofenceBackend {
+
+    private static final String LOG_TAG = PlayGeofenceBackend.class.getCanonicalName();
+
+    private final Context mContext;
+    private final GoogleApiClient mApiClient;
+    private PendingIntent mGeofencePendingIntent;
+
+    PlayGeofenceBackend(Context context, GoogleApiClient apiClient) {
+        mContext = context.getApplicationContext();
+        mApiClient = apiClient;
+    }
+
+    /**
+     * Return wether the cient is set and connected
+     * @return - A boolean stating the availability of the client
+     */
+    @Override
+    public boolean isAvailable() {
+        return mApiClient != null && mApiClient.isConnected();
+    }
+
+    @Override
+    public void addGeofences(List<FenceSpec> fences, int initialTrigger, Callback callback) {
+        try {
+            deliver(LocationServices.GeofencingApi.addGeofences(
+                    mApiClient,
+                    getGeofencingRequest(fences, initialTrigger),
+                    getGeofencingPendingIntent()
+            ), callback);
+        } catch (SecurityException sException) {
+            Log.e(LOG_TAG, sException.getLocalizedMessage());
+            callback.onResult(STATUS_ERROR);
+        }
+    }
+
+    @Override
+    public void removeGeofences(List<String> requestIds, Callback callback) {
+        try {
+            deliver(LocationServices.GeofencingApi.removeGeofences(mApiClient, requestIds), callback);
+        } catch (SecurityException sException) {
+            Log.e(LOG_TAG, sException.getLocalizedMessage());
+            callback.onResult(STATUS_ERROR);
+        }
+    }
+
+    @Override
+    public void removeAllGeofences(Callback callback) {
+        try {
+            deliver(LocationServices.GeofencingApi.removeGeofences(
+                    mApiClient,
+                    getGeofencingPendingIntent()
+            ), callback);
+        } catch (SecurityException sException) {
+            Log.e(LOG_TAG, sException.getLocalizedMessage());
+            callback.onResult(STATUS_ERROR);
+        }
+    }
+
+    private static void deliver(PendingResult<Status> pendingResult, final Callback callback) {
+        pendingResult.setResultCallback(new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                callback.onResult(status.getStatusCode());
+            }
+        });
+    }
+
+    /**
+     * Creates a GeofencingRequest object using its builder.
+     * This will be used to actually request their inclusion on the API.
+     * @param fences - The geofences to be included
+     * @param initialTrigger - The INITIAL_TRIGGER_* flags
+     * @return - A GeofencingRequest
+     */
+    private static GeofencingRequest getGeofencingRequest(List<FenceSpec> fences, int initialTrigger) {
+        List<Geofence> geofences = new ArrayList<>(fences.size());
+        for (FenceSpec fence : fences) {
+            geofences.add(new Geofence.Builder()
+                    .setRequestId(fence.getRequestId())
+                    .setExpirationDuration(fence.getExpirationDuration())
+                    .setCircularRegion(fence.getLatitude(), fence.getLongitude(), fence.getRadius())
+                    .setTransitionTypes(fence.getTransitionTypes())
+                    .setLoiteringDelay(fence.getLoiteringDelay())
+                    .setNotificationResponsiveness(fence.getResponsiveness())
+                    .build());
+        }
+
+        GeofencingRequest.Builder geoBuilder = new GeofencingRequest.Builder();
+        // This control behaviour in case the device is already inside a GeoFence.
+        geoBuilder.setInitialTrigger(initialTrigger);
+        geoBuilder.addGeofences(geofences);
+        return geoBuilder.build();
+    }
+
+    /**
+     * Getter for the pending intent. It will try to reuse a currently set Pending Intent
+     * and, only if it's null, build a new one before returning it.
+     * @return - This class' mGeofencePendingIntent property
+     */
+    private PendingIntent getGeofencingPendingIntent() {
+        // If we already have a PendingIntent set, return it
+        if (mGeofencePendingIntent != null) return mGeofencePendingIntent;
+
+        // Otherwise, build a new one and return it
+        mGeofencePendingIntent = buildPendingIntent();
+        return mGeofencePendingIntent;
+    }
+
+    /**
+     * Builds a new PendingIntent
+     * @return - A Pending Intent registered to the GeofenceBroadcastReceived class
+     */
+    private PendingIntent buildPendingIntent() {
+        // Registers the GeofenceBroadcastReceived as the received of the intent
+        Intent intent = new Intent(mContext, GeofenceBroadcastReceived.class);
+        return PendingIntent.getBroadcast(mContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
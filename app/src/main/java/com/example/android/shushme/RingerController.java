@@ -0,0 +1,285 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.media.AudioManager;
+
+import com.example.android.shushme.metrics.Metrics;
+import com.example.android.shushme.transition.HysteresisConfig;
+import com.example.android.shushme.transition.RingerStateMachine;
+import com.example.android.shushme.transition.TransitionPipeline;
+import com.example.android.shushme.util.Util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drives the ringer from geofence transitions, through a persisted TransitionPipeline.
+ * <p>
+ * Transitions go through a TransitionDebouncer first: exits are held back for the debounce
+ * window and dropped if the place is entered again meanwhile. An alarm wakes the receiver
+ * up to release the exits which were not cancelled.
+ * <p>
+ * The ringer mode the user had before being silenced is saved and restored once every place
+ * was left (rather than forcing the normal mode), and the ringer is never set to the mode
+ * it's already in.
+ */
+class RingerController {
+
+    private static final String PREFERENCES_NAME = "ringer_state";
+    private static final String KEY_OCCUPIED = "occupied";
+    private static final String KEY_PENDING_EXITS = "pending_exits";
+    private static final String KEY_SAVED_MODE = "saved_mode";
+    private static final int NO_SAVED_MODE = -1;
+    // Separates the deadline and the place ID of a persisted pending exit
+    private static final char PENDING_EXIT_SEPARATOR = '|';
+
+    private static RingerController sInstance;
+
+    private final SharedPreferences mPreferences;
+    private final Ringer mRinger;
+    private final TransitionPipeline mPipeline;
+
+    /**
+     * What the controller drives: the ringer, the user's notification and the flush alarm
+     */
+    interface Ringer {
+        /**
+         * @return - One of the AudioManager.RINGER_MODE_* constants
+         */
+        int getRingerMode();
+
+        void setRingerMode(int mode);
+
+        /**
+         * Tells the user the ringer mode was changed (the notification shows the actual mode)
+         */
+        void notifyRingerChange();
+
+        /**
+         * @param deadline - When flush() should be called (in milliseconds), or Long.MAX_VALUE
+         *                 to cancel it
+         */
+        void scheduleFlush(long deadline);
+    }
+
+    /**
+     * Gets the process wide controller, loading the persisted state on first use
+     * (call it from a background thread)
+     * @param context - The context of the caller
+     * @return - The RingerController
+     */
+    static synchronized RingerController getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new RingerController(
+                    appContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE),
+                    new SystemRinger(appContext));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param preferences - Where the state is persisted
+     * @param ringer - What's driven
+     */
+    RingerController(SharedPreferences preferences, Ringer ringer) {
+        mPreferences = preferences;
+        mRinger = ringer;
+        mPipeline = new TransitionPipeline(
+                mPreferences.getStringSet(KEY_OCCUPIED, new HashSet<String>()),
+                HysteresisConfig.DEFAULT.getDebounceWindow(),
+                readPendingExits(mPreferences));
+    }
+
+    /**
+     * Applies the fences triggered by a single geofencing event
+     * @param transition - The Geofence.GEOFENCE_TRANSITION_* of the event
+     * @param fenceIds - The request ids of the triggering fences (entry or exit fences)
+     * @return - Whether the ringer mode was changed
+     */
+    synchronized boolean onTransition(int transition, Collection<String> fenceIds) {
+        boolean isRingerChanged =
+                apply(mPipeline.onTransition(transition, fenceIds, System.currentTimeMillis()));
+        // An exit was held back, or an enter cancelled one
+        scheduleFlush();
+        return isRingerChanged;
+    }
+
+    /**
+     * Applies the held back exits which weren't cancelled within the debounce window
+     * @return - Whether the ringer mode was changed
+     */
+    synchronized boolean flush() {
+        boolean isRingerChanged = apply(mPipeline.flush(System.currentTimeMillis()));
+        scheduleFlush();
+        return isRingerChanged;
+    }
+
+    /**
+     * Forgets fences which were unregistered, restoring the ringer if none is left
+     * @param fenceIds - The request ids of the unregistered fences
+     */
+    synchronized void forgetFences(Collection<String> fenceIds) {
+        apply(mPipeline.forget(fenceIds));
+    }
+
+    /**
+     * Doubts the places the device was inside of, once Play Services dropped every fence
+     * (e.g. on reboot). The ringer is left alone: the fences added again rebuild the occupied
+     * places, and those not reported within the stale window are left.
+     */
+    synchronized void markStale() {
+        mPipeline.markStale(HysteresisConfig.DEFAULT.getStaleWindow(), System.currentTimeMillis());
+        apply(RingerStateMachine.ACTION_NONE);
+        scheduleFlush();
+    }
+
+    /**
+     * Forgets every fence (e.g. once they were all unregistered), restoring the ringer
+     */
+    synchronized void reset() {
+        apply(mPipeline.reset());
+        scheduleFlush();
+    }
+
+    /**
+     * Persists the state and performs the action decided by the state machine
+     * @param action - One of the RingerStateMachine.ACTION_* constants
+     * @return - Whether the ringer mode was changed
+     */
+    private boolean apply(int action) {
+        int currentMode = mRinger.getRingerMode();
+        SharedPreferences.Editor editor = mPreferences.edit()
+                .putStringSet(KEY_OCCUPIED, mPipeline.getOccupied())
+                .putStringSet(KEY_PENDING_EXITS, toStringSet(mPipeline.getPendingExits()));
+
+        switch (action) {
+            case RingerStateMachine.ACTION_SILENCE:
+                // Remembers what the user had, so it's restored later on
+                editor.putInt(KEY_SAVED_MODE, currentMode);
+                editor.commit();
+                if (currentMode != AudioManager.RINGER_MODE_SILENT) {
+                    mRinger.setRingerMode(AudioManager.RINGER_MODE_SILENT);
+                    mRinger.notifyRingerChange();
+                    Metrics.RINGER_FLIPS.increment();
+                    return true;
+                }
+                return false;
+            case RingerStateMachine.ACTION_RESTORE:
+                int savedMode = mPreferences.getInt(KEY_SAVED_MODE, NO_SAVED_MODE);
+                if (savedMode == NO_SAVED_MODE) savedMode = AudioManager.RINGER_MODE_NORMAL;
+                editor.remove(KEY_SAVED_MODE);
+                editor.commit();
+                if (currentMode != savedMode) {
+                    mRinger.setRingerMode(savedMode);
+                    mRinger.notifyRingerChange();
+                    Metrics.RINGER_FLIPS.increment();
+                    return true;
+                }
+                return false;
+            default:
+                editor.commit();
+                return false;
+        }
+    }
+
+    /**
+     * Sets (or cancels) the alarm which wakes the receiver up to flush the pending exits
+     */
+    private void scheduleFlush() {
+        mRinger.scheduleFlush(mPipeline.getNextDeadline());
+    }
+
+    private static Map<String, Long> readPendingExits(SharedPreferences preferences) {
+        Map<String, Long> pendingExits = new HashMap<>();
+        for (String entry : preferences.getStringSet(KEY_PENDING_EXITS, new HashSet<String>())) {
+            int separator = entry.indexOf(PENDING_EXIT_SEPARATOR);
+            if (separator < 0) continue;
+            try {
+                pendingExits.put(entry.substring(separator + 1),
+                        Long.parseLong(entry.substring(0, separator)));
+            } catch (NumberFormatException e) {
+                // Skips a corrupted entry
+            }
+        }
+        return pendingExits;
+    }
+
+    private static Set<String> toStringSet(Map<String, Long> pendingExits) {
+        Set<String> entries = new HashSet<>();
+        for (Map.Entry<String, Long> entry : pendingExits.entrySet()) {
+            entries.add(entry.getValue() + String.valueOf(PENDING_EXIT_SEPARATOR) + entry.getKey());
+        }
+        return entries;
+    }
+
+    /**
+     * Drives the device's ringer, through the system services
+     */
+    private static class SystemRinger implements Ringer {
+
+        private final Context mContext;
+
+        SystemRinger(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public int getRingerMode() {
+            return Util.getRingerMode(mContext);
+        }
+
+        @Override
+        public void setRingerMode(int mode) {
+            Util.setRingerMode(mContext, mode);
+        }
+
+        @Override
+        public void notifyRingerChange() {
+            Util.notifyUserOfRingerChange(mContext);
+        }
+
+        @Override
+        public void scheduleFlush(long deadline) {
+            AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager == null) return;
+
+            Intent intent = new Intent(mContext, GeofenceBroadcastReceived.class)
+                    .setAction(GeofenceBroadcastReceived.ACTION_FLUSH_TRANSITIONS);
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(
+                    mContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+            if (deadline == Long.MAX_VALUE) {
+                alarmManager.cancel(pendingIntent);
+            } else {
+                alarmManager.set(AlarmManager.RTC_WAKEUP, deadline, pendingIntent);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An immutable description of a circular geofence, as handed to a GeofenceBackend.
+ * This mirrors the parameters of the platform's Geofence without depending on Android.
+ */
+public final class FenceSpec {
+
+    // Transition types (the same values as the platform's Geofence.GEOFENCE_TRANSITION_*)
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+    // The same value as the platform's Geofence.NEVER_EXPIRE
+    public static final long NEVER_EXPIRE = -1;
+
+    private final String mRequestId;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final float mRadius;
+    private final int mTransitionTypes;
+    private final int mLoiteringDelay;
+    private final int mResponsiveness;
+    private final long mExpirationDuration;
+
+    /**
+     * @param requestId - The id reported along with the transitions
+     * @param radius - The radius of the fence (in meters)
+     * @param transitionTypes - The TRANSITION_* bit flags to be reported
+     * @param loiteringDelay - How long the device must stay inside before DWELL (in milliseconds)
+     * @param responsiveness - How late transitions may be reported (in milliseconds).
+     *                       0 is as soon as possible.
+     * @param expirationDuration - How long the fence lives (in milliseconds), or NEVER_EXPIRE
+     */
+    public FenceSpec(String requestId, double latitude, double longitude, float radius,
+                     int transitionTypes, int loiteringDelay, int responsiveness,
+                     long expirationDuration) {
+        mRequestId = requestId;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadius = radius;
+        mTransitionTypes = transitionTypes;
+        mLoiteringDelay = loiteringDelay;
+        mResponsiveness = responsiveness;
+        mExpirationDuration = expirationDuration;
+    }
+
+    public String getRequestId() {
+        return mRequestId;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public float getRadius() {
+        return mRadius;
+    }
+
+    public int getTransitionTypes() {
+        return mTransitionTypes;
+    }
+
+    public int getLoiteringDelay() {
+        return mLoiteringDelay;
+    }
+
+    public int getResponsiveness() {
+        return mResponsiveness;
+    }
+
+    public long getExpirationDuration() {
+        return mExpirationDuration;
+    }
+}
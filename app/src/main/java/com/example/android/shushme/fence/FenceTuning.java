@@ -0,0 +1,147 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
+
+/**
+ * Picks the parameters of a place's fences: the place's own settings where it has them,
+ * automatic ones otherwise.
+ * <ul>
+ * <li>Radius: at least the default one, grown to the size of the place and to the accuracy
+ * of the device's location (a fence smaller than the fix's error triggers at random).</li>
+ * <li>Responsiveness: how long the device would take to reach the fence, so far away fences
+ * let the platform poll the location less often.</li>
+ * <li>Loitering delay: the hysteresis setting.</li>
+ * </ul>
+ * Automatic values are rounded to steps, so small changes of the inputs don't change the
+ * fences (and have them registered again).
+ */
+public final class FenceTuning {
+
+    // The largest automatic radius (in meters), so a city sized place doesn't fence a whole city
+    static final float MAX_AUTO_RADIUS = 500;
+    // Automatic radii are rounded up to this (in meters)
+    static final float RADIUS_STEP = 10;
+    // The location accuracy is rounded up to one of these (in meters), so its jitter doesn't
+    // change the fences (which would register them all again)
+    static final float[] ACCURACY_BUCKETS = {25, 50, 100, 200, MAX_AUTO_RADIUS};
+    // How fast the device is assumed to approach a fence (in meters per second, about 100 km/h)
+    static final double APPROACH_SPEED = 30;
+    // The largest automatic responsiveness (in milliseconds)
+    static final int MAX_AUTO_RESPONSIVENESS = 5 * 60 * 1000;
+    // Automatic responsiveness is rounded down to this (in milliseconds)
+    static final int RESPONSIVENESS_STEP = 30 * 1000;
+    // The distance to a place is rounded down to one of these (in meters), for the same reason
+    static final double[] DISTANCE_BANDS = {0, 2000, 5000, 10000};
+
+    private final float mDefaultRadius;
+    private final HysteresisConfig mHysteresis;
+
+    /**
+     * @param defaultRadius - The smallest automatic radius (in meters)
+     * @param hysteresis - The hysteresis settings
+     */
+    public FenceTuning(float defaultRadius, HysteresisConfig hysteresis) {
+        mDefaultRadius = defaultRadius;
+        mHysteresis = hysteresis;
+    }
+
+    /**
+     * Gets the radius of a place's entry fence
+     * @param place - The fenced place
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     * @return - The radius (in meters)
+     */
+    public float getRadius(PlaceSnapshot place, float accuracy) {
+        if (place.getRadius() > 0) return place.getRadius();
+
+        float radius = Math.max(mDefaultRadius, Math.max(place.getSize(), quantizeAccuracy(accuracy)));
+        radius = (float) Math.ceil(radius / RADIUS_STEP) * RADIUS_STEP;
+        return Math.max(mDefaultRadius, Math.min(radius, MAX_AUTO_RADIUS));
+    }
+
+    /**
+     * Gets how long the device must stay inside a place before it counts as entered
+     * @param place - The fenced place
+     * @return - The loitering delay (in milliseconds), 0 to react to the plain ENTER
+     */
+    public int getLoiteringDelay(PlaceSnapshot place) {
+        return place.getLoiteringDelay() >= 0
+                ? place.getLoiteringDelay()
+                : mHysteresis.getLoiteringDelay();
+    }
+
+    /**
+     * Gets how late the transitions of a place's fences may be reported
+     * @param place - The fenced place
+     * @param radius - The radius of its entry fence (in meters)
+     * @param distance - How far the device is from the place (in meters), or a negative
+     *                 value if unknown
+     * @return - The responsiveness (in milliseconds), 0 for as soon as possible
+     */
+    public int getResponsiveness(PlaceSnapshot place, float radius, double distance) {
+        if (place.getResponsiveness() >= 0) return place.getResponsiveness();
+        if (distance < 0) return 0;
+
+        // The time to reach the fence, had the device headed straight for it from the near
+        // end of its band
+        double seconds = Math.max(0, quantizeDistance(distance) - radius) / APPROACH_SPEED;
+        long responsiveness = (long) (seconds * 1000) / RESPONSIVENESS_STEP * RESPONSIVENESS_STEP;
+        return (int) Math.min(responsiveness, MAX_AUTO_RESPONSIVENESS);
+    }
+
+    /**
+     * @return - Whether the place's fences depend on the device's location (its accuracy or
+     * its distance), so they're tuned again as the device moves
+     */
+    public boolean isLocationTuned(PlaceSnapshot place) {
+        return place.getRadius() <= 0 || place.getResponsiveness() < 0;
+    }
+
+    public HysteresisConfig getHysteresis() {
+        return mHysteresis;
+    }
+
+    /**
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     * @return - The smallest accuracy bucket holding it, or 0 if unknown
+     */
+    static float quantizeAccuracy(float accuracy) {
+        if (!(accuracy > 0)) return 0;
+        for (float bucket : ACCURACY_BUCKETS) {
+            if (accuracy <= bucket) return bucket;
+        }
+        return MAX_AUTO_RADIUS;
+    }
+
+    /**
+     * @param distance - How far the device is from a place (in meters)
+     * @return - The near end of the distance band holding it
+     */
+    static double quantizeDistance(double distance) {
+        double band = 0;
+        for (double start : DISTANCE_BANDS) {
+            if (distance >= start) band = start;
+        }
+        return band;
+    }
+}
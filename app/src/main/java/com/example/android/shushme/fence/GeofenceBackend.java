@@ -0,0 +1,75 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+/**
+ * Where geofences are registered: Play Services on a device, or a simulation on a plain JVM.
+ * <p>
+ * Transitions aren't part of this interface, as each backend reports them its own way
+ * (a broadcast for Play Services, a listener for the simulation).
+ */
+public interface GeofenceBackend {
+
+    // Initial triggers (the same values as the platform's GeofencingRequest.INITIAL_TRIGGER_*)
+    int INITIAL_TRIGGER_ENTER = 1;
+    int INITIAL_TRIGGER_EXIT = 2;
+    int INITIAL_TRIGGER_DWELL = 4;
+
+    // Status codes (the same values as Play Services' CommonStatusCodes and GeofenceStatusCodes)
+    int STATUS_SUCCESS = 0;
+    int STATUS_ERROR = 13;
+    int STATUS_GEOFENCE_NOT_AVAILABLE = 1000;
+    int STATUS_TOO_MANY_GEOFENCES = 1001;
+
+    /**
+     * Receives the status of an add/remove call
+     */
+    interface Callback {
+        void onResult(int statusCode);
+    }
+
+    /**
+     * @return - Whether calls can be made right now (e.g. the client is connected)
+     */
+    boolean isAvailable();
+
+    /**
+     * Adds geofences, replacing the ones registered with the same request ids
+     * @param fences - The geofences to be added
+     * @param initialTrigger - The INITIAL_TRIGGER_* bit flags, for devices already inside/outside
+     * @param callback - Receives the status
+     */
+    void addGeofences(List<FenceSpec> fences, int initialTrigger, Callback callback);
+
+    /**
+     * Removes geofences. Request ids which aren't registered are ignored.
+     * @param requestIds - The request ids of the geofences to be removed
+     * @param callback - Receives the status
+     */
+    void removeGeofences(List<String> requestIds, Callback callback);
+
+    /**
+     * Removes every geofence added through this backend
+     * @param callback - Receives the status
+     */
+    void removeAllGeofences(Callback callback);
+}
@@ -0,0 +1,247 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.geo.GeoMath;
+import com.example.android.shushme.geo.NearestPlaceSelector;
+import com.example.android.shushme.geo.PlaceSpatialIndex;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the stored places into the desired geofences: only the enabled places are fenced and,
+ * when they don't all fit within the geofence limit, only the ones nearest to the device.
+ * Each desired fence comes with a signature of its parameters, so a changed fence is noticed.
+ * The parameters come from a FenceTuning, fed with the device's location when it's known.
+ * <p>
+ * This class doesn't depend on Android, nor is it thread safe.
+ */
+public final class GeofenceSelection {
+
+    private final List<PlaceSnapshot> mPlaces;
+    private final int mMaxPlaces;
+    private final FenceTuning mTuning;
+    private final long mExpirationDuration;
+    private final HysteresisConfig mHysteresis;
+    private final NearestPlaceSelector mSelector;
+    private final int[] mPositions;
+    private final double[] mDistances;
+
+    // The desired geofences, and a signature of their parameters, by request id
+    private final Map<String, FenceSpec> mFences = new LinkedHashMap<>();
+    private final Map<String, String> mSignatures = new LinkedHashMap<>();
+    // The selected places which fences depend on the device's location
+    private final List<PlaceSnapshot> mLocationTuned = new ArrayList<>();
+
+    /**
+     * @param places - The stored places (only the enabled ones are fenced)
+     * @param maxGeofences - How many geofences can be registered at most
+     * @param tuning - Picks the parameters of each place's fences
+     * @param expirationDuration - How long the fences live (in milliseconds)
+     * @param reselectDistance - How far the device may move before selecting again (in meters)
+     */
+    public GeofenceSelection(List<PlaceSnapshot> places, int maxGeofences, FenceTuning tuning,
+                             long expirationDuration, float reselectDistance) {
+        HysteresisConfig hysteresis = tuning.getHysteresis();
+        mTuning = tuning;
+        mExpirationDuration = expirationDuration;
+        mHysteresis = hysteresis;
+        // Each place may take more than one geofence
+        mMaxPlaces = Math.max(1, maxGeofences / hysteresis.getFencesPerPlace());
+
+        mPlaces = new ArrayList<>();
+        if (places != null) {
+            for (PlaceSnapshot place : places) {
+                if (place.isEnabled()) mPlaces.add(place);
+            }
+        }
+
+        // Only index the places when they don't all fit
+        int count = mPlaces.size();
+        if (count > mMaxPlaces) {
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            for (int i = 0; i < count; i++) {
+                latitudes[i] = mPlaces.get(i).getLatitude();
+                longitudes[i] = mPlaces.get(i).getLongitude();
+            }
+            mSelector = new NearestPlaceSelector(
+                    new PlaceSpatialIndex(latitudes, longitudes, count),
+                    mMaxPlaces,
+                    reselectDistance
+            );
+            mPositions = new int[mMaxPlaces];
+            mDistances = new double[mMaxPlaces];
+        } else {
+            mSelector = null;
+            mPositions = null;
+            mDistances = null;
+        }
+    }
+
+    /**
+     * Selects the first places, for when the location of the device is unknown
+     */
+    public void selectFirst() {
+        clear();
+        int count = Math.min(mPlaces.size(), mMaxPlaces);
+        for (int i = 0; i < count; i++) {
+            addFences(mPlaces.get(i), 0, -1);
+        }
+    }
+
+    /**
+     * Selects the places nearest to the device
+     * @param latitude - The latitude of the device (in degrees)
+     * @param longitude - The longitude of the device (in degrees)
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     */
+    public void selectNearest(double latitude, double longitude, float accuracy) {
+        clear();
+        if (mSelector == null) {
+            for (PlaceSnapshot place : mPlaces) {
+                double distance = GeoMath.haversine(latitude, longitude,
+                        place.getLatitude(), place.getLongitude());
+                addFences(place, accuracy, distance);
+            }
+            return;
+        }
+
+        int count = mSelector.select(latitude, longitude, mPositions, mDistances);
+        for (int i = 0; i < count; i++) {
+            addFences(mPlaces.get(mPositions[i]), accuracy, mDistances[i]);
+        }
+    }
+
+    /**
+     * Returns whether the places should be selected again for the passed position
+     * @param latitude - The latitude of the device (in degrees)
+     * @param longitude - The longitude of the device (in degrees)
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     * @return - Whether some places are left out and the device moved far enough, or the
+     * fences of a selected place would be tuned differently (another accuracy bucket or
+     * distance band)
+     */
+    public boolean needsReselection(double latitude, double longitude, float accuracy) {
+        if (mSelector != null && mSelector.needsReselection(latitude, longitude)) return true;
+
+        for (PlaceSnapshot place : mLocationTuned) {
+            double distance = GeoMath.haversine(latitude, longitude,
+                    place.getLatitude(), place.getLongitude());
+            if (!buildSignature(place, accuracy, distance).equals(mSignatures.get(place.getPlaceId()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return - Whether the fences of some selected place depend on the device's location
+     */
+    public boolean isLocationTuned() {
+        return !mLocationTuned.isEmpty();
+    }
+
+    /**
+     * @return - Whether some enabled places are left out of the selection
+     */
+    public boolean isPartial() {
+        return mSelector != null;
+    }
+
+    /**
+     * @return - The desired geofences, by request id
+     */
+    public Map<String, FenceSpec> getFences() {
+        return Collections.unmodifiableMap(mFences);
+    }
+
+    /**
+     * @return - The signatures of the desired geofences, by request id
+     */
+    public Map<String, String> getSignatures() {
+        return Collections.unmodifiableMap(mSignatures);
+    }
+
+    /**
+     * @return - How many places can be selected
+     */
+    public int getMaxPlaces() {
+        return mMaxPlaces;
+    }
+
+    private void clear() {
+        mFences.clear();
+        mSignatures.clear();
+        mLocationTuned.clear();
+    }
+
+    /**
+     * Builds the fences of a single place and adds them to the desired ones
+     * @param place - The place to be fenced
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     * @param distance - How far the device is from the place (in meters), or -1 if unknown
+     */
+    private void addFences(PlaceSnapshot place, float accuracy, double distance) {
+        float radius = mTuning.getRadius(place, accuracy);
+        int loiteringDelay = mTuning.getLoiteringDelay(place);
+        int responsiveness = mTuning.getResponsiveness(place, radius, distance);
+        String signature = buildSignature(place, radius, loiteringDelay, responsiveness);
+        if (mTuning.isLocationTuned(place)) mLocationTuned.add(place);
+        for (FenceSpec fence : PlaceFences.build(place, radius, loiteringDelay, responsiveness,
+                mExpirationDuration, mHysteresis)) {
+            mFences.put(fence.getRequestId(), fence);
+            mSignatures.put(fence.getRequestId(), signature);
+        }
+    }
+
+    /**
+     * Builds the signature of a place's fences, tuned to the passed location
+     * @param place - The fenced place
+     * @param accuracy - The accuracy of the device's location (in meters), or 0 if unknown
+     * @param distance - How far the device is from the place (in meters), or -1 if unknown
+     * @return - The signature of the place's fences
+     */
+    private String buildSignature(PlaceSnapshot place, float accuracy, double distance) {
+        float radius = mTuning.getRadius(place, accuracy);
+        return buildSignature(place, radius, mTuning.getLoiteringDelay(place),
+                mTuning.getResponsiveness(place, radius, distance));
+    }
+
+    /**
+     * Builds a string which changes whenever the fences of a place would change
+     * @param place - The fenced place
+     * @param radius - The radius of its entry fence (in meters)
+     * @param loiteringDelay - The loitering delay of its entry fence (in milliseconds)
+     * @param responsiveness - The responsiveness of its fences (in milliseconds)
+     * @return - The signature of the place's fences
+     */
+    private String buildSignature(PlaceSnapshot place, float radius, int loiteringDelay,
+                                  int responsiveness) {
+        return place.getLatitude() + "," + place.getLongitude() + "," + radius + ","
+                + loiteringDelay + "," + responsiveness + "," + mHysteresis;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the geofences of a place, so the app and the simulation fence places the same way
+ */
+public final class PlaceFences {
+
+    private PlaceFences() {
+    }
+
+    /**
+     * Builds the fences of a single place: an entry fence, which reports DWELL once the device
+     * loitered inside it (or ENTER, without a loitering delay), and a larger exit fence which
+     * only reports EXIT, so jitter around the entry fence's boundary doesn't count as leaving.
+     * Without an exit fence, the entry fence reports EXIT itself.
+     * @param place - The place to be fenced
+     * @param radius - The radius of the entry fence (in meters)
+     * @param loiteringDelay - The loitering delay of the entry fence (in milliseconds)
+     * @param responsiveness - The responsiveness of the fences (in milliseconds)
+     * @param expirationDuration - How long the fences live (in milliseconds)
+     * @param hysteresis - The hysteresis settings
+     * @return - The fences (one or two, see HysteresisConfig.getFencesPerPlace())
+     */
+    public static List<FenceSpec> build(PlaceSnapshot place, float radius, int loiteringDelay,
+                                        int responsiveness, long expirationDuration,
+                                        HysteresisConfig hysteresis) {
+        List<FenceSpec> fences = new ArrayList<>(hysteresis.getFencesPerPlace());
+
+        int transitionTypes = loiteringDelay > 0
+                ? FenceSpec.TRANSITION_DWELL
+                : FenceSpec.TRANSITION_ENTER;
+        if (!hysteresis.hasExitFence()) transitionTypes |= FenceSpec.TRANSITION_EXIT;
+        fences.add(new FenceSpec(
+                place.getPlaceId(),
+                place.getLatitude(),
+                place.getLongitude(),
+                radius,
+                transitionTypes,
+                loiteringDelay,
+                responsiveness,
+                expirationDuration
+        ));
+
+        if (hysteresis.hasExitFence()) {
+            fences.add(new FenceSpec(
+                    HysteresisConfig.exitFenceId(place.getPlaceId()),
+                    place.getLatitude(),
+                    place.getLongitude(),
+                    radius * hysteresis.getExitRadiusFactor(),
+                    FenceSpec.TRANSITION_EXIT,
+                    0,
+                    responsiveness,
+                    expirationDuration
+            ));
+        }
+        return fences;
+    }
+
+    /**
+     * Gets how the fences should react when the device is already inside once they're added.
+     * Places may or may not have a loitering delay, so both are asked for: each fence only
+     * reports the transitions it was built for (ENTER right away, or DWELL after loitering).
+     * @return - The GeofenceBackend.INITIAL_TRIGGER_* flags
+     */
+    public static int getInitialTrigger() {
+        return GeofenceBackend.INITIAL_TRIGGER_ENTER | GeofenceBackend.INITIAL_TRIGGER_DWELL;
+    }
+}
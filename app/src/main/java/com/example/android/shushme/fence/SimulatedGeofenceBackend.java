@@ -0,0 +1,271 @@
+package com.example.android.shushme.fence;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.geo.GeometryKernel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-process GeofenceBackend: registered fences are checked against location fixes fed
+ * through onLocation(), reporting ENTER, EXIT and DWELL the way Play Services does:
+ * <ul>
+ * <li>ENTER/EXIT when a fix crosses the boundary (fixes are taken as exact).</li>
+ * <li>DWELL once the device stayed inside for the loitering delay, once per stay.</li>
+ * <li>The initial trigger applies to the first fix after a fence was added.</li>
+ * <li>Fences expire silently, and adding more than the limit fails the whole call.</li>
+ * </ul>
+ * Time is the time of the fixes, so a simulation runs as fast as fixes can be fed.
+ * The fences are kept in a GeometryKernel, with their state in parallel arrays, so checking
+ * a fix doesn't allocate.
+ * <p>
+ * This class doesn't depend on Android, nor is it thread safe. Calls report their status
+ * synchronously.
+ */
+public final class SimulatedGeofenceBackend implements GeofenceBackend {
+
+    // The platform's limit of geofences per app
+    public static final int MAX_GEOFENCES = 100;
+
+    private static final byte STATE_UNKNOWN = 0;
+    private static final byte STATE_OUTSIDE = 1;
+    private static final byte STATE_INSIDE = 2;
+
+    /**
+     * Receives the fences triggered by a fix, grouped by transition (like a GeofencingEvent).
+     * The list is reused once this returns, so it must be copied to be kept.
+     */
+    public interface TransitionListener {
+        void onTransition(int transition, List<String> requestIds, long time);
+    }
+
+    private final int mMaxGeofences;
+    private final TransitionListener mListener;
+    private final Map<String, Integer> mSlots = new HashMap<>();
+
+    // The fences' geometry, by slot
+    private final GeometryKernel mGeometry;
+    private final String[] mIds;
+    private final int[] mTransitionTypes;
+    private final int[] mLoiteringDelays;
+    private final int[] mInitialTriggers;
+    private final long[] mExpiresAt;
+    private final byte[] mStates;
+    private final long[] mEnteredAt;
+    private final boolean[] mIsDwellPending;
+    // Whether each fence contains the last fix
+    private final boolean[] mIsInside;
+    private long mNow;
+
+    private final List<String> mEntered;
+    private final List<String> mDwelled;
+    private final List<String> mExited;
+
+    public SimulatedGeofenceBackend(TransitionListener listener) {
+        this(MAX_GEOFENCES, listener);
+    }
+
+    /**
+     * @param maxGeofences - How many fences can be registered at once
+     * @param listener - Receives the transitions
+     */
+    public SimulatedGeofenceBackend(int maxGeofences, TransitionListener listener) {
+        mMaxGeofences = maxGeofences;
+        mListener = listener;
+        mGeometry = new GeometryKernel(maxGeofences);
+        mIds = new String[maxGeofences];
+        mTransitionTypes = new int[maxGeofences];
+        mLoiteringDelays = new int[maxGeofences];
+        mInitialTriggers = new int[maxGeofences];
+        mExpiresAt = new long[maxGeofences];
+        mStates = new byte[maxGeofences];
+        mEnteredAt = new long[maxGeofences];
+        mIsDwellPending = new boolean[maxGeofences];
+        mIsInside = new boolean[maxGeofences];
+        mEntered = new ArrayList<>(maxGeofences);
+        mDwelled = new ArrayList<>(maxGeofences);
+        mExited = new ArrayList<>(maxGeofences);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void addGeofences(List<FenceSpec> fences, int initialTrigger, Callback callback) {
+        // The platform rejects the whole call once the limit would be exceeded
+        int added = 0;
+        for (FenceSpec fence : fences) {
+            if (!mSlots.containsKey(fence.getRequestId())) added++;
+        }
+        if (mGeometry.size() + added > mMaxGeofences) {
+            callback.onResult(STATUS_TOO_MANY_GEOFENCES);
+            return;
+        }
+
+        for (FenceSpec fence : fences) {
+            Integer slot = mSlots.get(fence.getRequestId());
+            int i;
+            if (slot != null) {
+                i = slot;
+                mGeometry.set(i, fence.getLatitude(), fence.getLongitude(), fence.getRadius());
+            } else {
+                i = mGeometry.add(fence.getLatitude(), fence.getLongitude(), fence.getRadius());
+            }
+            mSlots.put(fence.getRequestId(), i);
+            mIds[i] = fence.getRequestId();
+
+            mTransitionTypes[i] = fence.getTransitionTypes();
+            mLoiteringDelays[i] = fence.getLoiteringDelay();
+            mInitialTriggers[i] = initialTrigger;
+            mExpiresAt[i] = fence.getExpirationDuration() < 0
+                    ? Long.MAX_VALUE
+                    : mNow + fence.getExpirationDuration();
+            // A replaced fence starts over, like on the platform
+            mStates[i] = STATE_UNKNOWN;
+            mEnteredAt[i] = 0;
+            mIsDwellPending[i] = false;
+        }
+        callback.onResult(STATUS_SUCCESS);
+    }
+
+    @Override
+    public void removeGeofences(List<String> requestIds, Callback callback) {
+        for (String requestId : requestIds) {
+            Integer slot = mSlots.get(requestId);
+            if (slot != null) removeSlot(slot);
+        }
+        callback.onResult(STATUS_SUCCESS);
+    }
+
+    @Override
+    public void removeAllGeofences(Callback callback) {
+        mSlots.clear();
+        for (int i = 0; i < mGeometry.size(); i++) {
+            mIds[i] = null;
+        }
+        mGeometry.clear();
+        callback.onResult(STATUS_SUCCESS);
+    }
+
+    /**
+     * Checks a location fix against every registered fence, reporting the transitions
+     * @param latitude - The latitude of the fix (in degrees)
+     * @param longitude - The longitude of the fix (in degrees)
+     * @param time - The time of the fix (in milliseconds). Fixes must come in order.
+     */
+    public void onLocation(double latitude, double longitude, long time) {
+        mNow = time;
+        mEntered.clear();
+        mDwelled.clear();
+        mExited.clear();
+
+        int i = 0;
+        while (i < mGeometry.size()) {
+            if (mExpiresAt[i] <= time) {
+                // The last fence takes this slot, so it's checked next
+                removeSlot(i);
+            } else {
+                i++;
+            }
+        }
+
+        int count = mGeometry.size();
+        mGeometry.containment(latitude, longitude, mIsInside);
+        for (i = 0; i < count; i++) {
+            boolean isInside = mIsInside[i];
+            int types = mTransitionTypes[i];
+
+            if (mStates[i] == STATE_UNKNOWN) {
+                int initialTrigger = mInitialTriggers[i];
+                if (isInside) {
+                    if ((initialTrigger & INITIAL_TRIGGER_ENTER) != 0
+                            && (types & FenceSpec.TRANSITION_ENTER) != 0) {
+                        mEntered.add(mIds[i]);
+                    }
+                    mEnteredAt[i] = time;
+                    mIsDwellPending[i] = (initialTrigger & INITIAL_TRIGGER_DWELL) != 0;
+                } else if ((initialTrigger & INITIAL_TRIGGER_EXIT) != 0
+                        && (types & FenceSpec.TRANSITION_EXIT) != 0) {
+                    mExited.add(mIds[i]);
+                }
+            } else if (isInside && mStates[i] == STATE_OUTSIDE) {
+                if ((types & FenceSpec.TRANSITION_ENTER) != 0) mEntered.add(mIds[i]);
+                mEnteredAt[i] = time;
+                mIsDwellPending[i] = true;
+            } else if (!isInside && mStates[i] == STATE_INSIDE) {
+                if ((types & FenceSpec.TRANSITION_EXIT) != 0) mExited.add(mIds[i]);
+                mIsDwellPending[i] = false;
+            }
+
+            if (isInside && mIsDwellPending[i] && time - mEnteredAt[i] >= mLoiteringDelays[i]) {
+                if ((types & FenceSpec.TRANSITION_DWELL) != 0) mDwelled.add(mIds[i]);
+                mIsDwellPending[i] = false;
+            }
+
+            mStates[i] = isInside ? STATE_INSIDE : STATE_OUTSIDE;
+        }
+
+        if (!mEntered.isEmpty()) mListener.onTransition(FenceSpec.TRANSITION_ENTER, mEntered, time);
+        if (!mDwelled.isEmpty()) mListener.onTransition(FenceSpec.TRANSITION_DWELL, mDwelled, time);
+        if (!mExited.isEmpty()) mListener.onTransition(FenceSpec.TRANSITION_EXIT, mExited, time);
+    }
+
+    /**
+     * @return - How many fences are registered
+     */
+    public int getGeofenceCount() {
+        return mGeometry.size();
+    }
+
+    /**
+     * @param requestId - The request id of a fence
+     * @return - Whether the fence is registered (and didn't expire)
+     */
+    public boolean isRegistered(String requestId) {
+        return mSlots.containsKey(requestId);
+    }
+
+    /**
+     * Removes a fence, moving the last one into its slot
+     * @param slot - The slot of the fence to be removed
+     */
+    private void removeSlot(int slot) {
+        mSlots.remove(mIds[slot]);
+        mGeometry.remove(slot);
+        int last = mGeometry.size();
+        if (slot != last) {
+            mIds[slot] = mIds[last];
+            mTransitionTypes[slot] = mTransitionTypes[last];
+            mLoiteringDelays[slot] = mLoiteringDelays[last];
+            mInitialTriggers[slot] = mInitialTriggers[last];
+            mExpiresAt[slot] = mExpiresAt[last];
+            mStates[slot] = mStates[last];
+            mEnteredAt[slot] = mEnteredAt[last];
+            mIsDwellPending[slot] = mIsDwellPending[last];
+            mSlots.put(mIds[slot], slot);
+        }
+        mIds[last] = null;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.util.Backoff;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the details of many places through a PlaceLookup, without a single large or failing
+ * request holding back every other place:
+ * <ul>
+ * <li>The ids are split into chunks of a bounded size, each looked up on its own.</li>
+ * <li>A limited number of chunks is in flight at once, and every lookup takes a permit
+ * from a TokenBucket first.</li>
+ * <li>The places of each chunk are handed to the listener as soon as they're fetched.</li>
+ * <li>Only the chunks which failed are retried, each with its own Backoff, until they run
+ * out of attempts.</li>
+ * </ul>
+ * This class doesn't depend on Android. Fetches may run from several threads at once.
+ */
+public final class ChunkedPlaceFetcher {
+
+    /**
+     * Receives the outcome of every chunk, on the thread which called fetch()
+     */
+    public interface Listener {
+        /**
+         * @param places - The places fetched by a chunk
+         */
+        void onPlacesFetched(List<PlaceSnapshot> places);
+
+        /**
+         * @param ids - The ids of a chunk which ran out of attempts
+         * @param error - The error of its last attempt
+         */
+        void onChunkFailed(List<String> ids, IOException error);
+    }
+
+    /**
+     * How the ids are split and how failed chunks are retried
+     */
+    public static final class Config {
+
+        final int mChunkSize;
+        final int mMaxConcurrent;
+        final long mInitialRetryDelay;
+        final long mMaxRetryDelay;
+        final int mMaxRetries;
+
+        /**
+         * @param chunkSize - How many ids are looked up at once
+         * @param maxConcurrent - How many chunks can be in flight at once, retries waiting on
+         *                      their delay included
+         * @param initialRetryDelay - The delay before a chunk's first retry (in milliseconds)
+         * @param maxRetryDelay - The longest delay between a chunk's retries (in milliseconds)
+         * @param maxRetries - How many times a chunk is retried before giving up on it
+         */
+        public Config(int chunkSize, int maxConcurrent, long initialRetryDelay,
+                      long maxRetryDelay, int maxRetries) {
+            if (chunkSize < 1) throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            if (maxConcurrent < 1) {
+                throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrent);
+            }
+            if (initialRetryDelay < 0 || maxRetryDelay < initialRetryDelay || maxRetries < 0) {
+                throw new IllegalArgumentException("Invalid retries");
+            }
+            mChunkSize = chunkSize;
+            mMaxConcurrent = maxConcurrent;
+            mInitialRetryDelay = initialRetryDelay;
+            mMaxRetryDelay = maxRetryDelay;
+            mMaxRetries = maxRetries;
+        }
+
+        public int getChunkSize() {
+            return mChunkSize;
+        }
+
+        public int getMaxConcurrent() {
+            return mMaxConcurrent;
+        }
+    }
+
+    private final PlaceLookup mLookup;
+    private final TokenBucket mRateLimiter;
+    private final ScheduledExecutorService mExecutor;
+    private final Config mConfig;
+
+    /**
+     * @param lookup - Looks up the chunks
+     * @param rateLimiter - Paces the lookups. May be shared with other fetchers.
+     * @param executor - Runs the lookups. It needs at least maxConcurrent threads for every
+     *                 chunk in flight to actually run at once.
+     * @param config - How the ids are split and how failed chunks are retried
+     */
+    public ChunkedPlaceFetcher(PlaceLookup lookup, TokenBucket rateLimiter,
+                               ScheduledExecutorService executor, Config config) {
+        mLookup = lookup;
+        mRateLimiter = rateLimiter;
+        mExecutor = executor;
+        mConfig = config;
+    }
+
+    /**
+     * Fetches the details of the passed places, blocking until every chunk was fetched or
+     * ran out of attempts
+     * @param ids - The ids of the places to be fetched
+     * @param listener - Receives the places as they're fetched, and the chunks given up on
+     * @return - The ids of the chunks given up on (empty if every chunk was fetched)
+     * @throws InterruptedException - If interrupted while waiting, the chunks in flight
+     *                              being cancelled
+     */
+    public List<String> fetch(List<String> ids, Listener listener) throws InterruptedException {
+        Queue<Chunk> waiting = new ArrayDeque<>();
+        for (int start = 0; start < ids.size(); start += mConfig.mChunkSize) {
+            List<String> chunkIds = ids.subList(start, Math.min(ids.size(), start + mConfig.mChunkSize));
+            waiting.add(new Chunk(new ArrayList<>(chunkIds), new Backoff(
+                    mConfig.mInitialRetryDelay, mConfig.mMaxRetryDelay, mConfig.mMaxRetries)));
+        }
+
+        BlockingQueue<Chunk> done = new LinkedBlockingQueue<>();
+        List<Chunk> inFlight = new ArrayList<>(mConfig.mMaxConcurrent);
+        List<String> failedIds = new ArrayList<>();
+        try {
+            while (!waiting.isEmpty() || !inFlight.isEmpty()) {
+                while (inFlight.size() < mConfig.mMaxConcurrent && !waiting.isEmpty()) {
+                    Chunk chunk = waiting.remove();
+                    submit(chunk, 0, done);
+                    inFlight.add(chunk);
+                }
+
+                Chunk chunk = done.take();
+                if (chunk.mError == null) {
+                    inFlight.remove(chunk);
+                    listener.onPlacesFetched(chunk.mPlaces);
+                    continue;
+                }
+
+                // Only this chunk is tried again, keeping its slot while it waits
+                long delay = chunk.mBackoff.nextDelay();
+                if (delay >= 0) {
+                    submit(chunk, delay, done);
+                } else {
+                    inFlight.remove(chunk);
+                    failedIds.addAll(chunk.mIds);
+                    listener.onChunkFailed(chunk.mIds, chunk.mError);
+                }
+            }
+        } finally {
+            // Only left over when interrupted (or the listener threw)
+            for (Chunk chunk : inFlight) {
+                chunk.mFuture.cancel(true);
+            }
+        }
+        return failedIds;
+    }
+
+    /**
+     * Schedules an attempt of a chunk, which queues it on done once it's over
+     */
+    private void submit(final Chunk chunk, long delay, final BlockingQueue<Chunk> done) {
+        chunk.mPlaces = null;
+        chunk.mError = null;
+        chunk.mFuture = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mRateLimiter.acquire();
+                    chunk.mPlaces = mLookup.lookup(Collections.unmodifiableList(chunk.mIds));
+                } catch (IOException e) {
+                    chunk.mError = e;
+                } catch (InterruptedException e) {
+                    // Cancelled, nobody is waiting on the chunk anymore
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // Still reported, so the fetch doesn't wait on the chunk forever
+                    chunk.mError = new IOException("Lookup failed", e);
+                }
+                done.add(chunk);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A chunk of ids and the state of its current attempt. The attempt's fields are written
+     * by the lookup thread, and read once the chunk was taken off the done queue.
+     */
+    private static final class Chunk {
+
+        final List<String> mIds;
+        final Backoff mBackoff;
+        Future<?> mFuture;
+        List<PlaceSnapshot> mPlaces;
+        IOException mError;
+
+        Chunk(List<String> ids, Backoff backoff) {
+            mIds = ids;
+            mBackoff = backoff;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Looks up the details of places by their ids (e.g. against the Places API).
+ * Implementations block, and may be called from several threads at once.
+ */
+public interface PlaceLookup {
+
+    /**
+     * @param ids - The ids of the places to be looked up
+     * @return - The details of the places which were found (unknown ids are left out)
+     * @throws IOException - If the lookup failed as a whole, so it may be retried
+     */
+    List<PlaceSnapshot> lookup(List<String> ids) throws IOException;
+}
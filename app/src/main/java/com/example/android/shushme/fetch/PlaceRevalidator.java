@@ -0,0 +1,164 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revalidates places through a ChunkedPlaceFetcher without holding up the serial executor the
+ * places are stored on. The fetch (retries and their delays included) is waited on by a
+ * thread of its own, and every chunk fetched is handed back to the serial executor, behind
+ * whatever was queued there meanwhile (e.g. a place the user just picked).
+ * <p>
+ * A single revalidation runs at once: starting one cancels the one in progress, keeping the
+ * chunks it already handed over.
+ * <p>
+ * This class doesn't depend on Android.
+ */
+public final class PlaceRevalidator {
+
+    /**
+     * Receives the outcome of a revalidation, on the serial executor
+     */
+    public interface Sink {
+        /**
+         * @param places - The places fetched by a chunk, to be stored
+         */
+        void onPlacesFetched(List<PlaceSnapshot> places);
+
+        /**
+         * @param ids - The ids of a chunk which ran out of attempts (they keep their details)
+         * @param error - The error of its last attempt
+         */
+        void onChunkFailed(List<String> ids, IOException error);
+
+        /**
+         * Called once places were stored, at most every publish interval, and once more
+         * after the last chunk if any place is left unpublished
+         */
+        void onPublish();
+    }
+
+    private final ChunkedPlaceFetcher mFetcher;
+    private final Executor mSerialExecutor;
+    private final ExecutorService mWaitExecutor;
+    private final long mPublishInterval;
+    // The revalidation in progress (guarded by this)
+    private Future<?> mRevalidation;
+
+    /**
+     * @param fetcher - Fetches the places
+     * @param serialExecutor - Where the places are stored (e.g. the thread reading them too)
+     * @param waitExecutor - Waits on the fetches. A single thread is enough.
+     * @param publishInterval - How often the stored places are published at most
+     *                        (in milliseconds)
+     */
+    public PlaceRevalidator(ChunkedPlaceFetcher fetcher, Executor serialExecutor,
+                            ExecutorService waitExecutor, long publishInterval) {
+        mFetcher = fetcher;
+        mSerialExecutor = serialExecutor;
+        mWaitExecutor = waitExecutor;
+        mPublishInterval = TimeUnit.MILLISECONDS.toNanos(publishInterval);
+    }
+
+    /**
+     * Starts revalidating places, cancelling the revalidation in progress. Returns right away.
+     * @param ids - The ids of the places to be fetched
+     * @param sink - Receives the places as they're fetched
+     */
+    public synchronized void revalidate(final List<String> ids, final Sink sink) {
+        if (mRevalidation != null) mRevalidation.cancel(true);
+        mRevalidation = mWaitExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Publisher publisher = new Publisher(sink);
+                try {
+                    mFetcher.fetch(ids, publisher);
+                } catch (InterruptedException e) {
+                    // Cancelled by a newer revalidation
+                    Thread.currentThread().interrupt();
+                }
+                // Shows the last fresh details, even if cancelled
+                publisher.publishPending();
+            }
+        });
+    }
+
+    /**
+     * Hands every chunk over to the serial executor. Its state is only used there.
+     */
+    private class Publisher implements ChunkedPlaceFetcher.Listener {
+
+        private final Sink mSink;
+        private long mPublishedAt = System.nanoTime();
+        private boolean mIsPending;
+
+        Publisher(Sink sink) {
+            mSink = sink;
+        }
+
+        @Override
+        public void onPlacesFetched(final List<PlaceSnapshot> places) {
+            mSerialExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mSink.onPlacesFetched(places);
+                    mIsPending = true;
+                    if (System.nanoTime() - mPublishedAt >= mPublishInterval) publish();
+                }
+            });
+        }
+
+        @Override
+        public void onChunkFailed(final List<String> ids, final IOException error) {
+            mSerialExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mSink.onChunkFailed(ids, error);
+                }
+            });
+        }
+
+        /**
+         * Publishes the places stored since the last time, if any
+         */
+        void publishPending() {
+            mSerialExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (mIsPending) publish();
+                }
+            });
+        }
+
+        private void publish() {
+            mSink.onPublish();
+            mPublishedAt = System.nanoTime();
+            mIsPending = false;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter: permits are refilled at a steady rate, and up to a burst of
+ * them can be saved up while idle.
+ * <p>
+ * Permits are handed out in the order they're asked for: a caller which finds the bucket
+ * empty reserves the next permit to come (taking the bucket into debt) and waits for it,
+ * so no caller is starved. This class is thread safe.
+ */
+public final class TokenBucket {
+
+    /**
+     * Tells the time and waits for it to pass
+     */
+    public interface Clock {
+        /**
+         * @return - The current time (in nanoseconds, from an arbitrary origin)
+         */
+        long nanoTime();
+
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    // The system's monotonic clock
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    };
+
+    private final Clock mClock;
+    private final double mPermitsPerNano;
+    private final double mBurst;
+    private double mPermits;
+    private long mLastRefill;
+
+    /**
+     * @param permitsPerSecond - How many permits are refilled every second
+     * @param burst - How many permits can be saved up (the bucket starts full)
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param permitsPerSecond - How many permits are refilled every second
+     * @param burst - How many permits can be saved up (the bucket starts full)
+     * @param clock - Tells the time the permits are refilled at, and waits for them
+     */
+    public TokenBucket(double permitsPerSecond, int burst, Clock clock) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("Invalid rate: " + permitsPerSecond);
+        }
+        if (burst < 1) throw new IllegalArgumentException("Invalid burst: " + burst);
+
+        mPermitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurst = burst;
+        mPermits = burst;
+        mClock = clock;
+        mLastRefill = clock.nanoTime();
+    }
+
+    /**
+     * Takes a permit, blocking until it's available
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve(mClock.nanoTime());
+        if (wait > 0) mClock.sleep(wait);
+    }
+
+    /**
+     * Takes a permit without waiting for it
+     * @param now - The current time (as of the clock)
+     * @return - How long the caller must wait before using the permit (in nanoseconds)
+     */
+    public synchronized long reserve(long now) {
+        if (now > mLastRefill) {
+            mPermits = Math.min(mBurst, mPermits + (now - mLastRefill) * mPermitsPerNano);
+            mLastRefill = now;
+        }
+
+        mPermits -= 1;
+        return mPermits >= 0 ? 0 : (long) Math.ceil(-mPermits / mPermitsPerNano);
+    }
+}
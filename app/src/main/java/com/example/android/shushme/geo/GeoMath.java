@@ -0,0 +1,67 @@
+package com.example.android.shushme.geo;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Plain Java geometry helpers over latitude/longitude pairs (in degrees).
+ * This package doesn't depend on Android, so it can be exercised on a plain JVM.
+ */
+public final class GeoMath {
+
+    // Mean radius of the Earth (in meters)
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Great-circle distance between two points using the haversine formula
+     * @return - The distance (in meters)
+     */
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Converts a straight line (chord) distance between two points on the unit sphere
+     * into the great-circle distance between them
+     * @param chord - The chord length on the unit sphere
+     * @return - The distance (in meters)
+     */
+    public static double chordToMeters(double chord) {
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, chord / 2));
+    }
+
+    /**
+     * Converts a great-circle distance into the matching chord length on the unit sphere
+     * @param meters - The distance (in meters)
+     * @return - The chord length on the unit sphere
+     */
+    public static double metersToChord(double meters) {
+        double angle = Math.min(Math.PI, meters / EARTH_RADIUS);
+        return 2 * Math.sin(angle / 2);
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.android.shushme.geo;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Places (or fences) kept as unit vectors in parallel primitive arrays, answering distance,
+ * containment and nearest-K queries for a single point in batch.
+ * <p>
+ * Coordinates are converted once, when a place is set, so queries are flat loops of
+ * multiplications over the arrays: no trigonometry per place, no objects, no allocation
+ * (the JIT can vectorize them too). Distances are compared as squared chords, which keeps
+ * full precision down to centimeters, unlike dot products near 1 (and why these are doubles:
+ * a float can't tell a 100 meter chord from 0).
+ * <p>
+ * Unlike PlaceSpatialIndex, places can be set and removed at any time, and each may carry
+ * a radius. For repeated nearest-K queries over many places which rarely change, the
+ * index is faster.
+ * <p>
+ * This class doesn't depend on Android, nor is it thread safe (queries share scratch state).
+ */
+public final class GeometryKernel {
+
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mZ;
+    // A place contains a point if their squared chord is at most this
+    private final double[] mMaxChordSquared;
+    // Squared chords to the last queried point
+    private final double[] mChordsSquared;
+    private int mSize;
+
+    /**
+     * @param capacity - How many places can be held at once
+     */
+    public GeometryKernel(int capacity) {
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mZ = new double[capacity];
+        mMaxChordSquared = new double[capacity];
+        mChordsSquared = new double[capacity];
+    }
+
+    /**
+     * Builds a kernel holding the passed places, in order
+     * @param latitudes - The latitudes of the places (in degrees)
+     * @param longitudes - The longitudes of the places (in degrees)
+     * @param radii - The radius of each place (in meters). May be null for none.
+     * @param size - How many entries of the arrays are to be held
+     * @return - The kernel, at capacity
+     */
+    public static GeometryKernel of(double[] latitudes, double[] longitudes, float[] radii, int size) {
+        GeometryKernel kernel = new GeometryKernel(size);
+        for (int i = 0; i < size; i++) {
+            kernel.add(latitudes[i], longitudes[i], radii != null ? radii[i] : 0);
+        }
+        return kernel;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mX.length;
+    }
+
+    /**
+     * Appends a place
+     * @param latitude - The latitude of the place (in degrees)
+     * @param longitude - The longitude of the place (in degrees)
+     * @param radius - The radius of the place (in meters), for containment queries
+     * @return - The index of the place
+     * @throws IllegalStateException - If the kernel is at capacity
+     */
+    public int add(double latitude, double longitude, double radius) {
+        if (mSize == mX.length) throw new IllegalStateException("The kernel is full: " + mSize);
+        int index = mSize++;
+        set(index, latitude, longitude, radius);
+        return index;
+    }
+
+    /**
+     * Replaces a place
+     * @param index - The index of the place, below size()
+     * @param latitude - The latitude of the place (in degrees)
+     * @param longitude - The longitude of the place (in degrees)
+     * @param radius - The radius of the place (in meters), for containment queries
+     */
+    public void set(int index, double latitude, double longitude, double radius) {
+        if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index: " + index);
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        mX[index] = cosLat * Math.cos(lng);
+        mY[index] = cosLat * Math.sin(lng);
+        mZ[index] = Math.sin(lat);
+        double maxChord = GeoMath.metersToChord(Math.max(0, radius));
+        mMaxChordSquared[index] = maxChord * maxChord;
+    }
+
+    /**
+     * Removes a place, moving the last one into its index (so removing keeps the arrays packed)
+     * @param index - The index of the place, below size()
+     */
+    public void remove(int index) {
+        if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index: " + index);
+        int last = --mSize;
+        mX[index] = mX[last];
+        mY[index] = mY[last];
+        mZ[index] = mZ[last];
+        mMaxChordSquared[index] = mMaxChordSquared[last];
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Computes the great-circle distance from a point to every place
+     * @param latitude - The latitude of the point (in degrees)
+     * @param longitude - The longitude of the point (in degrees)
+     * @param outMeters - Receives the distance to each place (in meters), by index.
+     *                  Must hold at least size() entries.
+     */
+    public void distances(double latitude, double longitude, double[] outMeters) {
+        computeChords(latitude, longitude);
+        double[] chordsSquared = mChordsSquared;
+        for (int i = 0; i < mSize; i++) {
+            outMeters[i] = GeoMath.chordToMeters(Math.sqrt(chordsSquared[i]));
+        }
+    }
+
+    /**
+     * Checks which places contain a point
+     * @param latitude - The latitude of the point (in degrees)
+     * @param longitude - The longitude of the point (in degrees)
+     * @param outInside - Receives whether each place contains the point, by index.
+     *                  Must hold at least size() entries.
+     */
+    public void containment(double latitude, double longitude, boolean[] outInside) {
+        computeChords(latitude, longitude);
+        double[] chordsSquared = mChordsSquared;
+        double[] maxChordsSquared = mMaxChordSquared;
+        for (int i = 0; i < mSize; i++) {
+            outInside[i] = chordsSquared[i] <= maxChordsSquared[i];
+        }
+    }
+
+    /**
+     * Finds the places which contain a point
+     * @param latitude - The latitude of the point (in degrees)
+     * @param longitude - The longitude of the point (in degrees)
+     * @param outIndices - Receives the indices of the containing places, in index order
+     * @return - How many places contain the point (only as many as outIndices holds are written)
+     */
+    public int containing(double latitude, double longitude, int[] outIndices) {
+        computeChords(latitude, longitude);
+        double[] chordsSquared = mChordsSquared;
+        double[] maxChordsSquared = mMaxChordSquared;
+        int found = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (chordsSquared[i] <= maxChordsSquared[i]) {
+                if (found < outIndices.length) outIndices[found] = i;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the places nearest to a point, closest first
+     * @param latitude - The latitude of the point (in degrees)
+     * @param longitude - The longitude of the point (in degrees)
+     * @param k - How many places are wanted
+     * @param outIndices - Receives the indices of the places found. Must hold at least k entries.
+     * @param outMeters - Receives the distance to each place found (in meters).
+     *                  Must hold at least k entries.
+     * @return - How many places were found (at most k)
+     */
+    public int nearest(double latitude, double longitude, int k, int[] outIndices, double[] outMeters) {
+        int wanted = Math.min(k, mSize);
+        if (wanted <= 0) return 0;
+        computeChords(latitude, longitude);
+        double[] chordsSquared = mChordsSquared;
+
+        // A bounded max-heap of the nearest places found so far, kept in the output arrays
+        int found = 0;
+        for (int i = 0; i < mSize; i++) {
+            double chordSquared = chordsSquared[i];
+            if (found < wanted) {
+                int child = found++;
+                outIndices[child] = i;
+                outMeters[child] = chordSquared;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (outMeters[parent] >= outMeters[child]) break;
+                    swap(outIndices, outMeters, parent, child);
+                    child = parent;
+                }
+            } else if (chordSquared < outMeters[0]) {
+                outIndices[0] = i;
+                outMeters[0] = chordSquared;
+                siftDown(outIndices, outMeters, 0, found);
+            }
+        }
+
+        // Heap sort in place, leaving the nearest place first
+        for (int last = found - 1; last > 0; last--) {
+            swap(outIndices, outMeters, 0, last);
+            siftDown(outIndices, outMeters, 0, last);
+        }
+        for (int i = 0; i < found; i++) {
+            outMeters[i] = GeoMath.chordToMeters(Math.sqrt(outMeters[i]));
+        }
+        return found;
+    }
+
+    /**
+     * Fills mChordsSquared with the squared chord from the point to every place
+     */
+    private void computeChords(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        double qx = cosLat * Math.cos(lng);
+        double qy = cosLat * Math.sin(lng);
+        double qz = Math.sin(lat);
+
+        // Locals and a plain counted loop, so the JIT keeps it tight
+        double[] x = mX;
+        double[] y = mY;
+        double[] z = mZ;
+        double[] chordsSquared = mChordsSquared;
+        for (int i = 0; i < mSize; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double dz = z[i] - qz;
+            chordsSquared[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    private static void siftDown(int[] indices, double[] keys, int parent, int size) {
+        while (true) {
+            int largest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && keys[left] > keys[largest]) largest = left;
+            if (right < size && keys[right] > keys[largest]) largest = right;
+            if (largest == parent) return;
+            swap(indices, keys, parent, largest);
+            parent = largest;
+        }
+    }
+
+    private static void swap(int[] indices, double[] keys, int a, int b) {
+        int index = indices[a];
+        indices[a] = indices[b];
+        indices[b] = index;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+}
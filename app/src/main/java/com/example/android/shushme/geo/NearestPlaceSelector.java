@@ -0,0 +1,99 @@
+package com.example.android.shushme.geo;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Picks which of the stored places should be registered as geofences.
+ * <p>
+ * The platform only accepts a limited number of geofences per app, so only the K places
+ * nearest to the device are selected. The selection is anchored on the position it was made
+ * from, and should be made again once the device moves further than the reselect distance.
+ */
+public final class NearestPlaceSelector {
+
+    private final PlaceSpatialIndex mIndex;
+    private final int mMaxPlaces;
+    private final double mReselectDistance;
+
+    private boolean mHasAnchor;
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+
+    /**
+     * @param index - The index over the stored places
+     * @param maxPlaces - How many places are selected at most (K)
+     * @param reselectDistance - How far the device may move before selecting again (in meters)
+     */
+    public NearestPlaceSelector(PlaceSpatialIndex index, int maxPlaces, double reselectDistance) {
+        mIndex = index;
+        mMaxPlaces = maxPlaces;
+        mReselectDistance = reselectDistance;
+    }
+
+    /**
+     * Selects the places nearest to the passed position and anchors the selection on it
+     * @param latitude - The latitude of the device (in degrees)
+     * @param longitude - The longitude of the device (in degrees)
+     * @param outPositions - Receives the positions of the selected places, closest first.
+     *                       Must hold at least getMaxPlaces() entries.
+     * @return - How many places were selected
+     */
+    public int select(double latitude, double longitude, int[] outPositions) {
+        return select(latitude, longitude, outPositions, null);
+    }
+
+    /**
+     * Selects the places nearest to the passed position and anchors the selection on it
+     * @param latitude - The latitude of the device (in degrees)
+     * @param longitude - The longitude of the device (in degrees)
+     * @param outPositions - Receives the positions of the selected places, closest first.
+     *                       Must hold at least getMaxPlaces() entries.
+     * @param outMeters - Receives the distance to each selected place (in meters). May be null.
+     * @return - How many places were selected
+     */
+    public int select(double latitude, double longitude, int[] outPositions, double[] outMeters) {
+        mHasAnchor = true;
+        mAnchorLatitude = latitude;
+        mAnchorLongitude = longitude;
+        return mIndex.nearest(latitude, longitude, mMaxPlaces, outPositions, outMeters);
+    }
+
+    /**
+     * Returns whether the selection should be made again for the passed position
+     * @param latitude - The latitude of the device (in degrees)
+     * @param longitude - The longitude of the device (in degrees)
+     * @return - True if there's no selection yet or the device moved past the reselect distance
+     */
+    public boolean needsReselection(double latitude, double longitude) {
+        // Nothing to gain if every place fits
+        if (mHasAnchor && mIndex.size() <= mMaxPlaces) return false;
+        return !mHasAnchor
+                || GeoMath.haversine(mAnchorLatitude, mAnchorLongitude, latitude, longitude)
+                        > mReselectDistance;
+    }
+
+    public int getMaxPlaces() {
+        return mMaxPlaces;
+    }
+
+    public double getReselectDistance() {
+        return mReselectDistance;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.android.shushme.geo;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An immutable k-d tree over place coordinates, answering nearest-K queries.
+ * <p>
+ * Points are stored as unit vectors (x, y, z) so the tree has no trouble with the
+ * poles or the antimeridian: the straight line distance between two unit vectors grows
+ * with the great-circle distance, so the K nearest chords are the K nearest places.
+ * The tree is implicit (the median of each range is its root), so it's just a few arrays.
+ */
+public final class PlaceSpatialIndex {
+
+    private final int mSize;
+    // Coordinates in tree order
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mZ;
+    // Maps a tree slot back to the position the point was passed in
+    private final int[] mPositions;
+
+    // Query state, reused between queries (guarded by this)
+    private double mQueryX;
+    private double mQueryY;
+    private double mQueryZ;
+    private int mWanted;
+    private int mFound;
+    private int[] mHeapPositions;
+    private double[] mHeapDistances;
+
+    /**
+     * Builds the index
+     * @param latitudes - The latitudes of the places (in degrees)
+     * @param longitudes - The longitudes of the places (in degrees)
+     * @param size - How many entries of the arrays are to be indexed
+     */
+    public PlaceSpatialIndex(double[] latitudes, double[] longitudes, int size) {
+        mSize = size;
+        mX = new double[size];
+        mY = new double[size];
+        mZ = new double[size];
+        mPositions = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            double lat = Math.toRadians(latitudes[i]);
+            double lng = Math.toRadians(longitudes[i]);
+            double cosLat = Math.cos(lat);
+            mX[i] = cosLat * Math.cos(lng);
+            mY[i] = cosLat * Math.sin(lng);
+            mZ[i] = Math.sin(lat);
+            mPositions[i] = i;
+        }
+
+        build(0, size, 0);
+    }
+
+    /**
+     * @return - How many places are indexed
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Finds the places nearest to a point, closest first
+     * @param latitude - The latitude of the point (in degrees)
+     * @param longitude - The longitude of the point (in degrees)
+     * @param k - How many places are wanted
+     * @param outPositions - Receives the positions (as passed to the constructor) of the places found
+     * @param outMeters - Receives the distance to each place found (in meters). May be null.
+     * @return - How many places were found (at most k)
+     */
+    public synchronized int nearest(double latitude, double longitude, int k,
+                                    int[] outPositions, double[] outMeters) {
+        if (k <= 0 || mSize == 0) return 0;
+
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        mQueryX = cosLat * Math.cos(lng);
+        mQueryY = cosLat * Math.sin(lng);
+        mQueryZ = Math.sin(lat);
+        mWanted = Math.min(k, mSize);
+        mFound = 0;
+        mHeapPositions = outPositions;
+        mHeapDistances = outMeters != null ? outMeters : new double[mWanted];
+
+        search(0, mSize, 0);
+
+        // Heap sort the max-heap in place, leaving the nearest place first
+        for (int last = mFound - 1; last > 0; last--) {
+            swapHeap(0, last);
+            siftDown(0, last);
+        }
+
+        int found = mFound;
+        for (int i = 0; i < found; i++) {
+            mHeapPositions[i] = mPositions[mHeapPositions[i]];
+            mHeapDistances[i] = GeoMath.chordToMeters(Math.sqrt(mHeapDistances[i]));
+        }
+        mHeapPositions = null;
+        mHeapDistances = null;
+        return found;
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) return;
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, depth % 3);
+        build(from, mid, depth + 1);
+        build(mid + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: reorders [left, right] so the slot k holds the median on the given axis,
+     * with smaller (or equal) values before it and larger (or equal) ones after it.
+     * The values equal to the pivot are gathered in the middle (three-way partition), so
+     * places sharing a coordinate (e.g. a bulk import of a single campus) stay linear.
+     */
+    private void select(int left, int right, int k, int axis) {
+        double[] values = axisValues(axis);
+        while (right > left) {
+            double pivot = values[(left + right) >>> 1];
+            // [left, lower) < pivot, [lower, i) == pivot, (upper, right] > pivot
+            int lower = left;
+            int upper = right;
+            int i = left;
+            while (i <= upper) {
+                if (values[i] < pivot) {
+                    swapPoints(lower++, i++);
+                } else if (values[i] > pivot) {
+                    swapPoints(i, upper--);
+                } else {
+                    i++;
+                }
+            }
+
+            if (k < lower) {
+                right = lower - 1;
+            } else if (k > upper) {
+                left = upper + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(int from, int to, int depth) {
+        if (from >= to) return;
+
+        int mid = (from + to) >>> 1;
+        double dx = mX[mid] - mQueryX;
+        double dy = mY[mid] - mQueryY;
+        double dz = mZ[mid] - mQueryZ;
+        offer(mid, dx * dx + dy * dy + dz * dz);
+
+        int axis = depth % 3;
+        double diff = axis == 0 ? -dx : axis == 1 ? -dy : -dz;
+        boolean goLeft = diff < 0;
+
+        // Visit the side the query falls in first, then the other only if it can hold something closer
+        if (goLeft) {
+            search(from, mid, depth + 1);
+        } else {
+            search(mid + 1, to, depth + 1);
+        }
+        if (mFound < mWanted || diff * diff < mHeapDistances[0]) {
+            if (goLeft) {
+                search(mid + 1, to, depth + 1);
+            } else {
+                search(from, mid, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Offers a candidate to the bounded max-heap of the nearest places found so far
+     */
+    private void offer(int slot, double distance) {
+        if (mFound < mWanted) {
+            int child = mFound++;
+            mHeapPositions[child] = slot;
+            mHeapDistances[child] = distance;
+            // Sift up
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (mHeapDistances[parent] >= mHeapDistances[child]) break;
+                swapHeap(parent, child);
+                child = parent;
+            }
+        } else if (distance < mHeapDistances[0]) {
+            mHeapPositions[0] = slot;
+            mHeapDistances[0] = distance;
+            siftDown(0, mFound);
+        }
+    }
+
+    private void siftDown(int parent, int size) {
+        while (true) {
+            int largest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && mHeapDistances[left] > mHeapDistances[largest]) largest = left;
+            if (right < size && mHeapDistances[right] > mHeapDistances[largest]) largest = right;
+            if (largest == parent) return;
+            swapHeap(parent, largest);
+            parent = largest;
+        }
+    }
+
+    private void swapHeap(int a, int b) {
+        int position = mHeapPositions[a];
+        mHeapPositions[a] = mHeapPositions[b];
+        mHeapPositions[b] = position;
+        double distance = mHeapDistances[a];
+        mHeapDistances[a] = mHeapDistances[b];
+        mHeapDistances[b] = distance;
+    }
+
+    private void swapPoints(int a, int b) {
+        double x = mX[a];
+        mX[a] = mX[b];
+        mX[b] = x;
+        double y = mY[a];
+        mY[a] = mY[b];
+        mY[b] = y;
+        double z = mZ[a];
+        mZ[a] = mZ[b];
+        mZ[b] = z;
+        int position = mPositions[a];
+        mPositions[a] = mPositions[b];
+        mPositions[b] = position;
+    }
+
+    private double[] axisValues(int axis) {
+        return axis == 0 ? mX : axis == 1 ? mY : mZ;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.shushme.metrics;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The process wide metrics of the app. Latencies are in microseconds.
+ */
+public final class Metrics {
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    // Refreshing the places: reading the local cache and publishing it. Revalidating it against
+    // the Places API goes on in the background, its lookups measured below.
+    public static final LatencyHistogram REFRESH_LATENCY = REGISTRY.histogram("refresh.total_us");
+    public static final LatencyHistogram PLACES_FETCH_LATENCY = REGISTRY.histogram("places.fetch_us");
+    public static final Counter PLACES_FETCH_FAILURES = REGISTRY.counter("places.fetch.failures");
+
+    // Calls to the geofence backend, from the call to its result
+    public static final LatencyHistogram GEOFENCE_ADD_LATENCY = REGISTRY.histogram("geofence.add_us");
+    public static final Counter GEOFENCE_ADD_FAILURES = REGISTRY.counter("geofence.add.failures");
+    public static final LatencyHistogram GEOFENCE_REMOVE_LATENCY = REGISTRY.histogram("geofence.remove_us");
+    public static final Counter GEOFENCE_REMOVE_FAILURES = REGISTRY.counter("geofence.remove.failures");
+
+    // Geofence events, from the broadcast being received to them being handled
+    public static final Counter TRANSITIONS_RECEIVED = REGISTRY.counter("transition.received");
+    public static final LatencyHistogram TRANSITION_LATENCY = REGISTRY.histogram("transition.handled_us");
+    // The subset of those which changed the ringer mode
+    public static final LatencyHistogram RINGER_CHANGE_LATENCY = REGISTRY.histogram("ringer.change_us");
+    public static final Counter RINGER_FLIPS = REGISTRY.counter("ringer.flips");
+
+    private Metrics() {
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.shushme.metrics;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Holds named counters and latency histograms, and writes them out as plain text.
+ * <p>
+ * Metrics are created once (typically as static fields, see Metrics) and then recorded
+ * without locking or allocating. Only creating, dumping and resetting take the lock.
+ * <p>
+ * The text format is one metric per line, sorted by creation:
+ * <pre>
+ * counter ringer.flips 12
+ * histogram geofence.add_us count=3 mean=812.0 p50=799 p90=1023 p99=1023 max=1020
+ * </pre>
+ */
+public final class MetricsRegistry {
+
+    private final List<Counter> mCounters = new ArrayList<>();
+    private final List<LatencyHistogram> mHistograms = new ArrayList<>();
+    private long mResetAt = System.currentTimeMillis();
+
+    /**
+     * Creates a counter, or gets the existing one with the same name
+     * @param name - The name of the counter
+     * @return - The counter
+     */
+    public synchronized Counter counter(String name) {
+        for (Counter counter : mCounters) {
+            if (counter.getName().equals(name)) return counter;
+        }
+        Counter counter = new Counter(name);
+        mCounters.add(counter);
+        return counter;
+    }
+
+    /**
+     * Creates a histogram, or gets the existing one with the same name
+     * @param name - The name of the histogram (by convention, ending with its unit)
+     * @return - The histogram
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        for (LatencyHistogram histogram : mHistograms) {
+            if (histogram.getName().equals(name)) return histogram;
+        }
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        mHistograms.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Writes every metric out in the text format
+     * @param writer - Receives the metrics
+     */
+    public synchronized void dump(PrintWriter writer) {
+        writer.println(String.format(Locale.US, "# since %tF %<tT", mResetAt));
+        for (Counter counter : mCounters) {
+            writer.println(String.format(Locale.US, "counter %s %d",
+                    counter.getName(), counter.get()));
+        }
+        for (LatencyHistogram histogram : mHistograms) {
+            writer.println(String.format(Locale.US,
+                    "histogram %s count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                    histogram.getName(),
+                    histogram.getCount(),
+                    histogram.getMean(),
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getMax()));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Zeroes every metric
+     */
+    public synchronized void reset() {
+        for (Counter counter : mCounters) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        mResetAt = System.currentTimeMillis();
+    }
+}
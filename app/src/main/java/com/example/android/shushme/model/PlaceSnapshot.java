@@ -0,0 +1,157 @@
+package com.example.android.shushme.model;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * An immutable copy of the details of a stored place, as cached on the local database.
+ * This is what the list and the geofences are built from.
+ */
+public final class PlaceSnapshot {
+
+    // For the fence settings, the value left to the app (see FenceTuning)
+    public static final int AUTO = -1;
+
+    private final String mPlaceId;
+    private final String mName;
+    private final String mAddress;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final float mRadius;
+    private final boolean mEnabled;
+    private final float mSize;
+    private final int mResponsiveness;
+    private final int mLoiteringDelay;
+
+    /**
+     * Builds a place which fence settings are all left to the app
+     * @param radius - The radius of the place's geofence (in meters), or 0 for an automatic one
+     * @param enabled - Whether the place's geofence should be registered
+     */
+    public PlaceSnapshot(String placeId, String name, String address, double latitude, double longitude,
+                         float radius, boolean enabled) {
+        this(placeId, name, address, latitude, longitude, radius, enabled, 0, AUTO, AUTO);
+    }
+
+    /**
+     * @param radius - The radius of the place's geofence (in meters), or 0 for an automatic one
+     * @param enabled - Whether the place's geofence should be registered
+     * @param size - The estimated radius of the place itself (in meters), or 0 if unknown
+     * @param responsiveness - How late the place's transitions may be reported (in milliseconds),
+     *                       or AUTO
+     * @param loiteringDelay - How long the device must stay inside the place before it counts
+     *                       as entered (in milliseconds), or AUTO
+     */
+    public PlaceSnapshot(String placeId, String name, String address, double latitude, double longitude,
+                         float radius, boolean enabled, float size, int responsiveness,
+                         int loiteringDelay) {
+        mPlaceId = placeId;
+        mName = name;
+        mAddress = address;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadius = radius;
+        mEnabled = enabled;
+        mSize = size;
+        mResponsiveness = responsiveness;
+        mLoiteringDelay = loiteringDelay;
+    }
+
+    public String getPlaceId() {
+        return mPlaceId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getAddress() {
+        return mAddress;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public float getRadius() {
+        return mRadius;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public float getSize() {
+        return mSize;
+    }
+
+    public int getResponsiveness() {
+        return mResponsiveness;
+    }
+
+    public int getLoiteringDelay() {
+        return mLoiteringDelay;
+    }
+
+    /**
+     * Two snapshots are equal if every detail of the place is the same
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof PlaceSnapshot)) return false;
+
+        PlaceSnapshot that = (PlaceSnapshot) other;
+        return Double.compare(mLatitude, that.mLatitude) == 0
+                && Double.compare(mLongitude, that.mLongitude) == 0
+                && Float.compare(mRadius, that.mRadius) == 0
+                && mEnabled == that.mEnabled
+                && Float.compare(mSize, that.mSize) == 0
+                && mResponsiveness == that.mResponsiveness
+                && mLoiteringDelay == that.mLoiteringDelay
+                && equal(mPlaceId, that.mPlaceId)
+                && equal(mName, that.mName)
+                && equal(mAddress, that.mAddress);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mPlaceId != null ? mPlaceId.hashCode() : 0;
+        result = 31 * result + (mName != null ? mName.hashCode() : 0);
+        result = 31 * result + (mAddress != null ? mAddress.hashCode() : 0);
+        long latitudeBits = Double.doubleToLongBits(mLatitude);
+        result = 31 * result + (int) (latitudeBits ^ (latitudeBits >>> 32));
+        long longitudeBits = Double.doubleToLongBits(mLongitude);
+        result = 31 * result + (int) (longitudeBits ^ (longitudeBits >>> 32));
+        result = 31 * result + Float.floatToIntBits(mRadius);
+        result = 31 * result + (mEnabled ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(mSize);
+        result = 31 * result + mResponsiveness;
+        result = 31 * result + mLoiteringDelay;
+        return result;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.android.shushme.model;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Checks that a place can be fenced: coordinates on the globe, and settings the geofence
+ * builder accepts. Places coming from outside the Places API (e.g. imported ones) must pass
+ * this before being stored, since an invalid fence fails the whole registration.
+ */
+public final class PlaceValidator {
+
+    // The largest radius of a geofence (in meters)
+    public static final float MAX_RADIUS = 100 * 1000;
+    // The longest responsiveness and loitering delay (in milliseconds, a day)
+    public static final int MAX_DELAY = 24 * 60 * 60 * 1000;
+
+    private PlaceValidator() {
+    }
+
+    /**
+     * @param place - The place to be checked
+     * @return - What's wrong with the place, or null if it's valid
+     */
+    public static String check(PlaceSnapshot place) {
+        if (place.getPlaceId() == null || place.getPlaceId().isEmpty()) return "Missing placeID";
+        if (!isWithin(place.getLatitude(), -90, 90)) return "Invalid latitude " + place.getLatitude();
+        if (!isWithin(place.getLongitude(), -180, 180)) return "Invalid longitude " + place.getLongitude();
+        if (!isWithin(place.getRadius(), 0, MAX_RADIUS)) return "Invalid radius " + place.getRadius();
+        if (!isWithin(place.getSize(), 0, Float.MAX_VALUE)) return "Invalid size " + place.getSize();
+        if (!isDelay(place.getResponsiveness())) {
+            return "Invalid responsiveness " + place.getResponsiveness();
+        }
+        if (!isDelay(place.getLoiteringDelay())) {
+            return "Invalid loitering delay " + place.getLoiteringDelay();
+        }
+        return null;
+    }
+
+    /**
+     * @return - Whether the value is within the bounds (NaN and infinities never are)
+     */
+    private static boolean isWithin(double value, double min, double max) {
+        return value >= min && value <= max;
+    }
+
+    private static boolean isDelay(int delay) {
+        return delay == PlaceSnapshot.AUTO || (delay >= 0 && delay <= MAX_DELAY);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.android.shushme.paging;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+/**
+ * A run of items loaded by a PageSource, along with the key of its last item, so the page
+ * after it can be loaded by key rather than by offset
+ */
+public final class Page<T> {
+
+    private final List<T> mItems;
+    private final long mLastKey;
+
+    /**
+     * @param items - The items, in order (fewer than asked for at the end of the source)
+     * @param lastKey - The key of the last item, or PageSource.NO_KEY
+     */
+    public Page(List<T> items, long lastKey) {
+        mItems = items;
+        mLastKey = lastKey;
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    public long getLastKey() {
+        return mLastKey;
+    }
+}
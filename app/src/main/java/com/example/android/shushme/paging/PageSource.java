@@ -0,0 +1,45 @@
+package com.example.android.shushme.paging;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Loads the items of a PagedList, a page at a time. Called off the main thread.
+ */
+public interface PageSource<T> {
+
+    // The key of a page which can only be loaded by offset
+    long NO_KEY = Long.MIN_VALUE;
+
+    /**
+     * @return - The keys of every item, in order (they grow along with the positions)
+     */
+    long[] keys();
+
+    /**
+     * Loads a run of items. Keys must grow along with the positions, so the items after a
+     * key are the ones after its position.
+     * @param offset - The position of the first item
+     * @param count - How many items to load
+     * @param afterKey - The key of the item before the first one, or NO_KEY if it's unknown
+     *                 (then the offset is used)
+     * @return - The items, with the key of the last one
+     */
+    Page<T> load(int offset, int count, long afterKey);
+}
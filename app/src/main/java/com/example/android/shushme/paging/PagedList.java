@@ -0,0 +1,331 @@
+package com.example.android.shushme.paging;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * A list which only holds the pages of items around where it's being read. Reading an item
+ * loads its page (and prefetches the ones within the prefetch distance) in the background;
+ * an item which isn't loaded yet reads as null, and the callback tells once it is.
+ * At most maxPages pages are held, the least recently read ones being dropped, so the
+ * memory used by the items doesn't depend on the size of the list. Only the keys of every
+ * item are held, so the items can be told apart before they're loaded (e.g. to diff a new
+ * list with the one it replaces).
+ * <p>
+ * A page following a loaded one is loaded by key (after the last key of the previous page),
+ * otherwise by offset, so scrolling never pays for skipping over the rows before it.
+ * <p>
+ * The list is a snapshot of the source's keys: once the source changes, a new list is
+ * loaded (see load()) and the old one detached. Only used on the main thread, besides the
+ * loads. This class doesn't depend on Android.
+ */
+public final class PagedList<T> {
+
+    /**
+     * Tells which items were loaded, on the main thread
+     */
+    public interface Callback {
+        void onItemsLoaded(int position, int count);
+    }
+
+    /**
+     * Receives a new list, on the main thread, once its size and first page are loaded
+     */
+    public interface ReadyListener<T> {
+        void onReady(PagedList<T> list);
+    }
+
+    /**
+     * How the pages are loaded and kept
+     */
+    public static final class Config {
+
+        final int mPageSize;
+        final int mPrefetchDistance;
+        final int mMaxPages;
+
+        /**
+         * @param pageSize - How many items a page holds
+         * @param prefetchDistance - How many items around the one being read are loaded ahead
+         * @param maxPages - How many pages are held at most. Must cover the items on screen
+         *                 along with the prefetch distance on both sides.
+         */
+        public Config(int pageSize, int prefetchDistance, int maxPages) {
+            if (pageSize <= 0) throw new IllegalArgumentException("Invalid page size: " + pageSize);
+            if (maxPages < 2 * ((prefetchDistance + pageSize - 1) / pageSize) + 1) {
+                throw new IllegalArgumentException("The pages can't cover the prefetch distance");
+            }
+            mPageSize = pageSize;
+            mPrefetchDistance = prefetchDistance;
+            mMaxPages = maxPages;
+        }
+    }
+
+    private final PageSource<T> mSource;
+    private final Config mConfig;
+    private final int mSize;
+    private final long[] mKeys;
+    private final Executor mLoadExecutor;
+    private final Executor mMainExecutor;
+
+    // The loaded pages by index, least recently read first
+    private final LinkedHashMap<Integer, Page<T>> mPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Integer> mLoading = new HashSet<>();
+    private Callback mCallback;
+    private volatile boolean mIsDetached;
+    // Read by the loads, so the pages scrolled past before they're loaded are skipped
+    private volatile int mLastPosition;
+
+    private PagedList(PageSource<T> source, Config config, long[] keys, int position,
+                      Executor loadExecutor, Executor mainExecutor) {
+        mSource = source;
+        mConfig = config;
+        mKeys = keys;
+        mSize = keys.length;
+        mLastPosition = position;
+        mLoadExecutor = loadExecutor;
+        mMainExecutor = mainExecutor;
+    }
+
+    /**
+     * Loads a new list in the background: its keys and the page holding the passed position
+     * @param source - The source of the items
+     * @param config - How the pages are loaded and kept
+     * @param position - The position which is read first (e.g. the one on the top of the
+     *                 screen), clamped to the list
+     * @param loadExecutor - Runs the loads
+     * @param mainExecutor - Runs on the main thread
+     * @param listener - Receives the list
+     */
+    public static <T> void load(final PageSource<T> source, final Config config, final int position,
+                                final Executor loadExecutor, final Executor mainExecutor,
+                                final ReadyListener<T> listener) {
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[] keys = source.keys();
+                final int size = keys.length;
+                final int clamped = Math.max(0, Math.min(position, size - 1));
+                final int index = clamped / config.mPageSize;
+                final Page<T> page = size > 0
+                        ? source.load(index * config.mPageSize, config.mPageSize, PageSource.NO_KEY)
+                        : null;
+
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        PagedList<T> list = new PagedList<>(source, config, keys, clamped,
+                                loadExecutor, mainExecutor);
+                        if (page != null) list.mPages.put(index, page);
+                        listener.onReady(list);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return - An empty list, which never loads anything
+     */
+    public static <T> PagedList<T> empty() {
+        return new PagedList<>(null, new Config(1, 0, 1), new long[0], 0, null, null);
+    }
+
+    /**
+     * @param callback - Told once items are loaded (may be null)
+     */
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Stops delivering loads (e.g. once the list was replaced)
+     */
+    public void detach() {
+        mIsDetached = true;
+        mCallback = null;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param position - The position of an item
+     * @return - The key of the item, loaded or not
+     */
+    public long getKey(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Invalid position " + position + ", size " + mSize);
+        }
+        return mKeys[position];
+    }
+
+    /**
+     * Finds the item with a key (the keys grow along with the positions)
+     * @param key - The key of the item
+     * @return - The position of the item, or -1 if it's not in the list
+     */
+    public int indexOfKey(long key) {
+        int position = Arrays.binarySearch(mKeys, key);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Returns an item, loading its page (and the pages within the prefetch distance) if needed
+     * @param position - The position of the item
+     * @return - The item, or null if it's not loaded yet
+     */
+    public T get(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Invalid position " + position + ", size " + mSize);
+        }
+        mLastPosition = position;
+
+        int index = position / mConfig.mPageSize;
+        // Reading the page marks it as recently used
+        Page<T> page = mPages.get(index);
+        // The page being read goes first, then the ones around it
+        loadPage(index);
+        int first = Math.max(0, position - mConfig.mPrefetchDistance) / mConfig.mPageSize;
+        int last = Math.min(mSize - 1, position + mConfig.mPrefetchDistance) / mConfig.mPageSize;
+        for (int i = first; i <= last; i++) {
+            loadPage(i);
+        }
+
+        if (page == null) return null;
+        int offset = position - index * mConfig.mPageSize;
+        return offset < page.getItems().size() ? page.getItems().get(offset) : null;
+    }
+
+    /**
+     * Returns an item if it's loaded, without loading anything (e.g. to compare a replaced
+     * list with the new one)
+     * @param position - The position of the item (may be beyond the list)
+     * @return - The item, or null if it's not loaded or beyond the list
+     */
+    public T peek(int position) {
+        if (position < 0 || position >= mSize) return null;
+
+        int index = position / mConfig.mPageSize;
+        // Unlike get(), doesn't mark the page as recently used
+        for (Map.Entry<Integer, Page<T>> entry : mPages.entrySet()) {
+            if (entry.getKey() != index) continue;
+            List<T> items = entry.getValue().getItems();
+            int offset = position - index * mConfig.mPageSize;
+            return offset < items.size() ? items.get(offset) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Tells the callback about the pages loaded so far (e.g. the first one, once it's set)
+     */
+    public void dispatchLoaded() {
+        if (mCallback == null) return;
+        // Copied, the callback may read the list
+        List<Map.Entry<Integer, Page<T>>> loaded = new ArrayList<>(mPages.entrySet());
+        for (Map.Entry<Integer, Page<T>> entry : loaded) {
+            mCallback.onItemsLoaded(entry.getKey() * mConfig.mPageSize,
+                    entry.getValue().getItems().size());
+        }
+    }
+
+    /**
+     * @return - How many pages are held
+     */
+    public int getPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * Loads a page in the background, unless it's loaded or being loaded
+     */
+    private void loadPage(final int index) {
+        if (mIsDetached || mPages.containsKey(index) || !mLoading.add(index)) return;
+
+        final int offset = index * mConfig.mPageSize;
+        final int count = Math.min(mConfig.mPageSize, mSize - offset);
+        // Keys only follow from a full previous page (a short one means the rows changed)
+        long afterKey = PageSource.NO_KEY;
+        for (Map.Entry<Integer, Page<T>> entry : mPages.entrySet()) {
+            if (entry.getKey() == index - 1
+                    && entry.getValue().getItems().size() == mConfig.mPageSize) {
+                afterKey = entry.getValue().getLastKey();
+                break;
+            }
+        }
+        final long key = afterKey;
+
+        mLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Page<T> page = null;
+                // Skips the pages scrolled past while this was queued
+                int distance = Math.abs(mLastPosition / mConfig.mPageSize - index);
+                if (!mIsDetached && distance <= mConfig.mMaxPages / 2) {
+                    try {
+                        page = mSource.load(offset, count, key);
+                    } catch (RuntimeException e) {
+                        // Left unloaded, so it's loaded again once it's read again
+                        page = null;
+                    }
+                }
+
+                final Page<T> loaded = page;
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(index, loaded);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Keeps a loaded page (dropping the least recently read ones beyond maxPages) and tells
+     * the callback. Runs on the main thread.
+     */
+    private void onPageLoaded(int index, Page<T> page) {
+        mLoading.remove(index);
+        if (mIsDetached || page == null) return;
+
+        mPages.put(index, page);
+        Iterator<Integer> eldest = mPages.keySet().iterator();
+        while (mPages.size() > mConfig.mMaxPages) {
+            eldest.next();
+            eldest.remove();
+        }
+
+        if (mCallback != null) {
+            mCallback.onItemsLoaded(index * mConfig.mPageSize, page.getItems().size());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.android.shushme.provider;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import static com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+
+/**
+ * Exposes a subset of the rows of a database cursor, in a given order, with an extra
+ * distance column.
+ * <p>
+ * Only the positions and distances of the matching rows are held in memory. The rows
+ * themselves are still read through the wrapped cursor, window by window.
+ */
+class NearbyPlacesCursor extends CursorWrapper {
+
+    private final int[] mPositions;
+    private final double[] mDistances;
+    private final int mDistanceColumn;
+    private int mPosition = -1;
+
+    /**
+     * @param cursor - The wrapped cursor
+     * @param positions - The positions of the wrapped cursor to be exposed, in order
+     * @param distances - The distance of each exposed row (in meters)
+     */
+    NearbyPlacesCursor(Cursor cursor, int[] positions, double[] distances) {
+        super(cursor);
+        mPositions = positions;
+        mDistances = distances;
+        mDistanceColumn = cursor.getColumnCount();
+    }
+
+    @Override
+    public int getCount() {
+        return mPositions.length;
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position < 0) {
+            mPosition = -1;
+            return false;
+        }
+        if (position >= mPositions.length) {
+            mPosition = mPositions.length;
+            return false;
+        }
+        mPosition = position;
+        return super.moveToPosition(mPositions[position]);
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(mPosition + offset);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(mPositions.length - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(mPosition - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return mPositions.length > 0 && mPosition == 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        return mPositions.length > 0 && mPosition == mPositions.length - 1;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return mPositions.length == 0 || mPosition == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return mPositions.length == 0 || mPosition == mPositions.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return mDistanceColumn + 1;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        String[] wrappedNames = super.getColumnNames();
+        String[] names = new String[wrappedNames.length + 1];
+        System.arraycopy(wrappedNames, 0, names, 0, wrappedNames.length);
+        names[wrappedNames.length] = PlaceEntry.COLUMN_DISTANCE;
+        return names;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return PlaceEntry.COLUMN_DISTANCE;
+        return super.getColumnName(columnIndex);
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        if (PlaceEntry.COLUMN_DISTANCE.equals(columnName)) return mDistanceColumn;
+        return super.getColumnIndex(columnName);
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        if (PlaceEntry.COLUMN_DISTANCE.equals(columnName)) return mDistanceColumn;
+        return super.getColumnIndexOrThrow(columnName);
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return FIELD_TYPE_FLOAT;
+        return super.getType(columnIndex);
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return false;
+        return super.isNull(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return mDistances[mPosition];
+        return super.getDouble(columnIndex);
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return (float) mDistances[mPosition];
+        return super.getFloat(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return (long) mDistances[mPosition];
+        return super.getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return (int) mDistances[mPosition];
+        return super.getInt(columnIndex);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        if (columnIndex == mDistanceColumn) return String.valueOf(mDistances[mPosition]);
+        return super.getString(columnIndex);
+    }
+}
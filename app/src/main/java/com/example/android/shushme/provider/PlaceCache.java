@@ -0,0 +1,246 @@
+package com.example.android.shushme.provider;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.example.android.shushme.geo.GeoMath;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.model.PlaceValidator;
+import com.google.android.gms.location.places.Place;
+import com.google.android.gms.location.places.PlaceBuffer;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+
+/**
+ * Helpers to read and write the place details cached on the places table
+ */
+public class PlaceCache {
+
+    private static final String LOG_TAG = PlaceCache.class.getCanonicalName();
+
+    // How long the cached details are trusted before being fetched again (24 hours, in milliseconds)
+    public static final long CACHE_TTL = 24 * 60 * 60 * 1000L;
+    // The share of a viewport's diagonal taken as the radius of the place it frames
+    private static final double VIEWPORT_SIZE_FACTOR = 0.25;
+
+    /**
+     * Returns whether the row the cursor is pointing at has cached details
+     * @param cursor - A cursor over the places table
+     * @return - Whether the row can be turned into a PlaceSnapshot
+     */
+    public static boolean hasDetails(Cursor cursor) {
+        int fetchedAtIndex = cursor.getColumnIndex(PlaceEntry.COLUMN_FETCHED_AT);
+        int latitudeIndex = cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_LATITUDE);
+        int longitudeIndex = cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_LONGITUDE);
+        return cursor.getLong(fetchedAtIndex) > 0
+                && !cursor.isNull(latitudeIndex)
+                && !cursor.isNull(longitudeIndex);
+    }
+
+    /**
+     * Returns whether the cached details of the row the cursor is pointing at should be fetched again
+     * @param cursor - A cursor over the places table
+     * @param now - The current time (epoch, in milliseconds)
+     * @return - Whether the details are missing or older than CACHE_TTL
+     */
+    public static boolean isStale(Cursor cursor, long now) {
+        long fetchedAt = cursor.getLong(cursor.getColumnIndex(PlaceEntry.COLUMN_FETCHED_AT));
+        return fetchedAt <= 0 || now - fetchedAt > CACHE_TTL;
+    }
+
+    /**
+     * Reads the stored places which have cached details. This only touches the local
+     * database (never the network), so it's cheap enough for headless callers.
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @param outStaleIds - Receives the ids which details are missing or expired. May be null.
+     * @return - The places which can be shown and fenced
+     */
+    public static List<PlaceSnapshot> read(ContentResolver resolver, @Nullable List<String> outStaleIds) {
+        List<PlaceSnapshot> places = new ArrayList<>();
+        Cursor dataCursor = null;
+        try {
+            dataCursor = resolver.query(
+                    PlaceEntry.CONTENT_URI,
+                    null,
+                    null,
+                    null,
+                    null
+            );
+
+            // Return early if no data is currently stored
+            if (dataCursor == null) return places;
+
+            long now = System.currentTimeMillis();
+            int placeIdIndex = dataCursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_ID);
+            while (dataCursor.moveToNext()) {
+                if (hasDetails(dataCursor)) {
+                    PlaceSnapshot place = toSnapshot(dataCursor);
+                    // A place which can't be fenced (e.g. imported by an older version) would
+                    // fail every registration, so it's left out
+                    String problem = PlaceValidator.check(place);
+                    if (problem == null) {
+                        places.add(place);
+                    } else {
+                        Log.w(LOG_TAG, String.format("Skipping place %s: %s", place.getPlaceId(), problem));
+                    }
+                }
+                if (outStaleIds != null && isStale(dataCursor, now)) {
+                    outStaleIds.add(dataCursor.getString(placeIdIndex));
+                }
+            }
+        } finally {
+            // Frees the cursor
+            if (dataCursor != null) dataCursor.close();
+        }
+        return places;
+    }
+
+    /**
+     * Builds a PlaceSnapshot out of the row the cursor is pointing at.
+     * Check hasDetails() before calling this.
+     * @param cursor - A cursor over the places table
+     * @return - The cached details of the place
+     */
+    public static PlaceSnapshot toSnapshot(Cursor cursor) {
+        return new PlaceSnapshot(
+                cursor.getString(cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_ID)),
+                cursor.getString(cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_NAME)),
+                cursor.getString(cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_ADDRESS)),
+                cursor.getDouble(cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_LATITUDE)),
+                cursor.getDouble(cursor.getColumnIndex(PlaceEntry.COLUMN_PLACE_LONGITUDE)),
+                cursor.getFloat(cursor.getColumnIndex(PlaceEntry.COLUMN_RADIUS)),
+                cursor.getInt(cursor.getColumnIndex(PlaceEntry.COLUMN_ENABLED)) != 0,
+                cursor.getFloat(cursor.getColumnIndex(PlaceEntry.COLUMN_SIZE)),
+                cursor.getInt(cursor.getColumnIndex(PlaceEntry.COLUMN_RESPONSIVENESS)),
+                cursor.getInt(cursor.getColumnIndex(PlaceEntry.COLUMN_LOITERING_DELAY))
+        );
+    }
+
+    /**
+     * Copies a place returned by the Places API into a PlaceSnapshot, so the (native backed)
+     * buffer holding it can be released right away
+     * @param place - The place returned by the Places API
+     * @return - A plain copy of the place's details
+     */
+    public static PlaceSnapshot toSnapshot(Place place) {
+        return new PlaceSnapshot(
+                place.getId(),
+                toStringOrNull(place.getName()),
+                toStringOrNull(place.getAddress()),
+                place.getLatLng().latitude,
+                place.getLatLng().longitude,
+                0,
+                true,
+                getSize(place.getViewport()),
+                PlaceSnapshot.AUTO,
+                PlaceSnapshot.AUTO
+        );
+    }
+
+    /**
+     * Estimates the radius of a place from its viewport. The viewport frames the place with
+     * some margin around it, so only a part of it is taken.
+     * @param viewport - The viewport returned by the Places API (nullable)
+     * @return - The estimated radius (in meters), or 0 if unknown
+     */
+    static float getSize(@Nullable LatLngBounds viewport) {
+        if (viewport == null) return 0;
+        double diagonal = GeoMath.haversine(
+                viewport.southwest.latitude, viewport.southwest.longitude,
+                viewport.northeast.latitude, viewport.northeast.longitude);
+        return (float) (diagonal * VIEWPORT_SIZE_FACTOR);
+    }
+
+    /**
+     * Copies every place of a buffer into PlaceSnapshots and releases the buffer
+     * @param places - The buffer returned by the Places API. It's released by this method.
+     * @return - Plain copies of the places' details
+     */
+    public static List<PlaceSnapshot> copyAndRelease(PlaceBuffer places) {
+        try {
+            List<PlaceSnapshot> snapshots = new ArrayList<>(places.getCount());
+            for (Place place : places) {
+                snapshots.add(toSnapshot(place));
+            }
+            return snapshots;
+        } finally {
+            places.release();
+        }
+    }
+
+    /**
+     * Builds the values of a places row, details included, out of a PlaceSnapshot.
+     * The user's settings (radius, enabled, responsiveness, loitering delay) are left out,
+     * so caching never overwrites them.
+     * @param place - The details of the place
+     * @param fetchedAt - When the place was fetched (epoch, in milliseconds)
+     * @return - The values to be inserted or updated
+     */
+    public static ContentValues toContentValues(PlaceSnapshot place, long fetchedAt) {
+        ContentValues values = new ContentValues();
+        values.put(PlaceEntry.COLUMN_PLACE_ID, place.getPlaceId());
+        values.put(PlaceEntry.COLUMN_PLACE_NAME, place.getName());
+        values.put(PlaceEntry.COLUMN_PLACE_ADDRESS, place.getAddress());
+        values.put(PlaceEntry.COLUMN_PLACE_LATITUDE, place.getLatitude());
+        values.put(PlaceEntry.COLUMN_PLACE_LONGITUDE, place.getLongitude());
+        values.put(PlaceEntry.COLUMN_SIZE, place.getSize());
+        values.put(PlaceEntry.COLUMN_FETCHED_AT, fetchedAt);
+        return values;
+    }
+
+    /**
+     * Updates the cached details of the passed places
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @param places - The details of the places
+     * @param fetchedAt - When the places were fetched (epoch, in milliseconds)
+     */
+    public static void store(ContentResolver resolver, List<PlaceSnapshot> places, long fetchedAt) {
+        // Updates every place within a single batch (one transaction, one notification)
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(places.size());
+        for (PlaceSnapshot place : places) {
+            operations.add(ContentProviderOperation.newUpdate(PlaceEntry.CONTENT_URI)
+                    .withValues(toContentValues(place, fetchedAt))
+                    .withSelection(PlaceEntry.COLUMN_PLACE_ID + "=?", new String[]{place.getPlaceId()})
+                    .build());
+        }
+
+        try {
+            resolver.applyBatch(PlaceContract.AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(LOG_TAG, "Failed to cache place details", e);
+        }
+    }
+
+    private static String toStringOrNull(CharSequence value) {
+        return value == null ? null : value.toString();
+    }
+}
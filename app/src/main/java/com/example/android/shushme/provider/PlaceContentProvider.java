@@ -17,16 +17,31 @@ package com.example.android.shushme.provider;
 */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
+import com.example.android.shushme.geo.GeoMath;
+import com.example.android.shushme.metrics.Metrics;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import static com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+import static com.example.android.shushme.provider.PlaceContract.ScheduleEntry;
 
 
 public class PlaceContentProvider extends ContentProvider {
@@ -36,6 +51,9 @@ public class PlaceContentProvider extends ContentProvider {
     // and related ints (101, 102, ..) for items in that directory.
     public static final int PLACES = 100;
     public static final int PLACE_WITH_ID = 101;
+    public static final int PLACES_NEAR = 102;
+    public static final int SCHEDULES = 200;
+    public static final int SCHEDULE_WITH_ID = 201;
 
     // Declare a static variable for the Uri matcher that you construct
     private static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -48,12 +66,19 @@ public class PlaceContentProvider extends ContentProvider {
         // Add URI matches
         uriMatcher.addURI(PlaceContract.AUTHORITY, PlaceContract.PATH_PLACES, PLACES);
         uriMatcher.addURI(PlaceContract.AUTHORITY, PlaceContract.PATH_PLACES + "/#", PLACE_WITH_ID);
+        uriMatcher.addURI(PlaceContract.AUTHORITY,
+                PlaceContract.PATH_PLACES + "/" + PlaceContract.PATH_NEAR, PLACES_NEAR);
+        uriMatcher.addURI(PlaceContract.AUTHORITY, PlaceContract.PATH_SCHEDULES, SCHEDULES);
+        uriMatcher.addURI(PlaceContract.AUTHORITY, PlaceContract.PATH_SCHEDULES + "/#", SCHEDULE_WITH_ID);
         return uriMatcher;
     }
 
     // Member variable for a PlaceDbHelper that's initialized in the onCreate() method
     private PlaceDbHelper mPlaceDbHelper;
 
+    // Set while a batch is applied, collecting the tables its operations changed
+    private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
@@ -85,18 +110,100 @@ public class PlaceContentProvider extends ContentProvider {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 }
                 break;
+            case SCHEDULES:
+                long scheduleId = db.insert(ScheduleEntry.TABLE_NAME, null, values);
+                if (scheduleId > 0) {
+                    returnUri = ContentUris.withAppendedId(ScheduleEntry.CONTENT_URI, scheduleId);
+                } else {
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                }
+                break;
             // Default case throws an UnsupportedOperationException
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
         // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
     }
 
+    /***
+     * Handles requests to insert many rows of data at once,
+     * within a single transaction and with a single change notification
+     *
+     * @param uri
+     * @param values
+     * @return number of rows inserted
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final SQLiteDatabase db = mPlaceDbHelper.getWritableDatabase();
+
+        int match = sUriMatcher.match(uri);
+        String table;
+        switch (match) {
+            case PLACES:
+                table = PlaceEntry.TABLE_NAME;
+                break;
+            case SCHEDULES:
+                table = ScheduleEntry.TABLE_NAME;
+                break;
+            // Default case throws an UnsupportedOperationException
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        int rowsInserted = 0;
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                if (db.insert(table, null, value) > 0) rowsInserted++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (rowsInserted != 0) notifyChange(uri);
+        return rowsInserted;
+    }
+
+    /***
+     * Applies a batch of operations within a single transaction.
+     * A single change notification per changed table is sent once the whole batch is committed,
+     * including the schedules deleted along with their places.
+     *
+     * @param operations
+     * @return the results of each operation
+     * @throws OperationApplicationException
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mPlaceDbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        db.beginTransaction();
+        mBatchChangedUris.set(changedUris);
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            mBatchChangedUris.remove();
+            db.endTransaction();
+        }
+
+        for (Uri changedUri : changedUris) {
+            notifyChange(changedUri);
+        }
+        return results;
+    }
+
     /***
      * Handles requests for data by URI
      *
@@ -119,9 +226,39 @@ public class PlaceContentProvider extends ContentProvider {
         Cursor retCursor;
 
         switch (match) {
-            // Query for the places directory
+            // Query for the places directory, or a page of it
             case PLACES:
+                String search = uri.getQueryParameter(PlaceEntry.PARAM_SEARCH);
+                String matchQuery = search != null ? toMatchQuery(search) : null;
+                if (matchQuery != null) {
+                    // Only the places the full text index matches
+                    String where = PlaceEntry._ID + " IN (SELECT docid FROM " + PlaceEntry.TABLE_SEARCH +
+                            " WHERE " + PlaceEntry.TABLE_SEARCH + " MATCH ?)";
+                    List<String> args = new ArrayList<>();
+                    args.add(matchQuery);
+                    if (selection != null) {
+                        where += " AND (" + selection + ")";
+                        if (selectionArgs != null) args.addAll(Arrays.asList(selectionArgs));
+                    }
+                    selection = where;
+                    selectionArgs = args.toArray(new String[args.size()]);
+                }
                 retCursor = db.query(PlaceEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        getLimit(uri));
+                break;
+            // Query for the places within a radius of a point, closest first
+            case PLACES_NEAR:
+                retCursor = queryNear(db, uri, projection, selection, selectionArgs);
+                break;
+            // Query for the schedules directory
+            case SCHEDULES:
+                retCursor = db.query(ScheduleEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
@@ -141,6 +278,205 @@ public class PlaceContentProvider extends ContentProvider {
         return retCursor;
     }
 
+    /***
+     * Queries the places within a radius of a point (passed as URI parameters).
+     * A bounding box around the circle is first filtered by SQLite using the coordinates index,
+     * then the exact (haversine) distance of each candidate is checked. The result is sorted
+     * by distance and has an extra distance column.
+     *
+     * @param db
+     * @param uri
+     * @param projection
+     * @param selection
+     * @param selectionArgs
+     * @return a Cursor over the nearby places
+     */
+    private Cursor queryNear(SQLiteDatabase db, Uri uri, String[] projection, String selection,
+                             String[] selectionArgs) {
+        double latitude = getDoubleParameter(uri, PlaceEntry.PARAM_LATITUDE);
+        double longitude = getDoubleParameter(uri, PlaceEntry.PARAM_LONGITUDE);
+        double radius = getDoubleParameter(uri, PlaceEntry.PARAM_RADIUS);
+
+        // Bounding box of the circle, in degrees
+        double latitudeDelta = Math.toDegrees(radius / GeoMath.EARTH_RADIUS);
+        double minLatitude = Math.max(-90, latitude - latitudeDelta);
+        double maxLatitude = Math.min(90, latitude + latitudeDelta);
+        double cosLatitude = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double longitudeDelta = cosLatitude > 0 ? latitudeDelta / cosLatitude : 180;
+
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        where.append(PlaceEntry.COLUMN_PLACE_LATITUDE).append(" BETWEEN ? AND ?");
+        args.add(String.valueOf(minLatitude));
+        args.add(String.valueOf(maxLatitude));
+
+        if (longitudeDelta < 180) {
+            double minLongitude = longitude - longitudeDelta;
+            double maxLongitude = longitude + longitudeDelta;
+            if (minLongitude < -180 || maxLongitude > 180) {
+                // The box crosses the antimeridian, so it wraps around
+                where.append(" AND (").append(PlaceEntry.COLUMN_PLACE_LONGITUDE).append(" >= ? OR ")
+                        .append(PlaceEntry.COLUMN_PLACE_LONGITUDE).append(" <= ?)");
+                args.add(String.valueOf(wrapLongitude(minLongitude)));
+                args.add(String.valueOf(wrapLongitude(maxLongitude)));
+            } else {
+                where.append(" AND ").append(PlaceEntry.COLUMN_PLACE_LONGITUDE).append(" BETWEEN ? AND ?");
+                args.add(String.valueOf(minLongitude));
+                args.add(String.valueOf(maxLongitude));
+            }
+        }
+
+        if (selection != null) {
+            where.append(" AND (").append(selection).append(")");
+            if (selectionArgs != null) args.addAll(Arrays.asList(selectionArgs));
+        }
+
+        // The coordinates are needed for the exact check, whatever was asked for
+        String[] columns = projection;
+        if (projection != null) {
+            List<String> projected = new ArrayList<>(Arrays.asList(projection));
+            projected.remove(PlaceEntry.COLUMN_DISTANCE);
+            if (!projected.contains(PlaceEntry.COLUMN_PLACE_LATITUDE)) {
+                projected.add(PlaceEntry.COLUMN_PLACE_LATITUDE);
+            }
+            if (!projected.contains(PlaceEntry.COLUMN_PLACE_LONGITUDE)) {
+                projected.add(PlaceEntry.COLUMN_PLACE_LONGITUDE);
+            }
+            columns = projected.toArray(new String[projected.size()]);
+        }
+
+        Cursor candidates = db.query(PlaceEntry.TABLE_NAME,
+                columns,
+                where.toString(),
+                args.toArray(new String[args.size()]),
+                null,
+                null,
+                null);
+
+        // Keeps only the positions (and distances) of the candidates within the radius
+        int count = candidates.getCount();
+        int[] positions = new int[count];
+        double[] distances = new double[count];
+        int matches = 0;
+        int latitudeIndex = candidates.getColumnIndex(PlaceEntry.COLUMN_PLACE_LATITUDE);
+        int longitudeIndex = candidates.getColumnIndex(PlaceEntry.COLUMN_PLACE_LONGITUDE);
+        while (candidates.moveToNext()) {
+            double distance = GeoMath.haversine(latitude, longitude,
+                    candidates.getDouble(latitudeIndex), candidates.getDouble(longitudeIndex));
+            if (distance <= radius) {
+                positions[matches] = candidates.getPosition();
+                distances[matches] = distance;
+                matches++;
+            }
+        }
+
+        sortByDistance(positions, distances, 0, matches - 1);
+        return new NearbyPlacesCursor(candidates,
+                Arrays.copyOf(positions, matches),
+                Arrays.copyOf(distances, matches));
+    }
+
+    /**
+     * Reads a required numeric URI parameter
+     *
+     * @param uri
+     * @param name
+     * @return the parameter value
+     */
+    private static double getDoubleParameter(Uri uri, String name) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) throw new IllegalArgumentException("Missing " + name + " parameter: " + uri);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " parameter: " + uri, e);
+        }
+    }
+
+    /**
+     * Builds the LIMIT clause of a page query out of its (optional) URI parameters
+     *
+     * @param uri
+     * @return the limit, as "offset,limit", or null if the URI isn't limited
+     */
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(PlaceEntry.PARAM_LIMIT);
+        if (limit == null) return null;
+        String offset = uri.getQueryParameter(PlaceEntry.PARAM_OFFSET);
+        try {
+            // Parsed, so nothing but numbers reach the SQL
+            return (offset != null ? Integer.parseInt(offset) + "," : "") + Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit parameters: " + uri, e);
+        }
+    }
+
+    /**
+     * Turns the words typed by the user into a full text query matching the places which
+     * have words starting with every one of them. Anything but letters and digits separates
+     * words (like the index's tokenizer), so the user can't type query operators.
+     * @param search - The words typed by the user
+     * @return - The MATCH query, or null if nothing searchable was typed
+     */
+    private static String toMatchQuery(String search) {
+        StringBuilder match = new StringBuilder();
+        boolean isInWord = false;
+        for (int i = 0; i < search.length(); i++) {
+            char c = search.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!isInWord && match.length() > 0) match.append(' ');
+                // Lower cased like the index (ASCII only), so words like OR and NEAR
+                // aren't taken as operators
+                match.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+                isInWord = true;
+            } else if (isInWord) {
+                match.append('*');
+                isInWord = false;
+            }
+        }
+        if (isInWord) match.append('*');
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static double wrapLongitude(double longitude) {
+        if (longitude < -180) return longitude + 360;
+        if (longitude > 180) return longitude - 360;
+        return longitude;
+    }
+
+    /**
+     * Sorts the positions by their distances (quicksort over both arrays at once)
+     */
+    private static void sortByDistance(int[] positions, double[] distances, int left, int right) {
+        while (left < right) {
+            double pivot = distances[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (distances[i] < pivot) i++;
+                while (distances[j] > pivot) j--;
+                if (i <= j) {
+                    int position = positions[i];
+                    positions[i] = positions[j];
+                    positions[j] = position;
+                    double distance = distances[i];
+                    distances[i] = distances[j];
+                    distances[j] = distance;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, loop over the larger one
+            if (j - left < right - i) {
+                sortByDistance(positions, distances, left, j);
+                left = i;
+            } else {
+                sortByDistance(positions, distances, i, right);
+                right = j;
+            }
+        }
+    }
+
     /***
      * Deletes a single row of data
      *
@@ -154,26 +490,39 @@ public class PlaceContentProvider extends ContentProvider {
         // Get access to the database and write URI matching code to recognize a single item
         final SQLiteDatabase db = mPlaceDbHelper.getWritableDatabase();
         int match = sUriMatcher.match(uri);
-        // Keep track of the number of deleted places
-        int placesDeleted; // starts as 0
+        // Keep track of the number of deleted rows
+        int rowsDeleted; // starts as 0
         switch (match) {
+            // Handle the directory case, deleting every place matching the selection at once
+            case PLACES:
+                rowsDeleted = db.delete(PlaceEntry.TABLE_NAME, selection, selectionArgs);
+                break;
             // Handle the single item case, recognized by the ID included in the URI path
             case PLACE_WITH_ID:
                 // Get the place ID from the URI path
                 String id = uri.getPathSegments().get(1);
                 // Use selections/selectionArgs to filter for this ID
-                placesDeleted = db.delete(PlaceEntry.TABLE_NAME, "_id=?", new String[]{id});
+                rowsDeleted = db.delete(PlaceEntry.TABLE_NAME, "_id=?", new String[]{id});
+                break;
+            case SCHEDULES:
+                rowsDeleted = db.delete(ScheduleEntry.TABLE_NAME, selection, selectionArgs);
+                break;
+            case SCHEDULE_WITH_ID:
+                rowsDeleted = db.delete(ScheduleEntry.TABLE_NAME, "_id=?",
+                        new String[]{uri.getPathSegments().get(1)});
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Notify the resolver of a change and return the number of items deleted
-        if (placesDeleted != 0) {
+        if (rowsDeleted != 0) {
             // A place (or more) was deleted, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
+            // The deleted places' schedules went with them
+            if (match == PLACES || match == PLACE_WITH_ID) notifyChange(ScheduleEntry.CONTENT_URI);
         }
-        // Return the number of places deleted
-        return placesDeleted;
+        // Return the number of rows affected
+        return rowsDeleted;
     }
 
     /***
@@ -190,15 +539,26 @@ public class PlaceContentProvider extends ContentProvider {
         // Get access to underlying database
         final SQLiteDatabase db = mPlaceDbHelper.getWritableDatabase();
         int match = sUriMatcher.match(uri);
-        // Keep track of the number of updated places
-        int placesUpdated;
+        // Keep track of the number of updated rows
+        int rowsUpdated;
 
         switch (match) {
+            // Handle the directory case, filtering with the passed selection
+            case PLACES:
+                rowsUpdated = db.update(PlaceEntry.TABLE_NAME, values, selection, selectionArgs);
+                break;
             case PLACE_WITH_ID:
                 // Get the place ID from the URI path
                 String id = uri.getPathSegments().get(1);
                 // Use selections/selectionArgs to filter for this ID
-                placesUpdated = db.update(PlaceEntry.TABLE_NAME, values, "_id=?", new String[]{id});
+                rowsUpdated = db.update(PlaceEntry.TABLE_NAME, values, "_id=?", new String[]{id});
+                break;
+            case SCHEDULES:
+                rowsUpdated = db.update(ScheduleEntry.TABLE_NAME, values, selection, selectionArgs);
+                break;
+            case SCHEDULE_WITH_ID:
+                rowsUpdated = db.update(ScheduleEntry.TABLE_NAME, values, "_id=?",
+                        new String[]{uri.getPathSegments().get(1)});
                 break;
             // Default exception
             default:
@@ -206,17 +566,59 @@ public class PlaceContentProvider extends ContentProvider {
         }
 
         // Notify the resolver of a change and return the number of items updated
-        if (placesUpdated != 0) {
+        if (rowsUpdated != 0) {
             // A place (or more) was updated, set notification
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
-        // Return the number of places deleted
-        return placesUpdated;
+        // Return the number of rows affected
+        return rowsUpdated;
     }
 
 
+    /**
+     * Returns the directory URI of the table a URI points into, which observers of the whole
+     * table are registered on
+     *
+     * @param uri a URI handled by this provider
+     * @return the content URI of the URI's table
+     */
+    private static Uri getContentUri(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case SCHEDULES:
+            case SCHEDULE_WITH_ID:
+                return ScheduleEntry.CONTENT_URI;
+            default:
+                return PlaceEntry.CONTENT_URI;
+        }
+    }
+
+    /**
+     * Notifies the resolver of a change. While a batch is being applied, the change is only
+     * recorded against its table (applyBatch notifies once the whole batch is committed).
+     *
+     * @param uri the changed uri
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchChangedUris = mBatchChangedUris.get();
+        if (batchChangedUris != null) {
+            batchChangedUris.add(getContentUri(uri));
+            return;
+        }
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
     @Override
     public String getType(@NonNull Uri uri) {
         throw new UnsupportedOperationException("Not yet implemented");
     }
+
+    /**
+     * Writes the app's metrics out, so they can be pulled off a device with
+     * adb shell dumpsys activity provider com.example.android.shushme/.provider.PlaceContentProvider
+     * (the provider lives as long as the process, unlike the activities)
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        Metrics.REGISTRY.dump(writer);
+    }
 }
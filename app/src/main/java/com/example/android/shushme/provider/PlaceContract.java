@@ -30,6 +30,10 @@ public class PlaceContract {
     // Define the possible paths for accessing data in this contract
     // This is the path for the "places" directory
     public static final String PATH_PLACES = "places";
+    // This is the path for the places near a point, under the "places" directory
+    public static final String PATH_NEAR = "near";
+    // This is the path for the "schedules" directory
+    public static final String PATH_SCHEDULES = "schedules";
 
     public static final class PlaceEntry implements BaseColumns {
 
@@ -39,5 +43,124 @@ public class PlaceContract {
 
         public static final String TABLE_NAME = "places";
         public static final String COLUMN_PLACE_ID = "placeID";
+
+        // Locally cached place details, so the list and the geofences can be
+        // rebuilt without waiting on the Places API
+        public static final String COLUMN_PLACE_NAME = "name";
+        public static final String COLUMN_PLACE_ADDRESS = "address";
+        public static final String COLUMN_PLACE_LATITUDE = "latitude";
+        public static final String COLUMN_PLACE_LONGITUDE = "longitude";
+        // When the cached details were last fetched (epoch, in milliseconds)
+        public static final String COLUMN_FETCHED_AT = "fetchedAt";
+
+        // The radius of the place's geofence (in meters). 0 means the default radius is used.
+        public static final String COLUMN_RADIUS = "radius";
+        // Whether the place's geofence should be registered (1) or not (0)
+        public static final String COLUMN_ENABLED = "enabled";
+        // The estimated radius of the place itself, from its viewport (in meters). 0 if unknown.
+        public static final String COLUMN_SIZE = "size";
+        // How late the place's transitions may be reported (in milliseconds). -1 picks it
+        // from the distance to the place.
+        public static final String COLUMN_RESPONSIVENESS = "responsiveness";
+        // How long the device must stay inside before the place counts as entered
+        // (in milliseconds). -1 uses the app's default.
+        public static final String COLUMN_LOITERING_DELAY = "loiteringDelay";
+
+        // Index over the coordinates, used by bounding box ("places near me") queries
+        public static final String INDEX_COORDINATES = "places_coordinates_index";
+
+        // Full text index over the names and addresses (an FTS4 table reading the places
+        // table), and the triggers keeping it up to date
+        public static final String TABLE_SEARCH = "places_search";
+        public static final String TRIGGER_SEARCH_REPLACE = "places_search_replace_trigger";
+        public static final String TRIGGER_SEARCH_INSERT = "places_search_insert_trigger";
+        public static final String TRIGGER_SEARCH_UPDATE_BEFORE = "places_search_update_before_trigger";
+        public static final String TRIGGER_SEARCH_UPDATE_AFTER = "places_search_update_after_trigger";
+        public static final String TRIGGER_SEARCH_DELETE = "places_search_delete_trigger";
+
+        // Places near a point = places content URI + near path, with the point and radius as parameters
+        public static final Uri CONTENT_NEAR_URI =
+                CONTENT_URI.buildUpon().appendPath(PATH_NEAR).build();
+        public static final String PARAM_LATITUDE = "lat";
+        public static final String PARAM_LONGITUDE = "lng";
+        public static final String PARAM_RADIUS = "radius";
+
+        // Extra column of the places near a point: the distance to the point (in meters)
+        public static final String COLUMN_DISTANCE = "distance";
+
+        // Limits a query of the places directory to a page of rows
+        public static final String PARAM_LIMIT = "limit";
+        public static final String PARAM_OFFSET = "offset";
+
+        // Limits a query of the places directory to the places which name or address has words
+        // starting with every word of the search (e.g. "cof main" matches "Coffee, 1 Main St")
+        public static final String PARAM_SEARCH = "search";
+
+        /**
+         * Builds the URI of the places within a radius of a point, closest first
+         * @param latitude - The latitude of the point (in degrees)
+         * @param longitude - The longitude of the point (in degrees)
+         * @param radius - The radius around the point (in meters)
+         * @return - The URI to be queried
+         */
+        public static Uri buildNearUri(double latitude, double longitude, double radius) {
+            return CONTENT_NEAR_URI.buildUpon()
+                    .appendQueryParameter(PARAM_LATITUDE, String.valueOf(latitude))
+                    .appendQueryParameter(PARAM_LONGITUDE, String.valueOf(longitude))
+                    .appendQueryParameter(PARAM_RADIUS, String.valueOf(radius))
+                    .build();
+        }
+
+        /**
+         * Builds the URI of a page of places. The rows should be sorted, so the pages don't
+         * overlap.
+         * @param offset - How many rows are skipped
+         * @param limit - How many rows are returned at most
+         * @return - The URI to be queried
+         */
+        public static Uri buildPageUri(int offset, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(PARAM_OFFSET, String.valueOf(offset))
+                    .appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Adds a search to a URI of the places directory (e.g. a page URI)
+         * @param uri - The URI to be searched
+         * @param search - The words typed by the user
+         * @return - The URI to be queried
+         */
+        public static Uri buildSearchUri(Uri uri, String search) {
+            return uri.buildUpon()
+                    .appendQueryParameter(PARAM_SEARCH, search)
+                    .build();
+        }
+    }
+
+    /**
+     * The weekly windows during which a place is quiet. A place without any window is quiet
+     * at all hours.
+     */
+    public static final class ScheduleEntry implements BaseColumns {
+
+        // Schedules content URI = base content URI + path
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SCHEDULES).build();
+
+        public static final String TABLE_NAME = "schedules";
+        // The place the window belongs to. Deleting the place deletes its windows.
+        public static final String COLUMN_PLACE_ID = "placeID";
+        // The days the window starts on, as a bit mask: bit (Calendar.DAY_OF_WEEK - 1) per day
+        public static final String COLUMN_DAYS = "days";
+        // When the window starts and ends (in minutes since midnight, local time).
+        // A window ending at or before its start runs past midnight.
+        public static final String COLUMN_START_MINUTE = "startMinute";
+        public static final String COLUMN_END_MINUTE = "endMinute";
+
+        // Index over the place IDs, used to look up (and cascade deletes to) a place's windows
+        public static final String INDEX_PLACE_ID = "schedules_place_id_index";
+        // Trigger deleting the windows of a deleted place
+        public static final String TRIGGER_DELETE_PLACE = "schedules_delete_place_trigger";
     }
 }
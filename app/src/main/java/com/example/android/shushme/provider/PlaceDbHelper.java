@@ -21,6 +21,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+import com.example.android.shushme.provider.PlaceContract.ScheduleEntry;
 
 public class PlaceDbHelper extends SQLiteOpenHelper {
 
@@ -28,7 +29,7 @@ public class PlaceDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "shushme.db";
 
     // If you change the database schema, you must increment the database version
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 6;
 
     // Constructor
     public PlaceDbHelper(Context context) {
@@ -42,16 +43,156 @@ public class PlaceDbHelper extends SQLiteOpenHelper {
         final String SQL_CREATE_PLACES_TABLE = "CREATE TABLE " + PlaceEntry.TABLE_NAME + " (" +
                 PlaceEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
                 PlaceEntry.COLUMN_PLACE_ID + " TEXT NOT NULL, " +
+                PlaceEntry.COLUMN_PLACE_NAME + " TEXT, " +
+                PlaceEntry.COLUMN_PLACE_ADDRESS + " TEXT, " +
+                PlaceEntry.COLUMN_PLACE_LATITUDE + " REAL, " +
+                PlaceEntry.COLUMN_PLACE_LONGITUDE + " REAL, " +
+                PlaceEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL DEFAULT 0, " +
+                PlaceEntry.COLUMN_RADIUS + " REAL NOT NULL DEFAULT 0, " +
+                PlaceEntry.COLUMN_ENABLED + " INTEGER NOT NULL DEFAULT 1, " +
+                PlaceEntry.COLUMN_SIZE + " REAL NOT NULL DEFAULT 0, " +
+                PlaceEntry.COLUMN_RESPONSIVENESS + " INTEGER NOT NULL DEFAULT -1, " +
+                PlaceEntry.COLUMN_LOITERING_DELAY + " INTEGER NOT NULL DEFAULT -1, " +
                 "UNIQUE (" + PlaceEntry.COLUMN_PLACE_ID + ") ON CONFLICT REPLACE" +
                 "); ";
 
         sqLiteDatabase.execSQL(SQL_CREATE_PLACES_TABLE);
+        createCoordinatesIndex(sqLiteDatabase);
+        createSchedulesTable(sqLiteDatabase);
+        createSearchTable(sqLiteDatabase);
     }
 
+    /**
+     * Upgrades the schema one version at a time, so every user's data is kept
+     * whichever version they're upgrading from. Runs within a single transaction.
+     */
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        // For now simply drop the table and create a new one.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + PlaceEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        if (oldVersion < 2) upgradeToVersion2(sqLiteDatabase);
+        if (oldVersion < 3) upgradeToVersion3(sqLiteDatabase);
+        if (oldVersion < 4) upgradeToVersion4(sqLiteDatabase);
+        if (oldVersion < 5) createSchedulesTable(sqLiteDatabase);
+        if (oldVersion < 6) createSearchTable(sqLiteDatabase);
+    }
+
+    /**
+     * Version 2 adds the cached place details. Existing rows start with an
+     * empty cache (fetchedAt = 0), so they'll be fetched on the next refresh.
+     * @param db - The database being upgraded
+     */
+    private static void upgradeToVersion2(SQLiteDatabase db) {
+        addColumn(db, PlaceEntry.COLUMN_PLACE_NAME, "TEXT");
+        addColumn(db, PlaceEntry.COLUMN_PLACE_ADDRESS, "TEXT");
+        addColumn(db, PlaceEntry.COLUMN_PLACE_LATITUDE, "REAL");
+        addColumn(db, PlaceEntry.COLUMN_PLACE_LONGITUDE, "REAL");
+        addColumn(db, PlaceEntry.COLUMN_FETCHED_AT, "INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Version 3 adds the per place radius and enabled flag (existing places keep the
+     * default radius and stay enabled), and indexes the coordinates
+     * @param db - The database being upgraded
+     */
+    private static void upgradeToVersion3(SQLiteDatabase db) {
+        addColumn(db, PlaceEntry.COLUMN_RADIUS, "REAL NOT NULL DEFAULT 0");
+        addColumn(db, PlaceEntry.COLUMN_ENABLED, "INTEGER NOT NULL DEFAULT 1");
+        createCoordinatesIndex(db);
+    }
+
+    /**
+     * Version 4 adds the rest of the per place fence settings, left to the app on existing
+     * places, and the size of the place. Existing rows get their size on the next fetch.
+     * @param db - The database being upgraded
+     */
+    private static void upgradeToVersion4(SQLiteDatabase db) {
+        addColumn(db, PlaceEntry.COLUMN_SIZE, "REAL NOT NULL DEFAULT 0");
+        addColumn(db, PlaceEntry.COLUMN_RESPONSIVENESS, "INTEGER NOT NULL DEFAULT -1");
+        addColumn(db, PlaceEntry.COLUMN_LOITERING_DELAY, "INTEGER NOT NULL DEFAULT -1");
+    }
+
+    /**
+     * Creates the schedules table (added on version 5), indexed by place. Existing places
+     * have no windows, so they stay quiet at all hours.
+     * <p>
+     * Deleting a place deletes its windows. Re-adding a place replaces its row without
+     * firing the trigger (recursive triggers are off), so its windows are kept.
+     * @param db - The database being created or upgraded
+     */
+    private static void createSchedulesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ScheduleEntry.TABLE_NAME + " (" +
+                ScheduleEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                ScheduleEntry.COLUMN_PLACE_ID + " TEXT NOT NULL, " +
+                ScheduleEntry.COLUMN_DAYS + " INTEGER NOT NULL, " +
+                ScheduleEntry.COLUMN_START_MINUTE + " INTEGER NOT NULL, " +
+                ScheduleEntry.COLUMN_END_MINUTE + " INTEGER NOT NULL" +
+                ")");
+        db.execSQL("CREATE INDEX " + ScheduleEntry.INDEX_PLACE_ID +
+                " ON " + ScheduleEntry.TABLE_NAME + " (" + ScheduleEntry.COLUMN_PLACE_ID + ")");
+        db.execSQL("CREATE TRIGGER " + ScheduleEntry.TRIGGER_DELETE_PLACE +
+                " AFTER DELETE ON " + PlaceEntry.TABLE_NAME + " BEGIN" +
+                " DELETE FROM " + ScheduleEntry.TABLE_NAME +
+                " WHERE " + ScheduleEntry.COLUMN_PLACE_ID + " = OLD." + PlaceEntry.COLUMN_PLACE_ID + ";" +
+                " END");
+    }
+
+    /**
+     * Creates the full text index over the names and addresses (added on version 6), filled
+     * with the existing places. It reads the places table (content=), so the text isn't
+     * stored twice, and keeps prefix indexes of 2 and 3 letters, so searching as the user
+     * types doesn't scan every term.
+     * <p>
+     * The triggers update it along with the places table. Re-adding a place replaces its row
+     * without firing the delete trigger (recursive triggers are off), so the replaced row is
+     * dropped from the index before the insertion.
+     * @param db - The database being created or upgraded
+     */
+    private static void createSearchTable(SQLiteDatabase db) {
+        String search = PlaceEntry.TABLE_SEARCH;
+        String columns = PlaceEntry.COLUMN_PLACE_NAME + ", " + PlaceEntry.COLUMN_PLACE_ADDRESS;
+        String insert = " INSERT INTO " + search + " (docid, " + columns + ")" +
+                " VALUES (NEW." + PlaceEntry._ID +
+                ", NEW." + PlaceEntry.COLUMN_PLACE_NAME +
+                ", NEW." + PlaceEntry.COLUMN_PLACE_ADDRESS + ");";
+        String delete = " DELETE FROM " + search + " WHERE docid = OLD." + PlaceEntry._ID + ";";
+
+        db.execSQL("CREATE VIRTUAL TABLE " + search + " USING fts4(" +
+                "content=\"" + PlaceEntry.TABLE_NAME + "\", " + columns + ", prefix=\"2,3\")");
+        db.execSQL("CREATE TRIGGER " + PlaceEntry.TRIGGER_SEARCH_REPLACE +
+                " BEFORE INSERT ON " + PlaceEntry.TABLE_NAME + " BEGIN" +
+                " DELETE FROM " + search + " WHERE docid IN (SELECT " + PlaceEntry._ID +
+                " FROM " + PlaceEntry.TABLE_NAME +
+                " WHERE " + PlaceEntry.COLUMN_PLACE_ID + " = NEW." + PlaceEntry.COLUMN_PLACE_ID + ");" +
+                " END");
+        db.execSQL("CREATE TRIGGER " + PlaceEntry.TRIGGER_SEARCH_INSERT +
+                " AFTER INSERT ON " + PlaceEntry.TABLE_NAME + " BEGIN" + insert + " END");
+        db.execSQL("CREATE TRIGGER " + PlaceEntry.TRIGGER_SEARCH_UPDATE_BEFORE +
+                " BEFORE UPDATE OF " + columns + " ON " + PlaceEntry.TABLE_NAME + " BEGIN" + delete + " END");
+        db.execSQL("CREATE TRIGGER " + PlaceEntry.TRIGGER_SEARCH_UPDATE_AFTER +
+                " AFTER UPDATE OF " + columns + " ON " + PlaceEntry.TABLE_NAME + " BEGIN" + insert + " END");
+        db.execSQL("CREATE TRIGGER " + PlaceEntry.TRIGGER_SEARCH_DELETE +
+                " BEFORE DELETE ON " + PlaceEntry.TABLE_NAME + " BEGIN" + delete + " END");
+
+        // Indexes the places stored before the upgrade
+        db.execSQL("INSERT INTO " + search + " (" + search + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Indexes the coordinates, so a bounding box query only scans the latitude band it covers
+     * @param db - The database being created or upgraded
+     */
+    private static void createCoordinatesIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + PlaceEntry.INDEX_COORDINATES +
+                " ON " + PlaceEntry.TABLE_NAME + " (" +
+                PlaceEntry.COLUMN_PLACE_LATITUDE + ", " + PlaceEntry.COLUMN_PLACE_LONGITUDE + ")");
+    }
+
+    /**
+     * Adds a new column to the places table
+     * @param db - The database being upgraded
+     * @param column - The column name
+     * @param definition - The column type and constraints
+     */
+    private static void addColumn(SQLiteDatabase db, String column, String definition) {
+        db.execSQL("ALTER TABLE " + PlaceEntry.TABLE_NAME + " ADD COLUMN " + column + " " + definition);
     }
 }
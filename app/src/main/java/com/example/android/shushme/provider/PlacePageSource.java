@@ -0,0 +1,131 @@
+package com.example.android.shushme.provider;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.paging.Page;
+import com.example.android.shushme.paging.PageSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+
+/**
+ * Loads the places which have cached details (the ones PlaceCache.read() returns), a page
+ * at a time, in the order they were added. Keys are the row ids, so a page following a
+ * loaded one is a range scan of the primary key.
+ * <p>
+ * The places can be narrowed down to a search (see PlaceEntry.PARAM_SEARCH).
+ */
+public class PlacePageSource implements PageSource<PlaceSnapshot> {
+
+    // The rows PlaceCache.hasDetails() accepts
+    private static final String SELECTION_WITH_DETAILS =
+            PlaceEntry.COLUMN_FETCHED_AT + " > 0"
+                    + " AND " + PlaceEntry.COLUMN_PLACE_LATITUDE + " IS NOT NULL"
+                    + " AND " + PlaceEntry.COLUMN_PLACE_LONGITUDE + " IS NOT NULL";
+    private static final String SORT_ORDER = PlaceEntry._ID;
+
+    private final ContentResolver mResolver;
+    private final String mSearch;
+
+    public PlacePageSource(ContentResolver resolver) {
+        this(resolver, null);
+    }
+
+    /**
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @param search - The words typed by the user, or null for every place
+     */
+    public PlacePageSource(ContentResolver resolver, @Nullable String search) {
+        mResolver = resolver;
+        mSearch = search;
+    }
+
+    @Override
+    public long[] keys() {
+        Cursor cursor = mResolver.query(
+                withSearch(PlaceEntry.CONTENT_URI),
+                new String[]{PlaceEntry._ID},
+                SELECTION_WITH_DETAILS,
+                null,
+                SORT_ORDER
+        );
+        if (cursor == null) return new long[0];
+        try {
+            long[] keys = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                keys[i] = cursor.getLong(0);
+            }
+            return keys;
+        } finally {
+            // Frees the cursor
+            cursor.close();
+        }
+    }
+
+    @Override
+    public Page<PlaceSnapshot> load(int offset, int count, long afterKey) {
+        Cursor cursor;
+        if (afterKey != NO_KEY) {
+            cursor = mResolver.query(
+                    withSearch(PlaceEntry.buildPageUri(0, count)),
+                    null,
+                    SELECTION_WITH_DETAILS + " AND " + PlaceEntry._ID + " > ?",
+                    new String[]{String.valueOf(afterKey)},
+                    SORT_ORDER
+            );
+        } else {
+            cursor = mResolver.query(
+                    withSearch(PlaceEntry.buildPageUri(offset, count)),
+                    null,
+                    SELECTION_WITH_DETAILS,
+                    null,
+                    SORT_ORDER
+            );
+        }
+        if (cursor == null) return new Page<>(Collections.<PlaceSnapshot>emptyList(), NO_KEY);
+
+        try {
+            List<PlaceSnapshot> places = new ArrayList<>(cursor.getCount());
+            long lastKey = NO_KEY;
+            int idIndex = cursor.getColumnIndex(PlaceEntry._ID);
+            while (cursor.moveToNext()) {
+                places.add(PlaceCache.toSnapshot(cursor));
+                lastKey = cursor.getLong(idIndex);
+            }
+            return new Page<>(places, lastKey);
+        } finally {
+            // Frees the cursor
+            cursor.close();
+        }
+    }
+
+    private Uri withSearch(Uri uri) {
+        return mSearch != null ? PlaceEntry.buildSearchUri(uri, mSearch) : uri;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.android.shushme.provider;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.ScheduleRules;
+import com.example.android.shushme.schedule.TimeWindow;
+import com.example.android.shushme.transfer.InvalidPlaceException;
+import com.example.android.shushme.transfer.PlaceReader;
+import com.example.android.shushme.transfer.PlaceRecord;
+import com.example.android.shushme.transfer.PlaceWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.shushme.provider.PlaceContract.PlaceEntry;
+import static com.example.android.shushme.provider.PlaceContract.ScheduleEntry;
+
+/**
+ * Helpers to import places (along with their settings and schedules) into the local
+ * database, and to export them, through the formats of the transfer package
+ */
+public class PlaceTransfer {
+
+    // How many operations are committed per batch (one transaction, one notification each).
+    // Large enough to amortize the commits, small enough to bound the memory held.
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Imports every valid place the reader parses. An existing place is replaced, schedule
+     * included. The imported details count as fetched now, so they're revalidated once
+     * they expire like any other. Invalid places (see PlaceValidator) are skipped.
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @param reader - The reader of the imported places
+     * @param outErrors - Receives why each skipped place is invalid
+     * @return - How many places were imported
+     * @throws IOException - If the input can't be read or is malformed. The places of the
+     *                     batches committed so far are kept.
+     */
+    public static int importPlaces(ContentResolver resolver, PlaceReader reader, List<String> outErrors)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(BATCH_SIZE + 16);
+        int count = 0;
+
+        while (true) {
+            PlaceRecord record;
+            try {
+                record = reader.read();
+            } catch (InvalidPlaceException e) {
+                // The reader is past the place, so the import goes on
+                outErrors.add(e.getMessage());
+                continue;
+            }
+            if (record == null) break;
+
+            String placeId = record.getPlace().getPlaceId();
+            operations.add(ContentProviderOperation.newInsert(PlaceEntry.CONTENT_URI)
+                    .withValues(toContentValues(record.getPlace(), now))
+                    .build());
+            operations.add(ContentProviderOperation.newDelete(ScheduleEntry.CONTENT_URI)
+                    .withSelection(ScheduleEntry.COLUMN_PLACE_ID + "=?", new String[]{placeId})
+                    .build());
+            for (TimeWindow window : record.getWindows()) {
+                operations.add(ContentProviderOperation.newInsert(ScheduleEntry.CONTENT_URI)
+                        .withValues(toContentValues(placeId, window))
+                        .build());
+            }
+            count++;
+
+            if (operations.size() >= BATCH_SIZE) {
+                apply(resolver, operations);
+                operations.clear();
+            }
+        }
+        apply(resolver, operations);
+        return count;
+    }
+
+    /**
+     * Exports every place which has cached details, streaming them off a cursor
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @param writer - The writer of the exported places. It's finished by this method.
+     * @return - How many places were exported
+     * @throws IOException - If the output can't be written
+     */
+    public static int exportPlaces(ContentResolver resolver, PlaceWriter writer) throws IOException {
+        ScheduleRules rules = ScheduleCache.read(resolver);
+        int count = 0;
+        Cursor dataCursor = null;
+        try {
+            dataCursor = resolver.query(
+                    PlaceEntry.CONTENT_URI,
+                    null,
+                    null,
+                    null,
+                    null
+            );
+
+            while (dataCursor != null && dataCursor.moveToNext()) {
+                if (!PlaceCache.hasDetails(dataCursor)) continue;
+                PlaceSnapshot place = PlaceCache.toSnapshot(dataCursor);
+                writer.write(new PlaceRecord(place, rules.getWindows(place.getPlaceId())));
+                count++;
+            }
+        } finally {
+            // Frees the cursor
+            if (dataCursor != null) dataCursor.close();
+        }
+        writer.finish();
+        return count;
+    }
+
+    /**
+     * Builds the values of a places row out of an imported place, settings included
+     * @param place - The imported place
+     * @param fetchedAt - When the place's details count as fetched (epoch, in milliseconds)
+     * @return - The values to be inserted
+     */
+    private static ContentValues toContentValues(PlaceSnapshot place, long fetchedAt) {
+        ContentValues values = PlaceCache.toContentValues(place, fetchedAt);
+        values.put(PlaceEntry.COLUMN_RADIUS, place.getRadius());
+        values.put(PlaceEntry.COLUMN_ENABLED, place.isEnabled() ? 1 : 0);
+        values.put(PlaceEntry.COLUMN_RESPONSIVENESS, place.getResponsiveness());
+        values.put(PlaceEntry.COLUMN_LOITERING_DELAY, place.getLoiteringDelay());
+        return values;
+    }
+
+    private static ContentValues toContentValues(String placeId, TimeWindow window) {
+        ContentValues values = new ContentValues();
+        values.put(ScheduleEntry.COLUMN_PLACE_ID, placeId);
+        values.put(ScheduleEntry.COLUMN_DAYS, window.getDays());
+        values.put(ScheduleEntry.COLUMN_START_MINUTE, window.getStartMinute());
+        values.put(ScheduleEntry.COLUMN_END_MINUTE, window.getEndMinute());
+        return values;
+    }
+
+    /**
+     * Commits a batch of operations within a single transaction
+     * @throws IOException - If the batch failed, so the import stops there
+     */
+    private static void apply(ContentResolver resolver, ArrayList<ContentProviderOperation> operations)
+            throws IOException {
+        if (operations.isEmpty()) return;
+        try {
+            resolver.applyBatch(PlaceContract.AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new IOException("Failed to store the imported places", e);
+        }
+    }
+}
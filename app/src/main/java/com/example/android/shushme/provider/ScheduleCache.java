@@ -0,0 +1,97 @@
+package com.example.android.shushme.provider;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.shushme.schedule.ScheduleRules;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static com.example.android.shushme.provider.PlaceContract.ScheduleEntry;
+
+/**
+ * Helpers to read the places' quiet schedules off the schedules table
+ */
+public class ScheduleCache {
+
+    private static final String LOG_TAG = ScheduleCache.class.getCanonicalName();
+
+    /**
+     * Reads every stored time window. This only touches the local database, so it's cheap
+     * enough for headless callers (it's read again whenever the geofences change, rather
+     * than observed).
+     * @param resolver - The resolver used to reach the PlaceContentProvider
+     * @return - The rules of every scheduled place, in the device's time zone
+     */
+    public static ScheduleRules read(ContentResolver resolver) {
+        Map<String, List<TimeWindow>> windows = new HashMap<>();
+        Cursor dataCursor = null;
+        try {
+            dataCursor = resolver.query(
+                    ScheduleEntry.CONTENT_URI,
+                    null,
+                    null,
+                    null,
+                    null
+            );
+
+            // Nothing is scheduled if no data is currently stored
+            if (dataCursor == null) return ScheduleRules.NONE;
+
+            int placeIdIndex = dataCursor.getColumnIndex(ScheduleEntry.COLUMN_PLACE_ID);
+            int daysIndex = dataCursor.getColumnIndex(ScheduleEntry.COLUMN_DAYS);
+            int startIndex = dataCursor.getColumnIndex(ScheduleEntry.COLUMN_START_MINUTE);
+            int endIndex = dataCursor.getColumnIndex(ScheduleEntry.COLUMN_END_MINUTE);
+            while (dataCursor.moveToNext()) {
+                TimeWindow window;
+                try {
+                    window = new TimeWindow(
+                            dataCursor.getInt(daysIndex),
+                            dataCursor.getInt(startIndex),
+                            dataCursor.getInt(endIndex));
+                } catch (IllegalArgumentException e) {
+                    // A broken row mustn't keep every other place from being fenced
+                    Log.w(LOG_TAG, "Skipping invalid schedule", e);
+                    continue;
+                }
+
+                String placeId = dataCursor.getString(placeIdIndex);
+                List<TimeWindow> placeWindows = windows.get(placeId);
+                if (placeWindows == null) {
+                    placeWindows = new ArrayList<>();
+                    windows.put(placeId, placeWindows);
+                }
+                placeWindows.add(window);
+            }
+        } finally {
+            // Frees the cursor
+            if (dataCursor != null) dataCursor.close();
+        }
+        return new ScheduleRules(windows, TimeZone.getDefault());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.android.shushme.schedule;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Decides when each place is quiet, from its weekly time windows. A place without windows
+ * is quiet at all hours, as before schedules existed.
+ * <p>
+ * The geofences of a scheduled place are only registered while one of its windows is open,
+ * and an alarm at the next boundary (getNextBoundary()) registers or removes them. Keeping
+ * only the active places fenced keeps fewer fences armed, so the platform polls the location
+ * less.
+ * <p>
+ * Times are interpreted in the passed time zone, so DST changes move the windows along with
+ * the clock. This class doesn't depend on Android, nor is it thread safe.
+ */
+public final class ScheduleRules {
+
+    // No place is scheduled
+    public static final ScheduleRules NONE =
+            new ScheduleRules(Collections.<String, List<TimeWindow>>emptyMap(), TimeZone.getDefault());
+
+    private final Map<String, List<TimeWindow>> mWindows;
+    private final Calendar mCalendar;
+
+    /**
+     * @param windows - The windows of each scheduled place, by place ID
+     * @param timeZone - The time zone the windows are in
+     */
+    public ScheduleRules(Map<String, List<TimeWindow>> windows, TimeZone timeZone) {
+        mWindows = new HashMap<>();
+        for (Map.Entry<String, List<TimeWindow>> entry : windows.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            mWindows.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        mCalendar = Calendar.getInstance(timeZone);
+    }
+
+    /**
+     * @param placeId - The ID of a place
+     * @return - Whether the place has time windows
+     */
+    public boolean isScheduled(String placeId) {
+        return mWindows.containsKey(placeId);
+    }
+
+    /**
+     * @param placeId - The ID of a place
+     * @return - The place's windows (empty if it isn't scheduled)
+     */
+    public List<TimeWindow> getWindows(String placeId) {
+        List<TimeWindow> windows = mWindows.get(placeId);
+        return windows != null
+                ? Collections.unmodifiableList(windows)
+                : Collections.<TimeWindow>emptyList();
+    }
+
+    /**
+     * Returns whether a place should be quiet at the passed time
+     * @param placeId - The ID of a place
+     * @param time - The time (epoch, in milliseconds)
+     * @return - Whether the place isn't scheduled, or one of its windows is open
+     */
+    public boolean isActive(String placeId, long time) {
+        List<TimeWindow> windows = mWindows.get(placeId);
+        if (windows == null) return true;
+
+        mCalendar.setTimeInMillis(time);
+        int dayOfWeek = mCalendar.get(Calendar.DAY_OF_WEEK);
+        int minuteOfDay = mCalendar.get(Calendar.HOUR_OF_DAY) * 60 + mCalendar.get(Calendar.MINUTE);
+        for (TimeWindow window : windows) {
+            if (window.isActive(dayOfWeek, minuteOfDay)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps the places which should be quiet at the passed time
+     * @param places - The stored places
+     * @param time - The time (epoch, in milliseconds)
+     * @return - The active places, in order
+     */
+    public List<PlaceSnapshot> filterActive(List<PlaceSnapshot> places, long time) {
+        if (mWindows.isEmpty()) return places;
+
+        List<PlaceSnapshot> active = new ArrayList<>(places.size());
+        for (PlaceSnapshot place : places) {
+            if (isActive(place.getPlaceId(), time)) active.add(place);
+        }
+        return active;
+    }
+
+    /**
+     * Finds when the next window opens or closes, which is when the fences should change
+     * @param time - The current time (epoch, in milliseconds)
+     * @return - The time of the next boundary (epoch, in milliseconds), or Long.MAX_VALUE if
+     *           no place is scheduled
+     */
+    public long getNextBoundary(long time) {
+        long next = Long.MAX_VALUE;
+        for (List<TimeWindow> windows : mWindows.values()) {
+            for (TimeWindow window : windows) {
+                next = Math.min(next, getNextBoundary(window, time));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Finds when a window next opens or closes, looking a week ahead
+     */
+    private long getNextBoundary(TimeWindow window, long time) {
+        long next = Long.MAX_VALUE;
+        // A window may have started yesterday and close today
+        for (int dayOffset = -1; dayOffset <= 7; dayOffset++) {
+            mCalendar.setTimeInMillis(time);
+            mCalendar.add(Calendar.DAY_OF_MONTH, dayOffset);
+            if ((window.getDays() & TimeWindow.dayBit(mCalendar.get(Calendar.DAY_OF_WEEK))) == 0) {
+                continue;
+            }
+
+            int year = mCalendar.get(Calendar.YEAR);
+            int month = mCalendar.get(Calendar.MONTH);
+            int day = mCalendar.get(Calendar.DAY_OF_MONTH);
+            long start = atMinute(year, month, day, window.getStartMinute());
+            if (start > time) next = Math.min(next, start);
+            long end = atMinute(year, month, window.isOvernight() ? day + 1 : day,
+                    window.getEndMinute());
+            if (end > time) next = Math.min(next, end);
+        }
+        return next;
+    }
+
+    /**
+     * Returns the time of a minute of a day, in the time zone of the rules. Adding the minutes
+     * to midnight (rather than setting the hour) keeps 24:00 the next midnight, and skips the
+     * hour lost to DST.
+     */
+    private long atMinute(int year, int month, int day, int minuteOfDay) {
+        mCalendar.clear();
+        mCalendar.set(year, month, day);
+        mCalendar.add(Calendar.MINUTE, minuteOfDay);
+        return mCalendar.getTimeInMillis();
+    }
+}
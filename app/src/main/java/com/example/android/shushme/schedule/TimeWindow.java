@@ -0,0 +1,120 @@
+package com.example.android.shushme.schedule;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A weekly window of time, e.g. weekdays from 9:00 to 17:30. A window ending at or before
+ * its start runs past midnight, into the next day (and a window ending at its start lasts
+ * a whole day).
+ */
+public final class TimeWindow {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    // The days bit mask: bit (Calendar.DAY_OF_WEEK - 1) is set for each day the window starts on
+    public static final int EVERY_DAY = 0x7f;
+
+    private final int mDays;
+    private final int mStartMinute;
+    private final int mEndMinute;
+
+    /**
+     * @param days - The days the window starts on, as a bit mask (see EVERY_DAY)
+     * @param startMinute - When the window starts (in minutes since midnight)
+     * @param endMinute - When the window ends (in minutes since midnight)
+     * @throws IllegalArgumentException - If a minute is out of the day
+     */
+    public TimeWindow(int days, int startMinute, int endMinute) {
+        if (startMinute < 0 || startMinute >= MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid start minute: " + startMinute);
+        }
+        if (endMinute < 0 || endMinute > MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Invalid end minute: " + endMinute);
+        }
+        mDays = days & EVERY_DAY;
+        mStartMinute = startMinute;
+        mEndMinute = endMinute;
+    }
+
+    /**
+     * @param dayOfWeek - A Calendar.DAY_OF_WEEK value (Calendar.SUNDAY to Calendar.SATURDAY)
+     * @return - The bit of the day, within the days mask
+     */
+    public static int dayBit(int dayOfWeek) {
+        return 1 << (dayOfWeek - 1);
+    }
+
+    public int getDays() {
+        return mDays;
+    }
+
+    public int getStartMinute() {
+        return mStartMinute;
+    }
+
+    public int getEndMinute() {
+        return mEndMinute;
+    }
+
+    /**
+     * @return - Whether the window runs past midnight, ending on the day after it starts
+     */
+    public boolean isOvernight() {
+        return mEndMinute <= mStartMinute;
+    }
+
+    /**
+     * Returns whether the window is open at the passed (local) time
+     * @param dayOfWeek - A Calendar.DAY_OF_WEEK value
+     * @param minuteOfDay - The minutes since midnight
+     * @return - Whether it's within the window
+     */
+    public boolean isActive(int dayOfWeek, int minuteOfDay) {
+        boolean startsToday = (mDays & dayBit(dayOfWeek)) != 0;
+        if (!isOvernight()) {
+            return startsToday && minuteOfDay >= mStartMinute && minuteOfDay < mEndMinute;
+        }
+        int previousDay = dayOfWeek == 1 ? 7 : dayOfWeek - 1;
+        boolean startedYesterday = (mDays & dayBit(previousDay)) != 0;
+        return (startsToday && minuteOfDay >= mStartMinute)
+                || (startedYesterday && minuteOfDay < mEndMinute);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof TimeWindow)) return false;
+
+        TimeWindow that = (TimeWindow) other;
+        return mDays == that.mDays
+                && mStartMinute == that.mStartMinute
+                && mEndMinute == that.mEndMinute;
+    }
+
+    @Override
+    public int hashCode() {
+        return (mDays * 31 + mStartMinute) * 31 + mEndMinute;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%02x %02d:%02d-%02d:%02d", mDays,
+                mStartMinute / 60, mStartMinute % 60, mEndMinute / 60, mEndMinute % 60);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads places in the binary format (see BinaryPlaceWriter). Each place is only parsed once
+ * it's wholly within the buffer, which is refilled off the channel in large reads.
+ */
+final class BinaryPlaceReader implements PlaceReader {
+
+    // Starts with a byte which can't start a text file, so the format is told apart
+    static final byte[] MAGIC = {(byte) 0x89, 'S', 'H', 'M'};
+    static final byte VERSION = 1;
+
+    static final short NULL_STRING = (short) 0xffff;
+    // Longer strings are cut (0xffff stands for null)
+    static final int MAX_STRING_LENGTH = 0xffff;
+    static final int MAX_WINDOWS = 0xff;
+    static final byte FLAG_ENABLED = 1;
+    // The size of the fields after the strings and before the windows (in bytes)
+    static final int FIXED_SIZE = 8 + 8 + 4 + 1 + 4 + 4 + 4 + 1;
+    static final int WINDOW_SIZE = 1 + 2 + 2;
+    // The smallest and largest places (null strings, no windows / longest strings, every window),
+    // so a corrupt length is reported rather than allocated
+    static final int MIN_RECORD_SIZE = 3 * 2 + FIXED_SIZE;
+    static final int MAX_RECORD_SIZE =
+            3 * (2 + MAX_STRING_LENGTH - 1) + FIXED_SIZE + MAX_WINDOWS * WINDOW_SIZE;
+
+    private final ReadableByteChannel mChannel;
+    private ByteBuffer mBuffer;
+    private boolean mHasHeader;
+    private boolean mIsEndOfInput;
+    private int mRecord;
+
+    /**
+     * @param buffer - Holds the bytes already read off the channel (in read mode)
+     */
+    BinaryPlaceReader(ReadableByteChannel channel, ByteBuffer buffer) {
+        mChannel = channel;
+        mBuffer = buffer;
+    }
+
+    /**
+     * @param buffer - The first bytes of the input (in read mode)
+     * @return - Whether the input starts with the format's magic
+     */
+    static boolean hasMagic(ByteBuffer buffer) {
+        if (buffer.remaining() < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public PlaceRecord read() throws IOException {
+        if (!mHasHeader) {
+            if (!fill(MAGIC.length + 1) || !hasMagic(mBuffer)) {
+                throw new PlaceFormatException("Not a places file", 0);
+            }
+            mBuffer.position(mBuffer.position() + MAGIC.length);
+            byte version = mBuffer.get();
+            if (version > VERSION) {
+                throw new PlaceFormatException("Unsupported version " + version, 0);
+            }
+            mHasHeader = true;
+        }
+
+        // The input may only end between places
+        if (!fill(4)) {
+            if (mBuffer.hasRemaining()) throw new PlaceFormatException("Truncated place", mRecord + 1);
+            return null;
+        }
+        mRecord++;
+        int length = mBuffer.getInt();
+        if (length < MIN_RECORD_SIZE || length > MAX_RECORD_SIZE) {
+            throw new PlaceFormatException("Invalid length " + length, mRecord);
+        }
+        if (!fill(length)) throw new PlaceFormatException("Truncated place", mRecord);
+
+        int end = mBuffer.position() + length;
+        PlaceRecord record;
+        try {
+            record = readRecord();
+        } catch (IllegalArgumentException e) {
+            // The place is framed by its length, so the following ones can still be read
+            mBuffer.position(end);
+            throw new InvalidPlaceException("Invalid place", mRecord, e);
+        } catch (BufferUnderflowException e) {
+            throw new PlaceFormatException("Place overflows its length", mRecord, e);
+        }
+        if (mBuffer.position() > end) throw new PlaceFormatException("Place overflows its length", mRecord);
+        // Skips the fields of later versions
+        mBuffer.position(end);
+        return PlaceRecord.validate(record, mRecord);
+    }
+
+    /**
+     * Reads the fields of a place (checked by the caller, once it's past the place)
+     */
+    private PlaceRecord readRecord() {
+        String placeId = getString();
+        String name = getString();
+        String address = getString();
+        double latitude = mBuffer.getDouble();
+        double longitude = mBuffer.getDouble();
+        float radius = mBuffer.getFloat();
+        byte flags = mBuffer.get();
+        float size = mBuffer.getFloat();
+        int responsiveness = mBuffer.getInt();
+        int loiteringDelay = mBuffer.getInt();
+
+        int windowCount = mBuffer.get() & 0xff;
+        List<TimeWindow> windows = Collections.emptyList();
+        if (windowCount > 0) {
+            windows = new ArrayList<>(windowCount);
+            for (int i = 0; i < windowCount; i++) {
+                windows.add(new TimeWindow(mBuffer.get(), mBuffer.getShort(), mBuffer.getShort()));
+            }
+        }
+
+        return new PlaceRecord(new PlaceSnapshot(placeId, name, address, latitude, longitude,
+                radius, (flags & FLAG_ENABLED) != 0, size, responsiveness, loiteringDelay), windows);
+    }
+
+    private String getString() {
+        int length = mBuffer.getShort() & 0xffff;
+        if (length == MAX_STRING_LENGTH) return null;
+        if (length > mBuffer.remaining()) throw new BufferUnderflowException();
+        // Decodes straight out of the buffer's array, without copying the bytes first
+        String value = new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(),
+                length, PlaceFormat.UTF_8);
+        mBuffer.position(mBuffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Reads off the channel until the buffer holds the passed number of bytes, growing it for
+     * a place larger than the buffer
+     * @return - Whether there are enough bytes (false once the input is over)
+     */
+    private boolean fill(int size) throws IOException {
+        if (mBuffer.remaining() >= size) return true;
+        if (mBuffer.capacity() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(size);
+            larger.put(mBuffer);
+            larger.flip();
+            mBuffer = larger;
+        }
+
+        mBuffer.compact();
+        try {
+            while (mBuffer.position() < size && !mIsEndOfInput) {
+                if (mChannel.read(mBuffer) < 0) mIsEndOfInput = true;
+            }
+        } finally {
+            mBuffer.flip();
+        }
+        return mBuffer.remaining() >= size;
+    }
+}
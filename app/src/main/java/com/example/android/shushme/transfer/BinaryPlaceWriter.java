@@ -0,0 +1,150 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes places in the binary format: a header (magic and version) followed by the places,
+ * each one prefixed with its length. The layout of a place is:
+ * <pre>
+ * int     length of the rest of the place (in bytes)
+ * string  placeID, name, address (unsigned short length, or 0xffff for null, then UTF-8)
+ * double  latitude, longitude
+ * float   radius
+ * byte    flags (bit 0: enabled)
+ * float   size
+ * int     responsiveness, loiteringDelay
+ * byte    window count, then per window: byte days, short start minute, short end minute
+ * </pre>
+ * Fields added by later versions go at the end of a place, so older readers skip them.
+ * All numbers are big endian.
+ */
+final class BinaryPlaceWriter implements PlaceWriter {
+
+    private final WritableByteChannel mChannel;
+    private ByteBuffer mBuffer = ByteBuffer.allocate(PlaceFormat.BUFFER_SIZE);
+    private boolean mHasHeader;
+
+    BinaryPlaceWriter(WritableByteChannel channel) {
+        mChannel = channel;
+    }
+
+    @Override
+    public void write(PlaceRecord record) throws IOException {
+        if (!mHasHeader) {
+            mBuffer.put(BinaryPlaceReader.MAGIC);
+            mBuffer.put(BinaryPlaceReader.VERSION);
+            mHasHeader = true;
+        }
+
+        PlaceSnapshot place = record.getPlace();
+        byte[] placeId = encode(place.getPlaceId());
+        byte[] name = encode(place.getName());
+        byte[] address = encode(place.getAddress());
+        int windowCount = Math.min(record.getWindows().size(), BinaryPlaceReader.MAX_WINDOWS);
+        int length = stringSize(placeId) + stringSize(name) + stringSize(address)
+                + BinaryPlaceReader.FIXED_SIZE
+                + windowCount * BinaryPlaceReader.WINDOW_SIZE;
+
+        reserve(4 + length);
+        mBuffer.putInt(length);
+        putString(placeId);
+        putString(name);
+        putString(address);
+        mBuffer.putDouble(place.getLatitude());
+        mBuffer.putDouble(place.getLongitude());
+        mBuffer.putFloat(place.getRadius());
+        mBuffer.put(place.isEnabled() ? BinaryPlaceReader.FLAG_ENABLED : 0);
+        mBuffer.putFloat(place.getSize());
+        mBuffer.putInt(place.getResponsiveness());
+        mBuffer.putInt(place.getLoiteringDelay());
+        mBuffer.put((byte) windowCount);
+        for (int i = 0; i < windowCount; i++) {
+            TimeWindow window = record.getWindows().get(i);
+            mBuffer.put((byte) window.getDays());
+            mBuffer.putShort((short) window.getStartMinute());
+            mBuffer.putShort((short) window.getEndMinute());
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!mHasHeader) {
+            mBuffer.put(BinaryPlaceReader.MAGIC);
+            mBuffer.put(BinaryPlaceReader.VERSION);
+            mHasHeader = true;
+        }
+        flush();
+    }
+
+    /**
+     * Makes room for the passed number of bytes, flushing the buffer (or growing it, for a
+     * place larger than the buffer)
+     */
+    private void reserve(int size) throws IOException {
+        if (mBuffer.remaining() >= size) return;
+        flush();
+        if (mBuffer.capacity() < size) mBuffer = ByteBuffer.allocate(size);
+    }
+
+    private void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    private void putString(byte[] value) {
+        if (value == null) {
+            mBuffer.putShort(BinaryPlaceReader.NULL_STRING);
+            return;
+        }
+        mBuffer.putShort((short) value.length);
+        mBuffer.put(value);
+    }
+
+    private static int stringSize(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+
+    /**
+     * @return - The UTF-8 bytes of the value (cut to the longest length the format holds),
+     *           or null
+     */
+    private static byte[] encode(String value) {
+        if (value == null) return null;
+        byte[] bytes = value.getBytes(PlaceFormat.UTF_8);
+        if (bytes.length < BinaryPlaceReader.MAX_STRING_LENGTH) return bytes;
+
+        // Cuts on a character boundary, rather than in the middle of a sequence
+        int length = BinaryPlaceReader.MAX_STRING_LENGTH - 1;
+        while (length > 0 && (bytes[length] & 0xc0) == 0x80) length--;
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads places off CSV (RFC 4180). The header row names the columns, in any order: unknown
+ * columns are ignored, and missing optional ones fall back to the app's defaults. Blank
+ * lines are skipped. See CsvPlaceWriter for the schedule column.
+ */
+final class CsvPlaceReader implements PlaceReader {
+
+    private static final String BYTE_ORDER_MARK = "\uFEFF";
+
+    private final TextInput mInput;
+    // The row being read, reused from one row to the next
+    private final List<String> mFields = new ArrayList<>();
+    private final StringBuilder mField = new StringBuilder();
+    private boolean mHasHeader;
+    private int mRecord;
+
+    // The index of each column within a row, or -1 if it's missing
+    private int mPlaceIdColumn;
+    private int mNameColumn;
+    private int mAddressColumn;
+    private int mLatitudeColumn;
+    private int mLongitudeColumn;
+    private int mRadiusColumn;
+    private int mEnabledColumn;
+    private int mSizeColumn;
+    private int mResponsivenessColumn;
+    private int mLoiteringDelayColumn;
+    private int mScheduleColumn;
+
+    CsvPlaceReader(TextInput input) {
+        mInput = input;
+    }
+
+    @Override
+    public PlaceRecord read() throws IOException {
+        if (!mHasHeader) readHeader();
+
+        do {
+            if (!readRow()) return null;
+        } while (mFields.size() == 1 && mFields.get(0).isEmpty());
+        mRecord++;
+
+        // The row was read whole, so any problem with its fields only invalidates this place
+        String placeId = getRequired(mPlaceIdColumn, PlaceFormat.FIELD_PLACE_ID);
+        String enabled = get(mEnabledColumn);
+        try {
+            PlaceSnapshot place = new PlaceSnapshot(
+                    placeId,
+                    get(mNameColumn),
+                    get(mAddressColumn),
+                    Double.parseDouble(getRequired(mLatitudeColumn, PlaceFormat.FIELD_LATITUDE)),
+                    Double.parseDouble(getRequired(mLongitudeColumn, PlaceFormat.FIELD_LONGITUDE)),
+                    getFloat(mRadiusColumn, 0),
+                    enabled == null || enabled.equals("1") || enabled.equalsIgnoreCase("true"),
+                    getFloat(mSizeColumn, 0),
+                    getInt(mResponsivenessColumn, PlaceSnapshot.AUTO),
+                    getInt(mLoiteringDelayColumn, PlaceSnapshot.AUTO));
+            return PlaceRecord.validate(new PlaceRecord(place, parseSchedule(get(mScheduleColumn))), mRecord);
+        } catch (IllegalArgumentException e) {
+            // Number formats included
+            throw new InvalidPlaceException("Invalid place", mRecord, e);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (!readRow()) throw new PlaceFormatException("Missing header", 0);
+        // Spreadsheets may start the file with a byte order mark
+        String first = mFields.get(0);
+        if (first.startsWith(BYTE_ORDER_MARK)) mFields.set(0, first.substring(1));
+
+        mPlaceIdColumn = mFields.indexOf(PlaceFormat.FIELD_PLACE_ID);
+        mNameColumn = mFields.indexOf(PlaceFormat.FIELD_NAME);
+        mAddressColumn = mFields.indexOf(PlaceFormat.FIELD_ADDRESS);
+        mLatitudeColumn = mFields.indexOf(PlaceFormat.FIELD_LATITUDE);
+        mLongitudeColumn = mFields.indexOf(PlaceFormat.FIELD_LONGITUDE);
+        mRadiusColumn = mFields.indexOf(PlaceFormat.FIELD_RADIUS);
+        mEnabledColumn = mFields.indexOf(PlaceFormat.FIELD_ENABLED);
+        mSizeColumn = mFields.indexOf(PlaceFormat.FIELD_SIZE);
+        mResponsivenessColumn = mFields.indexOf(PlaceFormat.FIELD_RESPONSIVENESS);
+        mLoiteringDelayColumn = mFields.indexOf(PlaceFormat.FIELD_LOITERING_DELAY);
+        mScheduleColumn = mFields.indexOf(PlaceFormat.FIELD_SCHEDULE);
+        if (mPlaceIdColumn < 0 || mLatitudeColumn < 0 || mLongitudeColumn < 0) {
+            throw new PlaceFormatException("The header misses a required column", 0);
+        }
+        mHasHeader = true;
+    }
+
+    /**
+     * @return - The value of a column on the current row, or null if it's missing or empty
+     */
+    private String get(int column) {
+        if (column < 0 || column >= mFields.size()) return null;
+        String value = mFields.get(column);
+        return value.isEmpty() ? null : value;
+    }
+
+    private String getRequired(int column, String name) throws InvalidPlaceException {
+        String value = get(column);
+        if (value == null) throw new InvalidPlaceException("Missing " + name, mRecord);
+        return value;
+    }
+
+    private float getFloat(int column, float defaultValue) {
+        String value = get(column);
+        return value == null ? defaultValue : Float.parseFloat(value);
+    }
+
+    private int getInt(int column, int defaultValue) {
+        String value = get(column);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Reads the next row into mFields. Quoted fields may hold separators, doubled quotes and
+     * line breaks.
+     * @return - Whether a row was read (false once the input is over)
+     */
+    private boolean readRow() throws IOException {
+        mFields.clear();
+        int c = mInput.read();
+        if (c == TextInput.END) return false;
+
+        while (true) {
+            mField.setLength(0);
+            if (c == '"') {
+                while (true) {
+                    c = mInput.read();
+                    if (c == TextInput.END) throw new PlaceFormatException("Unterminated quote", mRecord + 1);
+                    if (c == '"') {
+                        if (mInput.peek() != '"') break;
+                        mInput.read();
+                    }
+                    mField.append((char) c);
+                }
+                c = mInput.read();
+            }
+            while (c != ',' && c != '\r' && c != '\n' && c != TextInput.END) {
+                mField.append((char) c);
+                c = mInput.read();
+            }
+            mFields.add(mField.toString());
+
+            if (c == ',') {
+                c = mInput.read();
+                continue;
+            }
+            // Either line break ends the row (\r\n counts once)
+            if (c == '\r' && mInput.peek() == '\n') mInput.read();
+            return true;
+        }
+    }
+
+    /**
+     * Parses a schedule column, e.g. "-MTWTF- 09:00-17:30;S-----S 10:00-12:00"
+     * @return - The windows (empty if the column is)
+     * @throws IllegalArgumentException - If the column is malformed
+     */
+    static List<TimeWindow> parseSchedule(String schedule) {
+        if (schedule == null || schedule.trim().isEmpty()) return Collections.emptyList();
+
+        List<TimeWindow> windows = new ArrayList<>();
+        for (String window : schedule.split(";")) {
+            window = window.trim();
+            if (window.isEmpty()) continue;
+
+            String[] parts = window.split("\\s+");
+            int days = CsvPlaceWriter.DAY_LETTERS.length();
+            String[] times = parts.length == 2 ? parts[1].split("-") : null;
+            if (parts[0].length() != days || times == null || times.length != 2) {
+                throw new IllegalArgumentException("Invalid window: " + window);
+            }
+
+            int mask = 0;
+            for (int day = 0; day < days; day++) {
+                if (parts[0].charAt(day) != CsvPlaceWriter.NO_DAY) mask |= 1 << day;
+            }
+            windows.add(new TimeWindow(mask, parseTime(times[0]), parseTime(times[1])));
+        }
+        return windows;
+    }
+
+    /**
+     * @return - The minutes since midnight of a "HH:mm" time
+     */
+    private static int parseTime(String time) {
+        int separator = time.indexOf(':');
+        if (separator < 0) throw new IllegalArgumentException("Invalid time: " + time);
+        return Integer.parseInt(time.substring(0, separator)) * 60
+                + Integer.parseInt(time.substring(separator + 1));
+    }
+}
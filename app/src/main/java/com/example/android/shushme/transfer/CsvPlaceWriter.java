@@ -0,0 +1,179 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Writes places as CSV (RFC 4180), under a header row. A place's schedule is written into a
+ * single column, its windows separated by semicolons, each one as the days it starts on
+ * followed by its times, e.g. "-MTWTF- 09:00-17:30" (see CsvPlaceReader).
+ */
+final class CsvPlaceWriter implements PlaceWriter {
+
+    // The columns, in the order they're written
+    private static final String[] COLUMNS = {
+            PlaceFormat.FIELD_PLACE_ID,
+            PlaceFormat.FIELD_NAME,
+            PlaceFormat.FIELD_ADDRESS,
+            PlaceFormat.FIELD_LATITUDE,
+            PlaceFormat.FIELD_LONGITUDE,
+            PlaceFormat.FIELD_RADIUS,
+            PlaceFormat.FIELD_ENABLED,
+            PlaceFormat.FIELD_SIZE,
+            PlaceFormat.FIELD_RESPONSIVENESS,
+            PlaceFormat.FIELD_LOITERING_DELAY,
+            PlaceFormat.FIELD_SCHEDULE
+    };
+    // The letter of each day of the week, from Sunday, and of the days a window doesn't start on
+    static final String DAY_LETTERS = "SMTWTFS";
+    static final char NO_DAY = '-';
+
+    private final Writer mWriter;
+    // The place being written, handed to the writer at once
+    private final StringBuilder mLine = new StringBuilder();
+    private char[] mChars = new char[0];
+    private final StringBuilder mSchedule = new StringBuilder();
+    private boolean mHasHeader;
+
+    CsvPlaceWriter(WritableByteChannel channel) {
+        mWriter = Channels.newWriter(channel, PlaceFormat.UTF_8.newEncoder(), PlaceFormat.BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(PlaceRecord record) throws IOException {
+        appendHeader();
+
+        PlaceSnapshot place = record.getPlace();
+        appendField(place.getPlaceId());
+        mLine.append(',');
+        appendField(place.getName());
+        mLine.append(',');
+        appendField(place.getAddress());
+        mLine.append(',');
+        mLine.append(place.getLatitude());
+        mLine.append(',');
+        mLine.append(place.getLongitude());
+        mLine.append(',');
+        mLine.append(place.getRadius());
+        mLine.append(',');
+        mLine.append(place.isEnabled() ? '1' : '0');
+        mLine.append(',');
+        mLine.append(place.getSize());
+        mLine.append(',');
+        mLine.append(place.getResponsiveness());
+        mLine.append(',');
+        mLine.append(place.getLoiteringDelay());
+        mLine.append(',');
+        appendField(formatSchedule(record.getWindows()));
+        mLine.append("\r\n");
+        flushLine();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        appendHeader();
+        flushLine();
+        mWriter.flush();
+    }
+
+    private void appendHeader() {
+        if (mHasHeader) return;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) mLine.append(',');
+            mLine.append(COLUMNS[i]);
+        }
+        mLine.append("\r\n");
+        mHasHeader = true;
+    }
+
+    /**
+     * Appends a field, quoted if it holds a separator, a quote or a line break. A null value
+     * is left empty.
+     */
+    private void appendField(String value) {
+        if (value == null) return;
+
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!needsQuotes) {
+            mLine.append(value);
+            return;
+        }
+
+        mLine.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') mLine.append('"');
+            mLine.append(c);
+        }
+        mLine.append('"');
+    }
+
+    /**
+     * @return - The schedule column of the passed windows (empty if there's none)
+     */
+    private String formatSchedule(List<TimeWindow> windows) {
+        if (windows.isEmpty()) return "";
+
+        mSchedule.setLength(0);
+        for (TimeWindow window : windows) {
+            if (mSchedule.length() > 0) mSchedule.append(';');
+            for (int day = 0; day < DAY_LETTERS.length(); day++) {
+                mSchedule.append((window.getDays() & (1 << day)) != 0 ? DAY_LETTERS.charAt(day) : NO_DAY);
+            }
+            mSchedule.append(' ');
+            appendTime(window.getStartMinute());
+            mSchedule.append('-');
+            appendTime(window.getEndMinute());
+        }
+        return mSchedule.toString();
+    }
+
+    private void appendTime(int minuteOfDay) {
+        int hours = minuteOfDay / 60;
+        int minutes = minuteOfDay % 60;
+        if (hours < 10) mSchedule.append('0');
+        mSchedule.append(hours).append(':');
+        if (minutes < 10) mSchedule.append('0');
+        mSchedule.append(minutes);
+    }
+
+    /**
+     * Hands the place (or header) being written to the writer, in a single call
+     */
+    private void flushLine() throws IOException {
+        int length = mLine.length();
+        if (mChars.length < length) mChars = new char[Math.max(length, 2 * mChars.length)];
+        mLine.getChars(0, length, mChars, 0);
+        mWriter.write(mChars, 0, length);
+        mLine.setLength(0);
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads places off a JSON array of objects, one object at a time. Unknown members are
+ * skipped, and missing (or null) optional ones fall back to the app's defaults.
+ */
+final class JsonPlaceReader implements PlaceReader {
+
+    private final TextInput mInput;
+    // The string or scalar being read, reused from one to the next
+    private final StringBuilder mToken = new StringBuilder();
+    private boolean mHasStarted;
+    private boolean mIsFinished;
+    private int mRecord;
+    // Why the schedule of the place being read is invalid, reported once the place was read whole
+    private IllegalArgumentException mScheduleError;
+
+    JsonPlaceReader(TextInput input) {
+        mInput = input;
+    }
+
+    @Override
+    public PlaceRecord read() throws IOException {
+        if (mIsFinished) return null;
+
+        int c = next();
+        if (!mHasStarted) {
+            if (c != '[') throw error("Expected an array");
+            mHasStarted = true;
+            c = next();
+            if (c == ']') return finish();
+        } else if (c == ']') {
+            return finish();
+        } else if (c == ',') {
+            c = next();
+        } else {
+            throw error("Expected ',' or ']'");
+        }
+
+        mRecord++;
+        if (c != '{') throw error("Expected an object");
+        return readPlace();
+    }
+
+    private PlaceRecord finish() {
+        mIsFinished = true;
+        return null;
+    }
+
+    /**
+     * Reads the members of a place, once its opening brace was read
+     */
+    private PlaceRecord readPlace() throws IOException {
+        String placeId = null;
+        String name = null;
+        String address = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        double radius = Double.NaN;
+        boolean enabled = true;
+        double size = Double.NaN;
+        double responsiveness = Double.NaN;
+        double loiteringDelay = Double.NaN;
+        List<TimeWindow> windows = Collections.emptyList();
+        mScheduleError = null;
+
+        int c = next();
+        if (c != '}') {
+            while (true) {
+                if (c != '"') throw error("Expected a member name");
+                String member = readString();
+                if (next() != ':') throw error("Expected ':'");
+
+                switch (member) {
+                    case PlaceFormat.FIELD_PLACE_ID:
+                        placeId = readNullableString();
+                        break;
+                    case PlaceFormat.FIELD_NAME:
+                        name = readNullableString();
+                        break;
+                    case PlaceFormat.FIELD_ADDRESS:
+                        address = readNullableString();
+                        break;
+                    case PlaceFormat.FIELD_LATITUDE:
+                        latitude = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_LONGITUDE:
+                        longitude = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_RADIUS:
+                        radius = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_ENABLED:
+                        enabled = readBoolean();
+                        break;
+                    case PlaceFormat.FIELD_SIZE:
+                        size = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_RESPONSIVENESS:
+                        responsiveness = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_LOITERING_DELAY:
+                        loiteringDelay = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_SCHEDULE:
+                        windows = readSchedule();
+                        break;
+                    default:
+                        skipValue(next());
+                }
+
+                c = next();
+                if (c == '}') break;
+                if (c != ',') throw error("Expected ',' or '}'");
+                c = next();
+            }
+        }
+
+        // The object was read whole, so any problem with its members only invalidates this place
+        if (placeId == null || placeId.isEmpty()) throw new InvalidPlaceException("Missing placeID", mRecord);
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new InvalidPlaceException("Missing coordinates", mRecord);
+        }
+        if (mScheduleError != null) throw new InvalidPlaceException("Invalid window", mRecord, mScheduleError);
+        PlaceSnapshot place = new PlaceSnapshot(placeId, name, address, latitude, longitude,
+                Double.isNaN(radius) ? 0 : (float) radius,
+                enabled,
+                Double.isNaN(size) ? 0 : (float) size,
+                toInt(responsiveness, PlaceFormat.FIELD_RESPONSIVENESS),
+                toInt(loiteringDelay, PlaceFormat.FIELD_LOITERING_DELAY));
+        return PlaceRecord.validate(new PlaceRecord(place, windows), mRecord);
+    }
+
+    /**
+     * Converts a number member holding a whole number of milliseconds
+     * @return - The value, or AUTO if the member was missing
+     * @throws InvalidPlaceException - If the value isn't a whole number within the int range
+     */
+    private int toInt(double value, String member) throws InvalidPlaceException {
+        if (Double.isNaN(value)) return PlaceSnapshot.AUTO;
+        if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new InvalidPlaceException("Invalid " + member + " " + value, mRecord);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a schedule: an array of {"days", "start", "end"} objects, or null
+     */
+    private List<TimeWindow> readSchedule() throws IOException {
+        int c = next();
+        if (c != '[') {
+            readScalar(c);
+            if (!mToken.toString().equals("null")) throw error("Expected a schedule");
+            return Collections.emptyList();
+        }
+
+        List<TimeWindow> windows = new ArrayList<>();
+        c = next();
+        while (c != ']') {
+            if (c != '{') throw error("Expected a window");
+            double days = Double.NaN;
+            double start = Double.NaN;
+            double end = Double.NaN;
+
+            c = next();
+            while (c != '}') {
+                if (c != '"') throw error("Expected a member name");
+                String member = readString();
+                if (next() != ':') throw error("Expected ':'");
+                switch (member) {
+                    case PlaceFormat.FIELD_DAYS:
+                        days = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_START:
+                        start = readNumber();
+                        break;
+                    case PlaceFormat.FIELD_END:
+                        end = readNumber();
+                        break;
+                    default:
+                        skipValue(next());
+                }
+                c = next();
+                if (c == ',') c = next();
+                else if (c != '}') throw error("Expected ',' or '}'");
+            }
+
+            try {
+                if (Double.isNaN(start) || Double.isNaN(end)) {
+                    throw new IllegalArgumentException("Incomplete window");
+                }
+                windows.add(new TimeWindow(Double.isNaN(days) ? TimeWindow.EVERY_DAY : (int) days,
+                        (int) start, (int) end));
+            } catch (IllegalArgumentException e) {
+                // The rest of the place is still read, so the places following it can be
+                if (mScheduleError == null) mScheduleError = e;
+            }
+
+            c = next();
+            if (c == ',') c = next();
+            else if (c != ']') throw error("Expected ',' or ']'");
+        }
+        return windows;
+    }
+
+    /**
+     * @return - A string value, or null for a null literal
+     */
+    private String readNullableString() throws IOException {
+        int c = next();
+        if (c == '"') return readString();
+        readScalar(c);
+        if (!mToken.toString().equals("null")) throw error("Expected a string");
+        return null;
+    }
+
+    /**
+     * @return - A number value, or NaN for a null literal
+     */
+    private double readNumber() throws IOException {
+        readScalar(next());
+        String token = mToken.toString();
+        if (token.equals("null")) return Double.NaN;
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new PlaceFormatException("Invalid number " + token, mRecord, e);
+        }
+    }
+
+    private boolean readBoolean() throws IOException {
+        readScalar(next());
+        String token = mToken.toString();
+        if (token.equals("true")) return true;
+        if (token.equals("false")) return false;
+        throw error("Invalid boolean " + token);
+    }
+
+    /**
+     * Reads the characters of a number or a literal into mToken, up to (without consuming)
+     * the delimiter following it
+     * @param c - The first character, already consumed
+     */
+    private void readScalar(int c) throws IOException {
+        mToken.setLength(0);
+        while (true) {
+            if (c == TextInput.END) throw error("Unexpected end of input");
+            mToken.append((char) c);
+            int following = mInput.peek();
+            if (following == ',' || following == '}' || following == ']'
+                    || following == TextInput.END || isWhitespace(following)) {
+                return;
+            }
+            c = mInput.read();
+        }
+    }
+
+    /**
+     * Reads a string, once its opening quote was read
+     */
+    private String readString() throws IOException {
+        mToken.setLength(0);
+        while (true) {
+            int c = mInput.read();
+            if (c == TextInput.END) throw error("Unterminated string");
+            if (c == '"') return mToken.toString();
+            if (c != '\\') {
+                mToken.append((char) c);
+                continue;
+            }
+
+            c = mInput.read();
+            switch (c) {
+                case 'b':
+                    mToken.append('\b');
+                    break;
+                case 'f':
+                    mToken.append('\f');
+                    break;
+                case 'n':
+                    mToken.append('\n');
+                    break;
+                case 'r':
+                    mToken.append('\r');
+                    break;
+                case 't':
+                    mToken.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(mInput.read(), 16);
+                        if (digit < 0) throw error("Invalid escape");
+                        code = code * 16 + digit;
+                    }
+                    mToken.append((char) code);
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    mToken.append((char) c);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    /**
+     * Skips a value of any kind (unknown members)
+     * @param c - The first character of the value, already consumed
+     */
+    private void skipValue(int c) throws IOException {
+        if (c == '"') {
+            readString();
+        } else if (c == '[' || c == '{') {
+            int close = c == '[' ? ']' : '}';
+            c = next();
+            while (c != close) {
+                skipValue(c);
+                c = next();
+                // Member names are skipped as values, along with their colons
+                if (c == ',' || c == ':') c = next();
+            }
+        } else {
+            readScalar(c);
+        }
+    }
+
+    /**
+     * @return - The next character which isn't white space
+     */
+    private int next() throws IOException {
+        int c;
+        do {
+            c = mInput.read();
+        } while (isWhitespace(c));
+        if (c == TextInput.END) throw error("Unexpected end of input");
+        return c;
+    }
+
+    /**
+     * @return - Whether the character is JSON white space (or a byte order mark)
+     */
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF';
+    }
+
+    private PlaceFormatException error(String message) {
+        return new PlaceFormatException(message, mRecord);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes places as a JSON array, one object per line. Null names and addresses are left out,
+ * and a schedule is an array of {"days", "start", "end"} objects.
+ */
+final class JsonPlaceWriter implements PlaceWriter {
+
+    private final Writer mWriter;
+    // The place being written, handed to the writer at once
+    private final StringBuilder mLine = new StringBuilder();
+    private char[] mChars = new char[0];
+    private boolean mIsFirst = true;
+
+    JsonPlaceWriter(WritableByteChannel channel) {
+        mWriter = Channels.newWriter(channel, PlaceFormat.UTF_8.newEncoder(), PlaceFormat.BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(PlaceRecord record) throws IOException {
+        mLine.append(mIsFirst ? "[\n" : ",\n");
+        mIsFirst = false;
+
+        PlaceSnapshot place = record.getPlace();
+        mLine.append('{');
+        appendName(PlaceFormat.FIELD_PLACE_ID);
+        appendString(place.getPlaceId());
+        if (place.getName() != null) {
+            mLine.append(',');
+            appendName(PlaceFormat.FIELD_NAME);
+            appendString(place.getName());
+        }
+        if (place.getAddress() != null) {
+            mLine.append(',');
+            appendName(PlaceFormat.FIELD_ADDRESS);
+            appendString(place.getAddress());
+        }
+        appendNumber(PlaceFormat.FIELD_LATITUDE, Double.toString(place.getLatitude()));
+        appendNumber(PlaceFormat.FIELD_LONGITUDE, Double.toString(place.getLongitude()));
+        appendNumber(PlaceFormat.FIELD_RADIUS, Float.toString(place.getRadius()));
+        mLine.append(',');
+        appendName(PlaceFormat.FIELD_ENABLED);
+        mLine.append(place.isEnabled() ? "true" : "false");
+        appendNumber(PlaceFormat.FIELD_SIZE, Float.toString(place.getSize()));
+        appendNumber(PlaceFormat.FIELD_RESPONSIVENESS, Integer.toString(place.getResponsiveness()));
+        appendNumber(PlaceFormat.FIELD_LOITERING_DELAY, Integer.toString(place.getLoiteringDelay()));
+
+        if (!record.getWindows().isEmpty()) {
+            mLine.append(',');
+            appendName(PlaceFormat.FIELD_SCHEDULE);
+            mLine.append('[');
+            boolean isFirstWindow = true;
+            for (TimeWindow window : record.getWindows()) {
+                if (!isFirstWindow) mLine.append(',');
+                isFirstWindow = false;
+                mLine.append('{');
+                appendName(PlaceFormat.FIELD_DAYS);
+                mLine.append(window.getDays());
+                appendNumber(PlaceFormat.FIELD_START, Integer.toString(window.getStartMinute()));
+                appendNumber(PlaceFormat.FIELD_END, Integer.toString(window.getEndMinute()));
+                mLine.append('}');
+            }
+            mLine.append(']');
+        }
+        mLine.append('}');
+        flushLine();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        mLine.append(mIsFirst ? "[]\n" : "\n]\n");
+        mIsFirst = false;
+        flushLine();
+        mWriter.flush();
+    }
+
+    private void appendName(String name) {
+        mLine.append('"');
+        mLine.append(name);
+        mLine.append("\":");
+    }
+
+    /**
+     * Appends a member holding a number, after the previous member
+     */
+    private void appendNumber(String name, String value) {
+        mLine.append(',');
+        appendName(name);
+        // JSON has no NaN or infinities
+        mLine.append(value.equals("NaN") || value.contains("Infinity") ? "null" : value);
+    }
+
+    private void appendString(String value) {
+        mLine.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    mLine.append("\\\"");
+                    break;
+                case '\\':
+                    mLine.append("\\\\");
+                    break;
+                case '\n':
+                    mLine.append("\\n");
+                    break;
+                case '\r':
+                    mLine.append("\\r");
+                    break;
+                case '\t':
+                    mLine.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        mLine.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        mLine.append(c);
+                    }
+            }
+        }
+        mLine.append('"');
+    }
+
+    /**
+     * Hands the place (or header) being written to the writer, in a single call
+     */
+    private void flushLine() throws IOException {
+        int length = mLine.length();
+        if (mChars.length < length) mChars = new char[Math.max(length, 2 * mChars.length)];
+        mLine.getChars(0, length, mChars, 0);
+        mWriter.write(mChars, 0, length);
+        mLine.setLength(0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * The formats places are imported from and exported to:
+ * <ul>
+ * <li>CSV, with a header row naming the columns (in any order).</li>
+ * <li>JSON, as an array of objects.</li>
+ * <li>BINARY, a compact length-prefixed format, the fastest to parse.</li>
+ * </ul>
+ * The fields are named after the columns of the places table. Only placeID, latitude and
+ * longitude are required, the rest falls back to the app's defaults.
+ * <p>
+ * Every format is parsed in a streaming fashion off a channel, through a single buffer.
+ * This class doesn't depend on Android.
+ */
+public enum PlaceFormat {
+
+    CSV("text/csv", "csv"),
+    JSON("application/json", "json"),
+    BINARY("application/octet-stream", "shushme");
+
+    // The size of the buffers between the channels and the parsers (in bytes)
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The field names, shared by the text formats
+    static final String FIELD_PLACE_ID = "placeID";
+    static final String FIELD_NAME = "name";
+    static final String FIELD_ADDRESS = "address";
+    static final String FIELD_LATITUDE = "latitude";
+    static final String FIELD_LONGITUDE = "longitude";
+    static final String FIELD_RADIUS = "radius";
+    static final String FIELD_ENABLED = "enabled";
+    static final String FIELD_SIZE = "size";
+    static final String FIELD_RESPONSIVENESS = "responsiveness";
+    static final String FIELD_LOITERING_DELAY = "loiteringDelay";
+    static final String FIELD_SCHEDULE = "schedule";
+    // The fields of each window of a JSON schedule
+    static final String FIELD_DAYS = "days";
+    static final String FIELD_START = "start";
+    static final String FIELD_END = "end";
+
+    private final String mMimeType;
+    private final String mExtension;
+
+    PlaceFormat(String mimeType, String extension) {
+        mMimeType = mimeType;
+        mExtension = extension;
+    }
+
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    public String getExtension() {
+        return mExtension;
+    }
+
+    /**
+     * @param channel - The channel the places are written into
+     * @return - A writer of this format
+     */
+    public PlaceWriter newWriter(WritableByteChannel channel) {
+        switch (this) {
+            case CSV:
+                return new CsvPlaceWriter(channel);
+            case JSON:
+                return new JsonPlaceWriter(channel);
+            default:
+                return new BinaryPlaceWriter(channel);
+        }
+    }
+
+    /**
+     * @param channel - The channel the places are read from
+     * @return - A reader of this format
+     */
+    public PlaceReader newReader(ReadableByteChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        return newReader(channel, buffer);
+    }
+
+    /**
+     * Opens a reader of whichever format the channel holds, told apart by its first bytes
+     * @param channel - The channel the places are read from
+     * @return - A reader of the detected format
+     * @throws IOException - If the channel can't be read
+     */
+    public static PlaceReader detect(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // Reads past the magic and up to the first meaningful byte (JSON may start with
+        // white space), unless the input is shorter
+        int first = -1;
+        int scanned = 0;
+        while ((first < 0 || buffer.position() < BinaryPlaceReader.MAGIC.length)
+                && buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            for (; first < 0 && scanned < buffer.position(); scanned++) {
+                if (!isBlank(buffer.get(scanned))) first = scanned;
+            }
+        }
+        buffer.flip();
+
+        PlaceFormat format;
+        if (BinaryPlaceReader.hasMagic(buffer)) {
+            format = BINARY;
+        } else if (first >= 0 && (buffer.get(first) == '[' || buffer.get(first) == '{')) {
+            format = JSON;
+        } else {
+            format = CSV;
+        }
+        return format.newReader(channel, buffer);
+    }
+
+    /**
+     * @param buffer - Holds the bytes already read off the channel (in read mode)
+     */
+    private PlaceReader newReader(ReadableByteChannel channel, ByteBuffer buffer) {
+        switch (this) {
+            case CSV:
+                return new CsvPlaceReader(new TextInput(channel, buffer));
+            case JSON:
+                return new JsonPlaceReader(new TextInput(channel, buffer));
+            default:
+                return new BinaryPlaceReader(channel, buffer);
+        }
+    }
+
+    /**
+     * @return - Whether a byte is white space, or part of a UTF-8 byte order mark
+     */
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r'
+                || b == (byte) 0xef || b == (byte) 0xbb || b == (byte) 0xbf;
+    }
+}
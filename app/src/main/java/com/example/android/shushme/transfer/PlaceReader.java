@@ -0,0 +1,36 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Parses places one at a time out of a channel, so a file of any size is read in constant
+ * memory. The channel is left open.
+ */
+public interface PlaceReader {
+
+    /**
+     * @return - The next place, or null once the input is over
+     * @throws PlaceFormatException - If the input is malformed
+     * @throws IOException - If the channel can't be read
+     */
+    PlaceRecord read() throws IOException;
+}
@@ -0,0 +1,84 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.model.PlaceValidator;
+import com.example.android.shushme.schedule.TimeWindow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A place as it's imported or exported: its details and settings, along with its quiet
+ * schedule
+ */
+public final class PlaceRecord {
+
+    private final PlaceSnapshot mPlace;
+    private final List<TimeWindow> mWindows;
+
+    /**
+     * @param place - The place's details and settings
+     * @param windows - The place's quiet schedule (empty if it's quiet at all hours)
+     */
+    public PlaceRecord(PlaceSnapshot place, List<TimeWindow> windows) {
+        mPlace = place;
+        mWindows = windows.isEmpty()
+                ? Collections.<TimeWindow>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(windows));
+    }
+
+    /**
+     * Checks an imported place, once it was read whole. Every reader goes through this.
+     * @param record - The place which was read
+     * @param index - The (1 based) index of the place
+     * @return - The place, if it's valid
+     * @throws InvalidPlaceException - If the place can't be fenced (see PlaceValidator)
+     */
+    static PlaceRecord validate(PlaceRecord record, int index) throws InvalidPlaceException {
+        String problem = PlaceValidator.check(record.mPlace);
+        if (problem != null) throw new InvalidPlaceException(problem, index);
+        return record;
+    }
+
+    public PlaceSnapshot getPlace() {
+        return mPlace;
+    }
+
+    public List<TimeWindow> getWindows() {
+        return mWindows;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof PlaceRecord)) return false;
+
+        PlaceRecord that = (PlaceRecord) other;
+        return mPlace.equals(that.mPlace) && mWindows.equals(that.mWindows);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mPlace.hashCode() + mWindows.hashCode();
+    }
+}
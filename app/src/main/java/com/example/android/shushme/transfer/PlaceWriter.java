@@ -0,0 +1,41 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Writes places one at a time into a channel. The output is buffered, so finish() must be
+ * called once every place was written. The channel is left open.
+ */
+public interface PlaceWriter {
+
+    /**
+     * @param record - The place to be written
+     * @throws IOException - If the channel can't be written
+     */
+    void write(PlaceRecord record) throws IOException;
+
+    /**
+     * Completes the output and flushes it into the channel
+     * @throws IOException - If the channel can't be written
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,101 @@
+package com.example.android.shushme.transfer;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes UTF-8 text off a channel, a buffer at a time, for the text parsers to read a
+ * character at a time
+ */
+final class TextInput {
+
+    static final int END = -1;
+
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBytes;
+    private final CharBuffer mChars = CharBuffer.allocate(PlaceFormat.BUFFER_SIZE / 2);
+    private final CharsetDecoder mDecoder = PlaceFormat.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean mIsEndOfInput;
+    private boolean mIsFlushed;
+
+    /**
+     * @param bytes - Holds the bytes already read off the channel (in read mode)
+     */
+    TextInput(ReadableByteChannel channel, ByteBuffer bytes) {
+        mChannel = channel;
+        mBytes = bytes;
+        mChars.flip();
+    }
+
+    /**
+     * @return - The next character, or END
+     */
+    int read() throws IOException {
+        if (!mChars.hasRemaining() && !fill()) return END;
+        return mChars.get();
+    }
+
+    /**
+     * @return - The next character, without consuming it, or END
+     */
+    int peek() throws IOException {
+        if (!mChars.hasRemaining() && !fill()) return END;
+        return mChars.get(mChars.position());
+    }
+
+    /**
+     * Decodes the next characters, reading off the channel as needed
+     * @return - Whether any character was decoded (false once the input is over)
+     */
+    private boolean fill() throws IOException {
+        if (mIsFlushed) return false;
+        mChars.clear();
+        try {
+            while (true) {
+                CoderResult result = mDecoder.decode(mBytes, mChars, mIsEndOfInput);
+                if (result.isError()) result.throwException();
+                if (mIsEndOfInput) {
+                    mDecoder.flush(mChars);
+                    mIsFlushed = true;
+                    return mChars.position() > 0;
+                }
+                if (mChars.position() > 0) return true;
+
+                mBytes.compact();
+                try {
+                    if (mChannel.read(mBytes) < 0) mIsEndOfInput = true;
+                } finally {
+                    mBytes.flip();
+                }
+            }
+        } finally {
+            mChars.flip();
+        }
+    }
+}
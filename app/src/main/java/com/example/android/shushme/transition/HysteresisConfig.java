@@ -0,0 +1,119 @@
+package com.example.android.shushme.transition;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Settings of the hysteresis applied to geofence transitions, so GPS jitter around a fence
+ * boundary doesn't flip the ringer back and forth:
+ * <ul>
+ * <li>Entering only counts once the device loitered inside the fence for a while (DWELL).</li>
+ * <li>Exiting is reported by a second, larger fence around the same place.</li>
+ * <li>An exit is only applied if the device didn't come back within the debounce window.</li>
+ * </ul>
+ */
+public final class HysteresisConfig {
+
+    // Suffix of the request id of a place's (larger) exit fence
+    public static final String EXIT_FENCE_SUFFIX = "#exit";
+
+    // The debounce window outlasts the loitering delay, so coming back to a place cancels its
+    // exit (the DWELL of the entry fence comes only after the loitering delay)
+    public static final HysteresisConfig DEFAULT = new HysteresisConfig(60 * 1000, 2f, 90 * 1000);
+
+    private final int mLoiteringDelay;
+    private final float mExitRadiusFactor;
+    private final long mDebounceWindow;
+
+    /**
+     * @param loiteringDelay - How long the device must stay inside a fence before it counts as
+     *                       entered (in milliseconds). 0 reacts to the plain ENTER transition.
+     * @param exitRadiusFactor - The radius of the exit fence, relative to the place's radius.
+     *                         1 means a single fence reports both transitions.
+     * @param debounceWindow - How long an exit is held back, waiting for the device to come back
+     *                       (in milliseconds). 0 applies exits right away. Coming back is only
+     *                       reported after the loitering delay, so a shorter window only
+     *                       catches the exits which are reported twice.
+     */
+    public HysteresisConfig(int loiteringDelay, float exitRadiusFactor, long debounceWindow) {
+        mLoiteringDelay = Math.max(0, loiteringDelay);
+        mExitRadiusFactor = Math.max(1f, exitRadiusFactor);
+        mDebounceWindow = Math.max(0, debounceWindow);
+    }
+
+    public int getLoiteringDelay() {
+        return mLoiteringDelay;
+    }
+
+    public float getExitRadiusFactor() {
+        return mExitRadiusFactor;
+    }
+
+    public long getDebounceWindow() {
+        return mDebounceWindow;
+    }
+
+    /**
+     * @return - How long the fences added again (e.g. after a reboot) may take to report that
+     * the device is still inside a place: a DWELL comes after the loitering delay, and may
+     * be as late as any other transition (in milliseconds)
+     */
+    public long getStaleWindow() {
+        return mLoiteringDelay + mDebounceWindow;
+    }
+
+    /**
+     * @return - Whether each place gets a separate exit fence
+     */
+    public boolean hasExitFence() {
+        return mExitRadiusFactor > 1f;
+    }
+
+    /**
+     * @return - How many fences are registered per place
+     */
+    public int getFencesPerPlace() {
+        return hasExitFence() ? 2 : 1;
+    }
+
+    /**
+     * Gets the request id of a place's exit fence
+     * @param placeId - The place ID
+     * @return - The request id
+     */
+    public static String exitFenceId(String placeId) {
+        return placeId + EXIT_FENCE_SUFFIX;
+    }
+
+    /**
+     * Gets the place a fence belongs to
+     * @param requestId - The request id of an entry or exit fence
+     * @return - The place ID
+     */
+    public static String placeIdOf(String requestId) {
+        return requestId.endsWith(EXIT_FENCE_SUFFIX)
+                ? requestId.substring(0, requestId.length() - EXIT_FENCE_SUFFIX.length())
+                : requestId;
+    }
+
+    @Override
+    public String toString() {
+        return mLoiteringDelay + "," + mExitRadiusFactor + "," + mDebounceWindow;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.shushme.transition;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tracks which geofences the device is currently inside of, and decides when the ringer
+ * should change. The ringer is only silenced when the device goes from being inside no fence
+ * to being inside one, and only restored once it left every fence, so overlapping or
+ * adjacent places don't un-silence the phone while it's still inside one of them.
+ * <p>
+ * This class doesn't depend on Android; persisting the state is up to the caller.
+ */
+public final class RingerStateMachine {
+
+    // Transition types (the same values as the platform's Geofence.GEOFENCE_TRANSITION_*)
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    // What should be done to the ringer after a transition
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_SILENCE = 1;
+    public static final int ACTION_RESTORE = 2;
+
+    private final Set<String> mOccupied;
+
+    /**
+     * @param occupied - The fences the device was inside of (as persisted)
+     */
+    public RingerStateMachine(Collection<String> occupied) {
+        mOccupied = new HashSet<>(occupied);
+    }
+
+    /**
+     * Applies a batch of transitions (all the fences triggered by a single event) in one pass
+     * @param transition - The type of the transitions
+     * @param fenceIds - The request ids of the triggering fences
+     * @return - One of the ACTION_* constants
+     */
+    public int onTransition(int transition, Collection<String> fenceIds) {
+        boolean wasOccupied = !mOccupied.isEmpty();
+
+        switch (transition) {
+            case TRANSITION_ENTER:
+            case TRANSITION_DWELL:
+                mOccupied.addAll(fenceIds);
+                break;
+            case TRANSITION_EXIT:
+                mOccupied.removeAll(fenceIds);
+                break;
+            default:
+                return ACTION_NONE;
+        }
+
+        return actionFor(wasOccupied);
+    }
+
+    /**
+     * Forgets fences which are no longer registered (they won't report an exit anymore)
+     * @param fenceIds - The request ids of the removed fences
+     * @return - One of the ACTION_* constants
+     */
+    public int forget(Collection<String> fenceIds) {
+        boolean wasOccupied = !mOccupied.isEmpty();
+        mOccupied.removeAll(fenceIds);
+        return actionFor(wasOccupied);
+    }
+
+    /**
+     * Forgets every fence (e.g. once all of them were unregistered)
+     * @return - One of the ACTION_* constants
+     */
+    public int reset() {
+        boolean wasOccupied = !mOccupied.isEmpty();
+        mOccupied.clear();
+        return actionFor(wasOccupied);
+    }
+
+    /**
+     * @return - Whether the device is inside at least one fence
+     */
+    public boolean isOccupied() {
+        return !mOccupied.isEmpty();
+    }
+
+    /**
+     * @return - A copy of the fences the device is inside of
+     */
+    public Set<String> getOccupied() {
+        return new HashSet<>(mOccupied);
+    }
+
+    private int actionFor(boolean wasOccupied) {
+        boolean isOccupied = !mOccupied.isEmpty();
+        if (!wasOccupied && isOccupied) return ACTION_SILENCE;
+        if (wasOccupied && !isOccupied) return ACTION_RESTORE;
+        return ACTION_NONE;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.shushme.transition;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drops enter/exit oscillations before they reach the ringer.
+ * <p>
+ * Enters are applied right away. Exits are held back for the debounce window: if the device
+ * enters the same place again meanwhile, both the exit and the enter are dropped; otherwise
+ * the exit is released by flush() once its deadline passes.
+ * <p>
+ * This class doesn't depend on Android; persisting the pending exits is up to the caller.
+ */
+public final class TransitionDebouncer {
+
+    private final long mWindow;
+    // Pending exits: place ID to the time they're due (in milliseconds)
+    private final Map<String, Long> mPendingExits;
+
+    /**
+     * @param window - How long an exit is held back (in milliseconds)
+     * @param pendingExits - The pending exits (as persisted)
+     */
+    public TransitionDebouncer(long window, Map<String, Long> pendingExits) {
+        mWindow = window;
+        mPendingExits = new HashMap<>(pendingExits);
+    }
+
+    /**
+     * Offers places which were entered
+     * @param placeIds - The entered places
+     * @return - The places which enter should be applied (the others cancelled a pending exit)
+     */
+    public List<String> onEnter(Collection<String> placeIds) {
+        List<String> entered = new ArrayList<>(placeIds.size());
+        for (String placeId : placeIds) {
+            if (mPendingExits.remove(placeId) == null) entered.add(placeId);
+        }
+        return entered;
+    }
+
+    /**
+     * Offers places which were exited. They're held back until flush()ed.
+     * @param placeIds - The exited places
+     * @param now - The current time (in milliseconds)
+     */
+    public void onExit(Collection<String> placeIds, long now) {
+        for (String placeId : placeIds) {
+            // Keeps the earliest deadline if the place was already pending
+            if (!mPendingExits.containsKey(placeId)) mPendingExits.put(placeId, now + mWindow);
+        }
+    }
+
+    /**
+     * Holds back exits of places, due at a given time rather than after the window
+     * @param placeIds - The places to be exited unless they're entered first
+     * @param deadline - When the exits are due (in milliseconds)
+     */
+    public void hold(Collection<String> placeIds, long deadline) {
+        for (String placeId : placeIds) {
+            Long due = mPendingExits.get(placeId);
+            if (due == null || due > deadline) mPendingExits.put(placeId, deadline);
+        }
+    }
+
+    /**
+     * Releases the exits which deadline passed
+     * @param now - The current time (in milliseconds)
+     * @return - The places which exit should be applied
+     */
+    public List<String> flush(long now) {
+        List<String> exited = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = mPendingExits.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() <= now) {
+                exited.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        return exited;
+    }
+
+    /**
+     * Drops the pending exits of places which are no longer fenced
+     * @param placeIds - The places to be forgotten
+     */
+    public void forget(Collection<String> placeIds) {
+        for (String placeId : placeIds) {
+            mPendingExits.remove(placeId);
+        }
+    }
+
+    /**
+     * @return - When the next pending exit is due (in milliseconds), or Long.MAX_VALUE if none is
+     */
+    public long getNextDeadline() {
+        long deadline = Long.MAX_VALUE;
+        for (long due : mPendingExits.values()) {
+            deadline = Math.min(deadline, due);
+        }
+        return deadline;
+    }
+
+    /**
+     * @return - A copy of the pending exits, as place ID to deadline
+     */
+    public Map<String, Long> getPendingExits() {
+        return new HashMap<>(mPendingExits);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.shushme.transition;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The path a geofencing event takes before it reaches the ringer: fence request ids are mapped
+ * to their places, go through the TransitionDebouncer, and then through the RingerStateMachine,
+ * which decides what to do with the ringer.
+ * <p>
+ * This class doesn't depend on Android; persisting the state, changing the ringer and waking
+ * up to flush() at getNextDeadline() are up to the caller.
+ */
+public final class TransitionPipeline {
+
+    private final RingerStateMachine mStateMachine;
+    private final TransitionDebouncer mDebouncer;
+
+    /**
+     * @param occupied - The places the device was inside of (as persisted)
+     * @param debounceWindow - How long an exit is held back (in milliseconds)
+     * @param pendingExits - The pending exits (as persisted)
+     */
+    public TransitionPipeline(Collection<String> occupied, long debounceWindow,
+                              Map<String, Long> pendingExits) {
+        mStateMachine = new RingerStateMachine(occupied);
+        mDebouncer = new TransitionDebouncer(debounceWindow, pendingExits);
+    }
+
+    /**
+     * Applies the fences triggered by a single geofencing event
+     * @param transition - One of the RingerStateMachine.TRANSITION_* constants
+     * @param fenceIds - The request ids of the triggering fences (entry or exit fences)
+     * @param now - The current time (in milliseconds)
+     * @return - One of the RingerStateMachine.ACTION_* constants
+     */
+    public int onTransition(int transition, Collection<String> fenceIds, long now) {
+        Set<String> placeIds = toPlaceIds(fenceIds);
+
+        switch (transition) {
+            case RingerStateMachine.TRANSITION_ENTER:
+            case RingerStateMachine.TRANSITION_DWELL:
+                List<String> entered = mDebouncer.onEnter(placeIds);
+                return mStateMachine.onTransition(transition, entered);
+            case RingerStateMachine.TRANSITION_EXIT:
+                mDebouncer.onExit(placeIds, now);
+                return flush(now);
+            default:
+                return RingerStateMachine.ACTION_NONE;
+        }
+    }
+
+    /**
+     * Applies the held back exits which weren't cancelled within the debounce window
+     * @param now - The current time (in milliseconds)
+     * @return - One of the RingerStateMachine.ACTION_* constants
+     */
+    public int flush(long now) {
+        List<String> exited = mDebouncer.flush(now);
+        return mStateMachine.onTransition(RingerStateMachine.TRANSITION_EXIT, exited);
+    }
+
+    /**
+     * Forgets fences which were unregistered (they won't report an exit anymore)
+     * @param fenceIds - The request ids of the unregistered fences
+     * @return - One of the RingerStateMachine.ACTION_* constants
+     */
+    public int forget(Collection<String> fenceIds) {
+        Set<String> placeIds = toPlaceIds(fenceIds);
+        mDebouncer.forget(placeIds);
+        return mStateMachine.forget(placeIds);
+    }
+
+    /**
+     * Forgets every fence (e.g. once they were all unregistered)
+     * @return - One of the RingerStateMachine.ACTION_* constants
+     */
+    public int reset() {
+        mDebouncer.forget(mDebouncer.getPendingExits().keySet());
+        return mStateMachine.reset();
+    }
+
+    /**
+     * Doubts every occupied place, once the fences were dropped (e.g. on reboot) and the device
+     * may have moved meanwhile. Each place gets a held back exit: the fences added again report
+     * the places the device is still inside of (initial trigger), which cancels their exit,
+     * and the other places are left once the window passes.
+     * @param window - How long the fences have to report the places again (in milliseconds)
+     * @param now - The current time (in milliseconds)
+     */
+    public void markStale(long window, long now) {
+        mDebouncer.hold(mStateMachine.getOccupied(), now + window);
+    }
+
+    /**
+     * @return - When flush() should be called next (in milliseconds), or Long.MAX_VALUE if never
+     */
+    public long getNextDeadline() {
+        return mDebouncer.getNextDeadline();
+    }
+
+    /**
+     * @return - Whether the device is inside some place (the ringer is silenced)
+     */
+    public boolean isOccupied() {
+        return mStateMachine.isOccupied();
+    }
+
+    /**
+     * @return - A copy of the places the device is inside of
+     */
+    public Set<String> getOccupied() {
+        return mStateMachine.getOccupied();
+    }
+
+    /**
+     * @return - A copy of the pending exits, as place ID to deadline
+     */
+    public Map<String, Long> getPendingExits() {
+        return mDebouncer.getPendingExits();
+    }
+
+    /**
+     * Maps fence request ids to the (distinct) places they belong to
+     */
+    private static Set<String> toPlaceIds(Collection<String> fenceIds) {
+        Set<String> placeIds = new LinkedHashSet<>();
+        for (String fenceId : fenceIds) {
+            placeIds.add(HysteresisConfig.placeIdOf(fenceId));
+        }
+        return placeIds;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.shushme.util;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter: each attempt waits twice as long as the previous one
+ * (up to a maximum), and gives up after a number of attempts.
+ * This isn't thread safe, callers are expected to guard it.
+ */
+public class Backoff {
+
+    private final long mInitialDelay;
+    private final long mMaxDelay;
+    private final int mMaxAttempts;
+    private final Random mRandom = new Random();
+    private int mAttempts;
+
+    /**
+     * @param initialDelay - The delay before the first retry (in milliseconds)
+     * @param maxDelay - The longest delay between retries (in milliseconds)
+     * @param maxAttempts - How many retries are made before giving up
+     */
+    public Backoff(long initialDelay, long maxDelay, int maxAttempts) {
+        mInitialDelay = initialDelay;
+        mMaxDelay = maxDelay;
+        mMaxAttempts = maxAttempts;
+    }
+
+    /**
+     * Counts a new attempt and gets how long to wait before making it.
+     * Half the delay is randomized, so callers failing together don't retry together.
+     * @return - The delay (in milliseconds), or -1 once every attempt was made
+     */
+    public long nextDelay() {
+        if (mAttempts >= mMaxAttempts) return -1;
+
+        long delay = Math.min(mMaxDelay, mInitialDelay << Math.min(mAttempts, 30));
+        mAttempts++;
+        return delay / 2 + (long) (mRandom.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Starts over from the initial delay (e.g. once an attempt succeeded)
+     */
+    public void reset() {
+        mAttempts = 0;
+    }
+
+    /**
+     * @return - How many attempts were made since the last reset
+     */
+    public int getAttempts() {
+        return mAttempts;
+    }
+}
@@ -2,14 +2,23 @@ package com.example.android.shushme.util;
 
 import android.Manifest;
 import android.app.NotificationManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
 import android.os.Build;
+import android.preference.PreferenceManager;
+import android.service.notification.StatusBarNotification;
 import android.support.annotation.RequiresApi;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.NotificationCompat;
+import android.support.v4.content.ContextCompat;
+import android.util.LruCache;
 
 import com.example.android.shushme.GeofenceBroadcastReceived;
 import com.example.android.shushme.R;
@@ -36,6 +45,22 @@ import com.example.android.shushme.R;
 
 public class Util {
 
+    // No ringer notification was posted yet
+    private static final int NO_RINGER_MODE = -1;
+    // How many decoded notification icons are kept
+    private static final int ICON_CACHE_SIZE = 4;
+    // Where MainActivity used to keep its settings (Activity.getPreferences)
+    private static final String LEGACY_PREFERENCES_NAME = "MainActivity";
+
+    private static final LruCache<Integer, Bitmap> sIconCache = new LruCache<>(ICON_CACHE_SIZE);
+
+    private static final Object sNotificationLock = new Object();
+    // Guarded by sNotificationLock
+    private static int sNotificationHolds;
+    private static boolean sIsNotificationPending;
+    private static int sShownRingerMode = NO_RINGER_MODE;
+    private static NotificationCompat.Builder sNotificationBuilder;
+
     /**
      * Returns whether the passed permission is granted to the app
      * @param context - The context of the caller
@@ -58,6 +83,45 @@ public class Util {
         return nm != null && nm.isNotificationPolicyAccessGranted();
     }
 
+    /**
+     * Returns whether the user enabled the geofences. The setting lives on the default
+     * preferences, so it can be read without the activity (e.g. after a reboot).
+     * @param context - The context of the caller
+     * @return - Whether the geofences should be registered
+     */
+    public static boolean isGeofencingEnabled(Context context) {
+        String key = context.getString(R.string.setting_enabled);
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (preferences.contains(key)) return preferences.getBoolean(key, false);
+
+        // Carries over the value stored before the setting was moved
+        boolean enabled = context.getSharedPreferences(LEGACY_PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getBoolean(key, false);
+        preferences.edit().putBoolean(key, enabled).apply();
+        return enabled;
+    }
+
+    /**
+     * Persists whether the user enabled the geofences
+     * @param context - The context of the caller
+     * @param enabled - Whether the geofences should be registered
+     */
+    public static void setGeofencingEnabled(Context context, boolean enabled) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putBoolean(context.getString(R.string.setting_enabled), enabled)
+                .apply();
+    }
+
+    /**
+     * Gets the current ringer mode
+     * @param context - The context of the caller
+     * @return - One of the AudioManager.RINGER_MODE_* constants
+     */
+    public static int getRingerMode(Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        return audioManager != null ? audioManager.getRingerMode() : AudioManager.RINGER_MODE_NORMAL;
+    }
+
     /**
      * Sets the ringer mode
      * @param context - The context of the caller
@@ -72,7 +136,63 @@ public class Util {
         }
     }
 
-    public static void notifyUserOfRingerChange(Context context, boolean isDisabling) {
+    /**
+     * Notifies the user of a ringer change. While the notifications are held (see
+     * holdRingerNotifications) the changes are coalesced into a single update, posted once
+     * the last hold is released. Otherwise it's posted right away.
+     * @param context - The context of the caller
+     */
+    public static void notifyUserOfRingerChange(Context context) {
+        synchronized (sNotificationLock) {
+            sIsNotificationPending = true;
+            if (sNotificationHolds == 0) postRingerNotification(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * Holds back the ringer notifications (e.g. while a burst of transitions is handled).
+     * Every call must be followed by releaseRingerNotifications, while the caller is still
+     * alive (e.g. before the receiver's PendingResult is finished).
+     */
+    public static void holdRingerNotifications() {
+        synchronized (sNotificationLock) {
+            sNotificationHolds++;
+        }
+    }
+
+    /**
+     * Releases a hold, posting the ringer changes held back once the last one is released
+     * @param context - The context of the caller
+     */
+    public static void releaseRingerNotifications(Context context) {
+        synchronized (sNotificationLock) {
+            sNotificationHolds--;
+            if (sNotificationHolds == 0 && sIsNotificationPending) {
+                postRingerNotification(context.getApplicationContext());
+            }
+        }
+    }
+
+    /**
+     * Clears cached resources when the system runs low on memory
+     * @param level - The level passed to onTrimMemory
+     */
+    public static void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) sIconCache.evictAll();
+    }
+
+    /**
+     * Posts the ringer notification for the actual ringer mode, replacing the last one.
+     * Nothing is posted if the ringer flapped back to the mode which is still shown.
+     * Must be called while holding sNotificationLock.
+     * @param context - The application context
+     */
+    private static void postRingerNotification(Context context) {
+        sIsNotificationPending = false;
+        int ringerMode = getRingerMode(context);
+        if (ringerMode == sShownRingerMode && isRingerNotificationShown(context)) return;
+        sShownRingerMode = ringerMode;
+        boolean isDisabling = ringerMode == AudioManager.RINGER_MODE_SILENT;
 
         // Gets the correct icons and phrases
         int smallIcon;
@@ -86,19 +206,62 @@ public class Util {
             notificationPhrase = R.string.silent_mode_deactivated;
         }
 
-
-        // Builds the notification
-        NotificationCompat.Builder builder =
-                new NotificationCompat.Builder(context)
-                        .setSmallIcon(smallIcon)
-                        .setLargeIcon(BitmapFactory.decodeResource(context.getResources(), smallIcon))
-                        .setContentTitle(context.getString(notificationPhrase));
+        // Builds the notification, reusing the builder
+        if (sNotificationBuilder == null) {
+            sNotificationBuilder = new NotificationCompat.Builder(context).setOnlyAlertOnce(true);
+        }
+        sNotificationBuilder
+                .setSmallIcon(smallIcon)
+                .setLargeIcon(getLargeIcon(context, smallIcon))
+                .setContentTitle(context.getString(notificationPhrase));
 
         // Displays it
         NotificationManager nm = getNotificationManager(context);
         if (nm != null) {
-            nm.notify(GeofenceBroadcastReceived.RINGER_NOTIFICATION_ID, builder.build());
+            nm.notify(GeofenceBroadcastReceived.RINGER_NOTIFICATION_ID, sNotificationBuilder.build());
+        }
+    }
+
+    /**
+     * Returns whether the ringer notification is still shown (the user may have dismissed it).
+     * That can't be told before Android M, so it's assumed not to be.
+     * @param context - The context of the caller
+     * @return - Whether the notification is shown
+     */
+    private static boolean isRingerNotificationShown(Context context) {
+        if (Build.VERSION.SDK_INT < 23) return false;
+        NotificationManager nm = getNotificationManager(context);
+        if (nm == null) return false;
+        for (StatusBarNotification notification : nm.getActiveNotifications()) {
+            if (notification.getId() == GeofenceBroadcastReceived.RINGER_NOTIFICATION_ID) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets a drawable as a bitmap, decoding it only once
+     * @param context - The context of the caller
+     * @param drawableId - The drawable resource
+     * @return - The bitmap (nullable)
+     */
+    private static Bitmap getLargeIcon(Context context, int drawableId) {
+        Bitmap icon = sIconCache.get(drawableId);
+        if (icon != null) return icon;
+
+        // The icons are vectors, which BitmapFactory can't decode, so they're drawn instead
+        Drawable drawable = ContextCompat.getDrawable(context, drawableId);
+        if (drawable == null) return null;
+        if (drawable instanceof BitmapDrawable) {
+            icon = ((BitmapDrawable) drawable).getBitmap();
+        } else {
+            icon = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(),
+                    Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(icon);
+            drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+            drawable.draw(canvas);
         }
+        sIconCache.put(drawableId, icon);
+        return icon;
     }
 
     /**
@@ -0,0 +1,56 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Counts what the controller does to the ringer
+ */
+class FakeRinger implements RingerController.Ringer {
+
+    volatile int mMode;
+    volatile int mChanges;
+    volatile int mNotifications;
+    volatile long mFlushDeadline = Long.MAX_VALUE;
+
+    FakeRinger(int mode) {
+        mMode = mode;
+    }
+
+    @Override
+    public int getRingerMode() {
+        return mMode;
+    }
+
+    @Override
+    public synchronized void setRingerMode(int mode) {
+        if (mode != mMode) mChanges++;
+        mMode = mode;
+    }
+
+    @Override
+    public synchronized void notifyRingerChange() {
+        mNotifications++;
+    }
+
+    @Override
+    public void scheduleFlush(long deadline) {
+        mFlushDeadline = deadline;
+    }
+}
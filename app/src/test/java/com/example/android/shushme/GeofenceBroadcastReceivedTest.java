@@ -0,0 +1,187 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.media.AudioManager;
+
+import com.example.android.shushme.transition.RingerStateMachine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queues bursts of broadcasts the way onReceive does, checking every one of them is finished
+ * before the system gives up on the receiver
+ */
+public class GeofenceBroadcastReceivedTest {
+
+    // How long a receiver may keep its broadcast, the tighter one (foreground broadcasts)
+    private static final long RECEIVER_BUDGET_MILLIS = 10000;
+    private static final int PLACES = 10;
+    private static final int BURST = 200;
+    // Roughly what persisting the ringer's state costs on a device
+    private static final long HANDLE_MILLIS = 2;
+
+    private ExecutorService mExecutor;
+    private FakeRinger mRinger;
+    private RingerController mController;
+    // Guarded by itself
+    private final List<Integer> mFinished = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        // As the receiver's executor
+        mExecutor = Executors.newSingleThreadExecutor();
+        mRinger = new FakeRinger(AudioManager.RINGER_MODE_NORMAL);
+        mController = new RingerController(new FakeSharedPreferences(), mRinger);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void finishesEveryBroadcastOfBurstWithinBudget() throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(BURST);
+        List<FakeBroadcast> broadcasts = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            FakeBroadcast broadcast = new FakeBroadcast(i, finished, i % 2 == 0
+                    ? RingerStateMachine.TRANSITION_ENTER
+                    : RingerStateMachine.TRANSITION_DWELL,
+                    placeId(i), placeId(i + 1), placeId(i + 2));
+            broadcasts.add(broadcast);
+            GeofenceBroadcastReceived.dispatch(mExecutor, broadcast);
+        }
+
+        assertTrue(finished.await(RECEIVER_BUDGET_MILLIS, TimeUnit.MILLISECONDS));
+        for (FakeBroadcast broadcast : broadcasts) {
+            assertTrue(broadcast.mKeptMillis <= RECEIVER_BUDGET_MILLIS);
+        }
+        // Finished in the order they were received
+        assertEquals(indexes(BURST), finished());
+        assertEquals(1, mRinger.mChanges);
+        assertEquals(1, mRinger.mNotifications);
+        assertEquals(AudioManager.RINGER_MODE_SILENT, mRinger.mMode);
+    }
+
+    @Test
+    public void finishesBroadcastWhichFailed() {
+        final List<RuntimeException> errors = new ArrayList<>();
+        // Runs on the calling thread, keeping what the executor's thread would have died of
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    errors.add(e);
+                }
+            }
+        };
+
+        CountDownLatch finished = new CountDownLatch(2);
+        GeofenceBroadcastReceived.dispatch(executor, new FakeBroadcast(0, finished,
+                RingerStateMachine.TRANSITION_DWELL) {
+            @Override
+            public void handle() {
+                throw new IllegalStateException("Handling broke");
+            }
+        });
+        GeofenceBroadcastReceived.dispatch(executor, new FakeBroadcast(1, finished,
+                RingerStateMachine.TRANSITION_DWELL, placeId(0)));
+
+        assertEquals(0, finished.getCount());
+        assertEquals(indexes(2), finished());
+        assertEquals(1, errors.size());
+        assertEquals(1, mRinger.mChanges);
+    }
+
+    private List<Integer> finished() {
+        synchronized (mFinished) {
+            return new ArrayList<>(mFinished);
+        }
+    }
+
+    private static List<Integer> indexes(int count) {
+        List<Integer> indexes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    private static String placeId(int index) {
+        return "place" + (index % PLACES);
+    }
+
+    /**
+     * A geofence broadcast, finished in place of its PendingResult
+     */
+    private class FakeBroadcast implements GeofenceBroadcastReceived.AsyncBroadcast {
+
+        private final int mIndex;
+        private final CountDownLatch mLatch;
+        private final int mTransition;
+        private final List<String> mFenceIds;
+        private final long mReceivedAt = System.nanoTime();
+        // Written on the executor's thread, read once the latch is released
+        volatile long mKeptMillis;
+
+        FakeBroadcast(int index, CountDownLatch finished, int transition, String... fenceIds) {
+            mIndex = index;
+            mLatch = finished;
+            mTransition = transition;
+            mFenceIds = Arrays.asList(fenceIds);
+        }
+
+        @Override
+        public void handle() {
+            try {
+                Thread.sleep(HANDLE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mController.onTransition(mTransition, mFenceIds);
+        }
+
+        @Override
+        public void finish() {
+            mKeptMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mReceivedAt);
+            synchronized (mFinished) {
+                mFinished.add(mIndex);
+            }
+            mLatch.countDown();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.android.shushme;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.media.AudioManager;
+
+import com.example.android.shushme.transition.HysteresisConfig;
+import com.example.android.shushme.transition.RingerStateMachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Fires bursts of geofence transitions at the RingerController, the way overlapping fences
+ * report them all at once
+ */
+public class RingerControllerBurstTest {
+
+    private static final int PLACES = 10;
+    private static final int BURST = 200;
+    // The broadcasts handled at once
+    private static final int THREADS = 4;
+
+    private FakeRinger mRinger;
+    private RingerController mController;
+
+    @Before
+    public void setUp() {
+        mRinger = new FakeRinger(AudioManager.RINGER_MODE_NORMAL);
+        mController = new RingerController(new FakeSharedPreferences(), mRinger);
+    }
+
+    @Test
+    public void burstOfOverlappingEntersSilencesOnce() throws Exception {
+        List<Callable<Boolean>> burst = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            // Each event reports a few overlapping fences, some of them already entered
+            burst.add(transition(i % 2 == 0
+                            ? RingerStateMachine.TRANSITION_ENTER
+                            : RingerStateMachine.TRANSITION_DWELL,
+                    placeId(i), placeId(i + 1), placeId(i + 2)));
+        }
+
+        assertEquals(1, fire(burst, THREADS));
+        assertEquals(1, mRinger.mChanges);
+        assertEquals(1, mRinger.mNotifications);
+        assertEquals(AudioManager.RINGER_MODE_SILENT, mRinger.mMode);
+    }
+
+    @Test
+    public void burstOfFlappingTransitionsSilencesOnce() throws Exception {
+        List<Callable<Boolean>> burst = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            // Jitter around the fences: exits come along with the enters they're cancelled by
+            burst.add(transition(RingerStateMachine.TRANSITION_EXIT,
+                    HysteresisConfig.exitFenceId(placeId(i))));
+            burst.add(transition(RingerStateMachine.TRANSITION_DWELL, placeId(i)));
+        }
+
+        // In the order the receiver handles them, every exit is held back for the debounce
+        // window, then cancelled by the enter right after it
+        fire(burst, 1);
+        assertEquals(0, mRinger.mChanges);
+        assertEquals(0, mRinger.mNotifications);
+
+        // Once inside every place, the held back exits are cancelled or left pending
+        List<Callable<Boolean>> enters = new ArrayList<>(PLACES);
+        for (int i = 0; i < PLACES; i++) {
+            enters.add(transition(RingerStateMachine.TRANSITION_DWELL, placeId(i)));
+        }
+        fire(enters, THREADS);
+        assertEquals(1, mRinger.mChanges);
+        assertEquals(1, mRinger.mNotifications);
+        assertEquals(AudioManager.RINGER_MODE_SILENT, mRinger.mMode);
+        // No exit was left pending for the alarm
+        assertEquals(Long.MAX_VALUE, mRinger.mFlushDeadline);
+    }
+
+    /**
+     * Runs the transitions on a few threads at once (or in order, on a single one)
+     * @return - How many of them changed the ringer mode
+     */
+    private static int fire(List<Callable<Boolean>> transitions, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int changed = 0;
+            for (Future<Boolean> result : executor.invokeAll(transitions)) {
+                if (result.get()) changed++;
+            }
+            return changed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Callable<Boolean> transition(final int transition, final String... fenceIds) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mController.onTransition(transition, Arrays.asList(fenceIds));
+            }
+        };
+    }
+
+    private static String placeId(int index) {
+        return "place" + (index % PLACES);
+    }
+}
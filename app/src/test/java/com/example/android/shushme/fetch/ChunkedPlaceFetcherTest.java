@@ -0,0 +1,256 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedPlaceFetcherTest {
+
+    private static final int CHUNK_SIZE = 10;
+    private static final int MAX_CONCURRENT = 3;
+    private static final int MAX_RETRIES = 2;
+    // Retried right away
+    private static final ChunkedPlaceFetcher.Config CONFIG =
+            new ChunkedPlaceFetcher.Config(CHUNK_SIZE, MAX_CONCURRENT, 0, 0, MAX_RETRIES);
+
+    private ScheduledExecutorService mExecutor;
+    private FakeClock mClock;
+    private FakeLookup mLookup;
+    private RecordingListener mListener;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newScheduledThreadPool(MAX_CONCURRENT);
+        mClock = new FakeClock();
+        mLookup = new FakeLookup();
+        mListener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void splitsIdsIntoChunks() throws InterruptedException {
+        List<String> ids = ids(25);
+        List<String> failed = newFetcher(new TokenBucket(1000, 1000, mClock)).fetch(ids, mListener);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(3, mLookup.mCalls.get());
+        assertEquals(Collections.singletonList(5), mLookup.sizesBelow(CHUNK_SIZE));
+        assertEquals(new HashSet<>(ids), mListener.fetchedIds());
+        assertEquals(3, mListener.mFetchedChunks);
+    }
+
+    @Test
+    public void boundsChunksInFlight() throws InterruptedException {
+        // Slow lookups, so the chunks would pile up
+        mLookup.mDelayMillis = 20;
+        newFetcher(new TokenBucket(1000, 1000, mClock)).fetch(ids(100), mListener);
+
+        assertEquals(10, mLookup.mCalls.get());
+        assertTrue(mLookup.mMaxInFlight.get() <= MAX_CONCURRENT);
+    }
+
+    @Test
+    public void paceLookupsWithRateLimiter() throws InterruptedException {
+        // 5 lookups a second, 2 of them right away. One chunk at a time, as the fake clock
+        // adds up the sleeps of concurrent lookups.
+        new ChunkedPlaceFetcher(mLookup, new TokenBucket(5, 2, mClock), mExecutor,
+                new ChunkedPlaceFetcher.Config(CHUNK_SIZE, 1, 0, 0, MAX_RETRIES))
+                .fetch(ids(60), mListener);
+
+        assertEquals(6, mLookup.mCalls.get());
+        // The 4 lookups after the burst waited 200 ms each
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(800), mClock.nanoTime());
+    }
+
+    @Test
+    public void retriesOnlyFailedChunk() throws InterruptedException {
+        mLookup.failTimes("id12", MAX_RETRIES);
+        List<String> ids = ids(30);
+        List<String> failed = newFetcher(new TokenBucket(1000, 1000, mClock)).fetch(ids, mListener);
+
+        assertTrue(failed.isEmpty());
+        assertEquals(1 + MAX_RETRIES, (int) mLookup.attemptsOf("id12"));
+        assertEquals(1, (int) mLookup.attemptsOf("id0"));
+        assertEquals(1, (int) mLookup.attemptsOf("id29"));
+        assertEquals(new HashSet<>(ids), mListener.fetchedIds());
+    }
+
+    @Test
+    public void reportsPartialFailure() throws InterruptedException {
+        mLookup.failTimes("id15", Integer.MAX_VALUE);
+        List<String> ids = ids(30);
+        List<String> failed = newFetcher(new TokenBucket(1000, 1000, mClock)).fetch(ids, mListener);
+
+        List<String> failedChunk = ids.subList(10, 20);
+        assertEquals(failedChunk, failed);
+        assertEquals(Collections.singletonList(failedChunk), mListener.mFailedChunks);
+        assertEquals(1 + MAX_RETRIES, (int) mLookup.attemptsOf("id15"));
+
+        // The other chunks are still delivered
+        Set<String> fetched = new HashSet<>(ids);
+        fetched.removeAll(failedChunk);
+        assertEquals(fetched, mListener.fetchedIds());
+    }
+
+    @Test
+    public void treatsUnexpectedErrorAsFailure() throws InterruptedException {
+        mLookup.mThrowRuntime = true;
+        List<String> failed = newFetcher(new TokenBucket(1000, 1000, mClock)).fetch(ids(5), mListener);
+
+        assertEquals(ids(5), failed);
+        assertEquals(1, mListener.mFailedChunks.size());
+    }
+
+    private ChunkedPlaceFetcher newFetcher(TokenBucket rateLimiter) {
+        return new ChunkedPlaceFetcher(mLookup, rateLimiter, mExecutor, CONFIG);
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add("id" + i);
+        }
+        return ids;
+    }
+
+    /**
+     * Finds every place, except the ones told to fail, and keeps count of the calls
+     */
+    private static class FakeLookup implements PlaceLookup {
+
+        final AtomicInteger mCalls = new AtomicInteger();
+        final AtomicInteger mInFlight = new AtomicInteger();
+        final AtomicInteger mMaxInFlight = new AtomicInteger();
+        volatile long mDelayMillis;
+        volatile boolean mThrowRuntime;
+        // Guarded by this
+        private final Map<String, Integer> mFailures = new HashMap<>();
+        private final Map<String, Integer> mAttempts = new HashMap<>();
+        private final List<Integer> mSizes = new ArrayList<>();
+
+        synchronized void failTimes(String id, int times) {
+            mFailures.put(id, times);
+        }
+
+        synchronized Integer attemptsOf(String id) {
+            return mAttempts.get(id);
+        }
+
+        synchronized List<Integer> sizesBelow(int size) {
+            List<Integer> sizes = new ArrayList<>();
+            for (int chunkSize : mSizes) {
+                if (chunkSize < size) sizes.add(chunkSize);
+            }
+            return sizes;
+        }
+
+        @Override
+        public List<PlaceSnapshot> lookup(List<String> ids) throws IOException {
+            mCalls.incrementAndGet();
+            int inFlight = mInFlight.incrementAndGet();
+            try {
+                while (true) {
+                    int max = mMaxInFlight.get();
+                    if (inFlight <= max || mMaxInFlight.compareAndSet(max, inFlight)) break;
+                }
+                if (mDelayMillis > 0) Thread.sleep(mDelayMillis);
+                if (mThrowRuntime) throw new IllegalStateException("Lookup broke");
+
+                boolean fails = false;
+                synchronized (this) {
+                    mSizes.add(ids.size());
+                    for (String id : ids) {
+                        Integer attempts = mAttempts.get(id);
+                        mAttempts.put(id, attempts == null ? 1 : attempts + 1);
+                        Integer failures = mFailures.get(id);
+                        if (failures != null && failures > 0) {
+                            mFailures.put(id, failures - 1);
+                            fails = true;
+                        }
+                    }
+                }
+                if (fails) throw new IOException("Lookup failed");
+
+                List<PlaceSnapshot> places = new ArrayList<>(ids.size());
+                for (String id : ids) {
+                    places.add(new PlaceSnapshot(id, id, null, 0, 0, 0, true));
+                }
+                return places;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                mInFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Keeps what the fetcher reported
+     */
+    private static class RecordingListener implements ChunkedPlaceFetcher.Listener {
+
+        final List<PlaceSnapshot> mPlaces = new ArrayList<>();
+        final List<List<String>> mFailedChunks = new ArrayList<>();
+        int mFetchedChunks;
+
+        @Override
+        public void onPlacesFetched(List<PlaceSnapshot> places) {
+            mPlaces.addAll(places);
+            mFetchedChunks++;
+        }
+
+        @Override
+        public void onChunkFailed(List<String> ids, IOException error) {
+            mFailedChunks.add(ids);
+        }
+
+        Set<String> fetchedIds() {
+            Set<String> ids = new HashSet<>();
+            for (PlaceSnapshot place : mPlaces) {
+                ids.add(place.getPlaceId());
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock which only moves when slept on (or advanced), so no test waits for real
+ */
+class FakeClock implements TokenBucket.Clock {
+
+    private final AtomicLong mNanos = new AtomicLong();
+    private final AtomicLong mSlept = new AtomicLong();
+
+    @Override
+    public long nanoTime() {
+        return mNanos.get();
+    }
+
+    @Override
+    public void sleep(long nanos) {
+        mSlept.addAndGet(nanos);
+        mNanos.addAndGet(nanos);
+    }
+
+    void advance(long nanos) {
+        mNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return - How long the callers slept in all (in nanoseconds)
+     */
+    long getSlept() {
+        return mSlept.get();
+    }
+}
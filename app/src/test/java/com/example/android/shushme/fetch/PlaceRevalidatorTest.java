@@ -0,0 +1,196 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlaceRevalidatorTest {
+
+    private static final int CHUNK_SIZE = 10;
+    private static final int MAX_CONCURRENT = 2;
+    private static final ChunkedPlaceFetcher.Config CONFIG =
+            new ChunkedPlaceFetcher.Config(CHUNK_SIZE, MAX_CONCURRENT, 0, 0, 0);
+    // Longer than any of the tests, so only the last publish happens
+    private static final long LONG_PUBLISH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private ExecutorService mSerialExecutor;
+    private ExecutorService mWaitExecutor;
+    private ScheduledExecutorService mFetchExecutor;
+    private BlockingLookup mLookup;
+    private RecordingSink mSink;
+
+    @Before
+    public void setUp() {
+        mSerialExecutor = Executors.newSingleThreadExecutor();
+        mWaitExecutor = Executors.newSingleThreadExecutor();
+        mFetchExecutor = Executors.newScheduledThreadPool(MAX_CONCURRENT);
+        mLookup = new BlockingLookup();
+        mSink = new RecordingSink();
+    }
+
+    @After
+    public void tearDown() {
+        mLookup.mRelease.countDown();
+        mSerialExecutor.shutdownNow();
+        mWaitExecutor.shutdownNow();
+        mFetchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void runsUserActionWhileFetchIsBlocked()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        newRevalidator(0).revalidate(ids("slow", 5), mSink);
+        assertTrue(mLookup.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // E.g. a place being picked, while the Places API hasn't answered yet
+        mSerialExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                mSink.record("picked");
+            }
+        }).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        mLookup.mRelease.countDown();
+        assertTrue(mSink.mPublished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("picked", "stored 5", "published"), mSink.events());
+    }
+
+    @Test
+    public void publishesOnceAfterLastChunk() throws InterruptedException {
+        mLookup.mRelease.countDown();
+        newRevalidator(LONG_PUBLISH_INTERVAL).revalidate(ids("id", 25), mSink);
+
+        assertTrue(mSink.mPublished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List<String> events = mSink.events();
+        assertEquals(4, events.size());
+        assertEquals("published", events.get(3));
+    }
+
+    @Test
+    public void cancelsRevalidationInProgress() throws InterruptedException {
+        PlaceRevalidator revalidator = newRevalidator(0);
+        revalidator.revalidate(ids("slow", 5), mSink);
+        assertTrue(mLookup.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        revalidator.revalidate(ids("id", 3), mSink);
+        assertTrue(mLookup.mInterrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(mSink.mPublished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // Only the places of the newer revalidation were stored
+        assertEquals(Arrays.asList("stored 3", "published"), mSink.events());
+    }
+
+    private PlaceRevalidator newRevalidator(long publishInterval) {
+        ChunkedPlaceFetcher fetcher = new ChunkedPlaceFetcher(mLookup,
+                new TokenBucket(1000, 1000, new FakeClock()), mFetchExecutor, CONFIG);
+        return new PlaceRevalidator(fetcher, mSerialExecutor, mWaitExecutor, publishInterval);
+    }
+
+    private static List<String> ids(String prefix, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(prefix + i);
+        }
+        return ids;
+    }
+
+    /**
+     * Finds every place, holding the "slow" ones until released (or interrupted)
+     */
+    private static class BlockingLookup implements PlaceLookup {
+
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mRelease = new CountDownLatch(1);
+        final CountDownLatch mInterrupted = new CountDownLatch(1);
+
+        @Override
+        public List<PlaceSnapshot> lookup(List<String> ids) throws IOException {
+            if (ids.get(0).startsWith("slow")) {
+                mStarted.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    mInterrupted.countDown();
+                    throw new IOException(e);
+                }
+            }
+
+            List<PlaceSnapshot> places = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                places.add(new PlaceSnapshot(id, id, null, 0, 0, 0, true));
+            }
+            return places;
+        }
+    }
+
+    /**
+     * Keeps what was done on the serial executor, in order
+     */
+    private static class RecordingSink implements PlaceRevalidator.Sink {
+
+        final CountDownLatch mPublished = new CountDownLatch(1);
+        // Guarded by this
+        private final List<String> mEvents = new ArrayList<>();
+
+        synchronized void record(String event) {
+            mEvents.add(event);
+        }
+
+        synchronized List<String> events() {
+            return Collections.unmodifiableList(new ArrayList<>(mEvents));
+        }
+
+        @Override
+        public void onPlacesFetched(List<PlaceSnapshot> places) {
+            record("stored " + places.size());
+        }
+
+        @Override
+        public void onChunkFailed(List<String> ids, IOException error) {
+            record("failed " + ids.size());
+        }
+
+        @Override
+        public void onPublish() {
+            record("published");
+            mPublished.countDown();
+        }
+    }
+}
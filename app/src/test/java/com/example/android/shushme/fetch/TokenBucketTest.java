@@ -0,0 +1,97 @@
+package com.example.android.shushme.fetch;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private FakeClock mClock;
+    private TokenBucket mBucket;
+
+    @Before
+    public void setUp() {
+        // 4 permits a second, 2 saved up at most
+        mClock = new FakeClock();
+        mBucket = new TokenBucket(4, 2, mClock);
+    }
+
+    @Test
+    public void startsWithBurst() {
+        assertEquals(0, mBucket.reserve(mClock.nanoTime()));
+        assertEquals(0, mBucket.reserve(mClock.nanoTime()));
+        assertEquals(SECOND / 4, mBucket.reserve(mClock.nanoTime()));
+    }
+
+    @Test
+    public void queuesCallersInOrder() {
+        mBucket.reserve(0);
+        mBucket.reserve(0);
+        // Each caller waits for the permit after the one reserved before it
+        assertEquals(SECOND / 4, mBucket.reserve(0));
+        assertEquals(SECOND / 2, mBucket.reserve(0));
+        assertEquals(3 * SECOND / 4, mBucket.reserve(0));
+    }
+
+    @Test
+    public void refillsAtRate() {
+        mBucket.reserve(0);
+        mBucket.reserve(0);
+        assertEquals(0, mBucket.reserve(SECOND / 4));
+        assertEquals(SECOND / 4, mBucket.reserve(SECOND / 4));
+    }
+
+    @Test
+    public void savesUpToBurst() {
+        mBucket.reserve(0);
+        mBucket.reserve(0);
+        // Idle for long enough to refill many more than the burst
+        long now = 10 * SECOND;
+        assertEquals(0, mBucket.reserve(now));
+        assertEquals(0, mBucket.reserve(now));
+        assertEquals(SECOND / 4, mBucket.reserve(now));
+    }
+
+    @Test
+    public void acquireSleepsOnClock() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            mBucket.acquire();
+        }
+        // The burst is free, the 8 other permits come 250 ms apart
+        assertEquals(2 * SECOND, mClock.getSlept());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRate() {
+        new TokenBucket(0, 1, mClock);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidBurst() {
+        new TokenBucket(1, 0, mClock);
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.android.shushme.transition;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.fence.FenceSpec;
+import com.example.android.shushme.fence.GeofenceBackend;
+import com.example.android.shushme.fence.PlaceFences;
+import com.example.android.shushme.fence.SimulatedGeofenceBackend;
+import com.example.android.shushme.geo.GeoMath;
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic location traces through the simulated geofences and the transition
+ * pipeline, and reports how many times the ringer was switched
+ */
+public class TransitionReplayTest {
+
+    private static final double CENTER_LATITUDE = 48.8566;
+    private static final double CENTER_LONGITUDE = 2.3522;
+    private static final float RADIUS = 100;
+    // One fix a second
+    private static final long FIX_INTERVAL = 1000;
+    private static final double WALKING_SPEED = 1.5;
+
+    // Reacts to every transition right away
+    private static final HysteresisConfig NONE = new HysteresisConfig(0, 1f, 0);
+    // The default settings before the debounce window outlasted the loitering delay
+    private static final HysteresisConfig SHORT_DEBOUNCE = new HysteresisConfig(60 * 1000, 2f, 30 * 1000);
+
+    @Test
+    public void debounceWindowOutlastsLoiteringDelay() {
+        // Otherwise the DWELL of a place entered again comes after its exit was released
+        assertTrue(HysteresisConfig.DEFAULT.getDebounceWindow()
+                > HysteresisConfig.DEFAULT.getLoiteringDelay());
+    }
+
+    @Test
+    public void visit() {
+        Trace trace = new Trace().jump(500, 0).walk(0, 0).stay(10 * 60).walk(500, 180).stay(5 * 60);
+        assertEquals(2, report("visit", trace, NONE));
+        assertEquals(2, report("visit", trace, HysteresisConfig.DEFAULT));
+    }
+
+    @Test
+    public void visitWithShortWalkOut() {
+        // Steps out past the exit fence for a few seconds (e.g. around the block)
+        Trace trace = new Trace().jump(500, 0).walk(0, 0).stay(5 * 60)
+                .jump(250, 90).stay(20).jump(0, 0)
+                .stay(5 * 60).walk(500, 180).stay(5 * 60);
+        assertEquals(4, report("short walk out", trace, NONE));
+        assertEquals(4, report("short walk out", trace, SHORT_DEBOUNCE));
+        assertEquals(2, report("short walk out", trace, HysteresisConfig.DEFAULT));
+    }
+
+    @Test
+    public void visitWithLocationSpikes() {
+        // Fixes hundreds of meters off, now and then
+        Trace trace = new Trace().jump(500, 0).walk(0, 0).stay(60).spikes(20 * 60, 120, 600)
+                .walk(500, 180).stay(5 * 60);
+        int none = report("location spikes", trace, NONE);
+        int shortDebounce = report("location spikes", trace, SHORT_DEBOUNCE);
+        assertTrue(none > 2);
+        assertTrue(shortDebounce > 2);
+        assertEquals(2, report("location spikes", trace, HysteresisConfig.DEFAULT));
+    }
+
+    @Test
+    public void parkedOnBoundary() {
+        // Fixes off by up to 15 meters around the boundary of the entry fence
+        Trace trace = new Trace().jump(RADIUS, 45).jitter(30 * 60, 15);
+        assertTrue(report("parked on boundary", trace, NONE) > 10);
+        assertTrue(report("parked on boundary", trace, HysteresisConfig.DEFAULT) <= 1);
+    }
+
+    /**
+     * Replays a trace from a fresh registration of a single place
+     * @param name - The name of the trace, for the report
+     * @param trace - The fixes, one a second
+     * @param hysteresis - The hysteresis settings
+     * @return - How many times the ringer was switched
+     */
+    private static int report(String name, Trace trace, HysteresisConfig hysteresis) {
+        final TransitionPipeline pipeline = new TransitionPipeline(
+                Collections.<String>emptyList(),
+                hysteresis.getDebounceWindow(),
+                new HashMap<String, Long>()
+        );
+        final int[] flips = new int[1];
+        SimulatedGeofenceBackend backend = new SimulatedGeofenceBackend(
+                new SimulatedGeofenceBackend.TransitionListener() {
+                    @Override
+                    public void onTransition(int transition, List<String> requestIds, long time) {
+                        if (pipeline.onTransition(transition, requestIds, time)
+                                != RingerStateMachine.ACTION_NONE) {
+                            flips[0]++;
+                        }
+                    }
+                });
+        PlaceSnapshot place = new PlaceSnapshot("place", null, null,
+                CENTER_LATITUDE, CENTER_LONGITUDE, RADIUS, true);
+        backend.addGeofences(PlaceFences.build(place, RADIUS, hysteresis.getLoiteringDelay(), 0,
+                FenceSpec.NEVER_EXPIRE, hysteresis), PlaceFences.getInitialTrigger(),
+                new GeofenceBackend.Callback() {
+                    @Override
+                    public void onResult(int statusCode) {
+                        assertEquals(GeofenceBackend.STATUS_SUCCESS, statusCode);
+                    }
+                });
+
+        long now = 0;
+        for (int i = 0; i < trace.mSize; i++) {
+            now += FIX_INTERVAL;
+            backend.onLocation(trace.mLatitudes[i], trace.mLongitudes[i], now);
+            if (pipeline.getNextDeadline() <= now
+                    && pipeline.flush(now) != RingerStateMachine.ACTION_NONE) {
+                flips[0]++;
+            }
+        }
+        System.out.println(String.format("%s (%s): %d ringer flips over %d fixes",
+                name, hysteresis, flips[0], trace.mSize));
+        return flips[0];
+    }
+
+    /**
+     * A synthetic trace, one fix a second, built from the center of the place outwards.
+     * Distances are in meters, bearings in degrees from the north.
+     */
+    private static class Trace {
+
+        private final Random mRandom = new Random(42);
+        private double[] mLatitudes = new double[1024];
+        private double[] mLongitudes = new double[1024];
+        private int mSize;
+        private double mDistance;
+        private double mBearing;
+
+        /**
+         * Walks in a straight line (through the center) to a point
+         */
+        Trace walk(double distance, double bearing) {
+            double fromX = x(mDistance, mBearing);
+            double fromY = y(mDistance, mBearing);
+            double toX = x(distance, bearing);
+            double toY = y(distance, bearing);
+            int steps = (int) Math.ceil(Math.hypot(toX - fromX, toY - fromY) / WALKING_SPEED);
+            for (int i = 1; i <= steps; i++) {
+                double t = (double) i / steps;
+                addXY(fromX + (toX - fromX) * t, fromY + (toY - fromY) * t);
+            }
+            return jump(distance, bearing);
+        }
+
+        /**
+         * Moves to a point without any fix on the way
+         */
+        Trace jump(double distance, double bearing) {
+            mDistance = distance;
+            mBearing = bearing;
+            return this;
+        }
+
+        Trace stay(int seconds) {
+            for (int i = 0; i < seconds; i++) {
+                addXY(x(mDistance, mBearing), y(mDistance, mBearing));
+            }
+            return this;
+        }
+
+        /**
+         * Stays, with every fix off by up to the error
+         */
+        Trace jitter(int seconds, double error) {
+            for (int i = 0; i < seconds; i++) {
+                double offset = (mRandom.nextDouble() * 2 - 1) * error;
+                addXY(x(mDistance + offset, mBearing), y(mDistance + offset, mBearing));
+            }
+            return this;
+        }
+
+        /**
+         * Stays, with a single fix far off every interval
+         */
+        Trace spikes(int seconds, int interval, double distance) {
+            for (int i = 1; i <= seconds; i++) {
+                if (i % interval == 0) {
+                    double bearing = mRandom.nextDouble() * 360;
+                    addXY(x(distance, bearing), y(distance, bearing));
+                } else {
+                    addXY(x(mDistance, mBearing), y(mDistance, mBearing));
+                }
+            }
+            return this;
+        }
+
+        private void addXY(double x, double y) {
+            if (mSize == mLatitudes.length) {
+                mLatitudes = java.util.Arrays.copyOf(mLatitudes, mSize * 2);
+                mLongitudes = java.util.Arrays.copyOf(mLongitudes, mSize * 2);
+            }
+            double metersPerDegree = Math.toRadians(GeoMath.EARTH_RADIUS);
+            mLatitudes[mSize] = CENTER_LATITUDE + y / metersPerDegree;
+            mLongitudes[mSize] = CENTER_LONGITUDE
+                    + x / (metersPerDegree * Math.cos(Math.toRadians(CENTER_LATITUDE)));
+            mSize++;
+        }
+
+        private static double x(double distance, double bearing) {
+            return distance * Math.sin(Math.toRadians(bearing));
+        }
+
+        private static double y(double distance, double bearing) {
+            return distance * Math.cos(Math.toRadians(bearing));
+        }
+    }
+}
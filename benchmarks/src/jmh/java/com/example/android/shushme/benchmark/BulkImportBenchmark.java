@@ -0,0 +1,193 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports places into an on-disk database the way PlaceContentProvider does: one row per
+ * insert() call, each in its own implicit transaction (the per-row path), or all of them
+ * in a single transaction (bulkInsert and applyBatch).
+ * <p>
+ * The provider needs Android's SQLite, so its statements are replayed through the JVM's
+ * SQLite driver, on the same schema. The change notifications, one per row on the per-row
+ * path, aren't counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BulkImportBenchmark {
+
+    private static final String INSERT_PLACE = "INSERT INTO places (placeID, name, address,"
+            + " latitude, longitude, fetchedAt, radius, enabled) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Param({"1000", "10000"})
+    public int placeCount;
+
+    private List<PlaceSnapshot> mPlaces;
+    private File mFile;
+    private Connection mConnection;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        mPlaces = Fixtures.places(placeCount);
+        mFile = File.createTempFile("places", ".db");
+    }
+
+    /**
+     * Starts every import from an empty database
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws SQLException {
+        mFile.delete();
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getPath());
+        Statement statement = mConnection.createStatement();
+        try {
+            createSchema(statement);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        mConnection.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        mFile.delete();
+    }
+
+    /**
+     * One insert() call per place, as imports made before bulkInsert()
+     */
+    @Benchmark
+    public int perRowInsert() throws SQLException {
+        mConnection.setAutoCommit(true);
+        return insertAll();
+    }
+
+    /**
+     * A single bulkInsert() (or applyBatch()) call
+     */
+    @Benchmark
+    public int bulkInsert() throws SQLException {
+        mConnection.setAutoCommit(false);
+        int count = insertAll();
+        mConnection.commit();
+        return count;
+    }
+
+    private int insertAll() throws SQLException {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        PreparedStatement insert = mConnection.prepareStatement(INSERT_PLACE);
+        try {
+            for (PlaceSnapshot place : mPlaces) {
+                insert.setString(1, place.getPlaceId());
+                insert.setString(2, place.getName());
+                insert.setString(3, place.getAddress());
+                insert.setDouble(4, place.getLatitude());
+                insert.setDouble(5, place.getLongitude());
+                insert.setLong(6, now);
+                insert.setFloat(7, place.getRadius());
+                insert.setInt(8, place.isEnabled() ? 1 : 0);
+                count += insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+        return count;
+    }
+
+    /**
+     * Creates the tables, indexes and triggers of PlaceDbHelper.onCreate()
+     */
+    private static void createSchema(Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE places ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "placeID TEXT NOT NULL, "
+                + "name TEXT, "
+                + "address TEXT, "
+                + "latitude REAL, "
+                + "longitude REAL, "
+                + "fetchedAt INTEGER NOT NULL DEFAULT 0, "
+                + "radius REAL NOT NULL DEFAULT 0, "
+                + "enabled INTEGER NOT NULL DEFAULT 1, "
+                + "size REAL NOT NULL DEFAULT 0, "
+                + "responsiveness INTEGER NOT NULL DEFAULT -1, "
+                + "loiteringDelay INTEGER NOT NULL DEFAULT -1, "
+                + "UNIQUE (placeID) ON CONFLICT REPLACE)");
+        statement.execute("CREATE INDEX places_coordinates_index ON places (latitude, longitude)");
+
+        statement.execute("CREATE TABLE schedules ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "placeID TEXT NOT NULL, "
+                + "days INTEGER NOT NULL, "
+                + "startMinute INTEGER NOT NULL, "
+                + "endMinute INTEGER NOT NULL)");
+        statement.execute("CREATE INDEX schedules_place_id_index ON schedules (placeID)");
+        statement.execute("CREATE TRIGGER schedules_delete_place_trigger AFTER DELETE ON places"
+                + " BEGIN DELETE FROM schedules WHERE placeID = OLD.placeID; END");
+
+        String insert = " INSERT INTO places_search (docid, name, address)"
+                + " VALUES (NEW._id, NEW.name, NEW.address);";
+        String delete = " DELETE FROM places_search WHERE docid = OLD._id;";
+        statement.execute("CREATE VIRTUAL TABLE places_search USING fts4("
+                + "content=\"places\", name, address, prefix=\"2,3\")");
+        statement.execute("CREATE TRIGGER places_search_replace_trigger BEFORE INSERT ON places"
+                + " BEGIN DELETE FROM places_search WHERE docid IN"
+                + " (SELECT _id FROM places WHERE placeID = NEW.placeID); END");
+        statement.execute("CREATE TRIGGER places_search_insert_trigger AFTER INSERT ON places"
+                + " BEGIN" + insert + " END");
+        statement.execute("CREATE TRIGGER places_search_update_before_trigger"
+                + " BEFORE UPDATE OF name, address ON places BEGIN" + delete + " END");
+        statement.execute("CREATE TRIGGER places_search_update_after_trigger"
+                + " AFTER UPDATE OF name, address ON places BEGIN" + insert + " END");
+        statement.execute("CREATE TRIGGER places_search_delete_trigger BEFORE DELETE ON places"
+                + " BEGIN" + delete + " END");
+    }
+}
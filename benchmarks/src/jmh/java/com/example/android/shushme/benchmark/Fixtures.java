@@ -0,0 +1,113 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.geo.GeoMath;
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks, so runs before and after a change compare
+ */
+final class Fixtures {
+
+    // The places are spread around a city center, as saved places would be
+    static final double CENTER_LATITUDE = -23.5505;
+    static final double CENTER_LONGITUDE = -46.6333;
+    // How far from the center places are spread (in degrees, roughly 50 km)
+    private static final double SPREAD = 0.5;
+    private static final long SEED = 42;
+    // One degree of latitude (in meters)
+    static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoMath.EARTH_RADIUS;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Builds places scattered around the center, every tenth one disabled
+     * @param count - How many places to build
+     * @return - The places
+     */
+    static List<PlaceSnapshot> places(int count) {
+        Random random = new Random(SEED);
+        List<PlaceSnapshot> places = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            places.add(new PlaceSnapshot(
+                    placeId(i),
+                    "Place " + i,
+                    i + " Example Street",
+                    CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * SPREAD,
+                    CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * SPREAD,
+                    i % 3 == 0 ? 50 : 0,
+                    i % 10 != 9
+            ));
+        }
+        return places;
+    }
+
+    /**
+     * Builds a random walk of location fixes starting at the center, one second apart
+     * @param count - How many fixes to build
+     * @param stepMeters - How far the device may move between fixes (in meters)
+     * @return - The fixes as {latitudes, longitudes}
+     */
+    static double[][] walk(int count, double stepMeters) {
+        Random random = new Random(SEED);
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        double latitude = CENTER_LATITUDE;
+        double longitude = CENTER_LONGITUDE;
+        double step = stepMeters / METERS_PER_DEGREE;
+        for (int i = 0; i < count; i++) {
+            latitude += (random.nextDouble() * 2 - 1) * step;
+            longitude += (random.nextDouble() * 2 - 1) * step / Math.cos(Math.toRadians(latitude));
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+        }
+        return new double[][]{latitudes, longitudes};
+    }
+
+    /**
+     * Builds fixes of a device parked near a fence boundary, with GPS jitter: it sits at
+     * the given distance from the center, each fix off by up to the jitter
+     * @param count - How many fixes to build
+     * @param distanceMeters - How far from the center the device sits (in meters)
+     * @param jitterMeters - The largest error of a fix (in meters)
+     * @return - The fixes as {latitudes, longitudes}
+     */
+    static double[][] jitter(int count, double distanceMeters, double jitterMeters) {
+        Random random = new Random(SEED);
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            double offset = distanceMeters + (random.nextDouble() * 2 - 1) * jitterMeters;
+            latitudes[i] = CENTER_LATITUDE + offset / METERS_PER_DEGREE;
+            longitudes[i] = CENTER_LONGITUDE;
+        }
+        return new double[][]{latitudes, longitudes};
+    }
+
+    static String placeId(int i) {
+        return "ChIJ" + Integer.toHexString(0x100000 + i);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.geo.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks a location fix against a full set of fences (the platform's limit of 100): with the
+ * haversine formula, as the provider's near query does, and with unit vector dot products,
+ * as the spatial index and the simulation do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeoMathBenchmark {
+
+    private static final int FENCES = 100;
+    private static final int FIXES = 1024;
+
+    private double[] mFenceLatitudes;
+    private double[] mFenceLongitudes;
+    private double[] mFenceRadii;
+    private double[] mFenceX;
+    private double[] mFenceY;
+    private double[] mFenceZ;
+    private double[] mFenceMinDot;
+    private double[][] mFixes;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        double[][] fences = Fixtures.walk(FENCES, 500);
+        mFenceLatitudes = fences[0];
+        mFenceLongitudes = fences[1];
+        mFenceRadii = new double[FENCES];
+        mFenceX = new double[FENCES];
+        mFenceY = new double[FENCES];
+        mFenceZ = new double[FENCES];
+        mFenceMinDot = new double[FENCES];
+        for (int i = 0; i < FENCES; i++) {
+            mFenceRadii[i] = 20 + i % 5 * 20;
+            double latitude = Math.toRadians(mFenceLatitudes[i]);
+            double longitude = Math.toRadians(mFenceLongitudes[i]);
+            mFenceX[i] = Math.cos(latitude) * Math.cos(longitude);
+            mFenceY[i] = Math.cos(latitude) * Math.sin(longitude);
+            mFenceZ[i] = Math.sin(latitude);
+            mFenceMinDot[i] = Math.cos(mFenceRadii[i] / GeoMath.EARTH_RADIUS);
+        }
+        mFixes = Fixtures.walk(FIXES, 50);
+    }
+
+    @Benchmark
+    public int haversineContainment() {
+        int fix = nextFix();
+        double latitude = mFixes[0][fix];
+        double longitude = mFixes[1][fix];
+        int inside = 0;
+        for (int i = 0; i < FENCES; i++) {
+            if (GeoMath.haversine(latitude, longitude, mFenceLatitudes[i], mFenceLongitudes[i])
+                    <= mFenceRadii[i]) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public int unitVectorContainment() {
+        int fix = nextFix();
+        double latitude = Math.toRadians(mFixes[0][fix]);
+        double longitude = Math.toRadians(mFixes[1][fix]);
+        double cosLatitude = Math.cos(latitude);
+        double x = cosLatitude * Math.cos(longitude);
+        double y = cosLatitude * Math.sin(longitude);
+        double z = Math.sin(latitude);
+        int inside = 0;
+        for (int i = 0; i < FENCES; i++) {
+            if (x * mFenceX[i] + y * mFenceY[i] + z * mFenceZ[i] >= mFenceMinDot[i]) inside++;
+        }
+        return inside;
+    }
+
+    private int nextFix() {
+        mNext = (mNext + 1) & (FIXES - 1);
+        return mNext;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.fence.FenceTuning;
+import com.example.android.shushme.fence.GeofenceSelection;
+import com.example.android.shushme.fence.SimulatedGeofenceBackend;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the list of geofences to be registered, as Geofencing does whenever the stored
+ * places change, and selects it again as the device moves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeofenceSelectionBenchmark {
+
+    // The same settings Geofencing uses
+    private static final float RADIUS = 20;
+    private static final long TIMEOUT = 24 * 60 * 60 * 1000;
+    private static final float RESELECT_DISTANCE = 500;
+    private static final int FIXES = 1024;
+    // A typical accuracy of a network location fix (in meters)
+    private static final float ACCURACY = 40;
+
+    @Param({"50", "1000", "10000", "100000"})
+    public int placeCount;
+
+    private List<PlaceSnapshot> mPlaces;
+    private GeofenceSelection mSelection;
+    private double[][] mFixes;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mPlaces = Fixtures.places(placeCount);
+        mSelection = newSelection();
+        mFixes = Fixtures.walk(FIXES, 200);
+    }
+
+    /**
+     * The places changed: everything is built again
+     */
+    @Benchmark
+    public Map<String, String> buildAndSelect() {
+        GeofenceSelection selection = newSelection();
+        int fix = nextFix();
+        selection.selectNearest(mFixes[0][fix], mFixes[1][fix], ACCURACY);
+        return selection.getSignatures();
+    }
+
+    /**
+     * The device moved: only the selection is made again
+     */
+    @Benchmark
+    public Map<String, String> reselect() {
+        int fix = nextFix();
+        mSelection.selectNearest(mFixes[0][fix], mFixes[1][fix], ACCURACY);
+        return mSelection.getSignatures();
+    }
+
+    private GeofenceSelection newSelection() {
+        return new GeofenceSelection(
+                mPlaces,
+                SimulatedGeofenceBackend.MAX_GEOFENCES,
+                new FenceTuning(RADIUS, HysteresisConfig.DEFAULT),
+                TIMEOUT,
+                RESELECT_DISTANCE
+        );
+    }
+
+    private int nextFix() {
+        mNext = (mNext + 1) & (FIXES - 1);
+        return mNext;
+    }
+}
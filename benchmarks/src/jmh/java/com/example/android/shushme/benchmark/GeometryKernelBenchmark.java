@@ -0,0 +1,121 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.geo.GeometryKernel;
+import com.example.android.shushme.geo.PlaceSpatialIndex;
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch queries of a single location fix against every place: containment, distances and
+ * nearest-K, with the k-d tree's nearest-K for comparison. The target is a fix against 100k
+ * places in well under a millisecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeometryKernelBenchmark {
+
+    private static final int K = 100;
+    private static final int FIXES = 1024;
+
+    @Param({"1000", "100000"})
+    public int placeCount;
+
+    private GeometryKernel mKernel;
+    private PlaceSpatialIndex mIndex;
+    private double[][] mFixes;
+    private int mNext;
+
+    private int[] mIndices;
+    private double[] mMeters;
+    private double[] mDistances;
+    private boolean[] mInside;
+
+    @Setup
+    public void setUp() {
+        List<PlaceSnapshot> places = Fixtures.places(placeCount);
+        double[] latitudes = new double[placeCount];
+        double[] longitudes = new double[placeCount];
+        float[] radii = new float[placeCount];
+        for (int i = 0; i < placeCount; i++) {
+            latitudes[i] = places.get(i).getLatitude();
+            longitudes[i] = places.get(i).getLongitude();
+            radii[i] = 50 + i % 8 * 25;
+        }
+        mKernel = GeometryKernel.of(latitudes, longitudes, radii, placeCount);
+        mIndex = new PlaceSpatialIndex(latitudes, longitudes, placeCount);
+        mFixes = Fixtures.walk(FIXES, 200);
+
+        mIndices = new int[placeCount];
+        mMeters = new double[K];
+        mDistances = new double[placeCount];
+        mInside = new boolean[placeCount];
+    }
+
+    @Benchmark
+    public int containing() {
+        int fix = nextFix();
+        return mKernel.containing(mFixes[0][fix], mFixes[1][fix], mIndices);
+    }
+
+    @Benchmark
+    public boolean[] containment() {
+        int fix = nextFix();
+        mKernel.containment(mFixes[0][fix], mFixes[1][fix], mInside);
+        return mInside;
+    }
+
+    @Benchmark
+    public double[] distances() {
+        int fix = nextFix();
+        mKernel.distances(mFixes[0][fix], mFixes[1][fix], mDistances);
+        return mDistances;
+    }
+
+    @Benchmark
+    public int nearestScan() {
+        int fix = nextFix();
+        return mKernel.nearest(mFixes[0][fix], mFixes[1][fix], K, mIndices, mMeters);
+    }
+
+    @Benchmark
+    public int nearestTree() {
+        int fix = nextFix();
+        return mIndex.nearest(mFixes[0][fix], mFixes[1][fix], K, mIndices, mMeters);
+    }
+
+    private int nextFix() {
+        mNext = (mNext + 1) & (FIXES - 1);
+        return mNext;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.metrics.Counter;
+import com.example.android.shushme.metrics.LatencyHistogram;
+import com.example.android.shushme.metrics.MetricsRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the instrumentation costs the paths it measures: recording a latency and bumping
+ * a counter, also with threads contending for them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private LatencyHistogram mHistogram;
+    private Counter mCounter;
+    private long mValue;
+
+    @Setup
+    public void setUp() {
+        MetricsRegistry registry = new MetricsRegistry();
+        mHistogram = registry.histogram("benchmark_us");
+        mCounter = registry.counter("benchmark");
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        // Spreads the values over the buckets
+        mValue = (mValue * 31 + 7) & 0xfffff;
+        mHistogram.record(mValue);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLatencyContended() {
+        mHistogram.recordSince(System.nanoTime() - 1000);
+    }
+
+    @Benchmark
+    public void incrementCounter() {
+        mCounter.increment();
+    }
+}
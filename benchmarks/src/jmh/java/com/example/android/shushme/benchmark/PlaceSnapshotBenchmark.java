@@ -0,0 +1,170 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the places table into PlaceSnapshots, copies them and compares them with a previous
+ * read, as PlaceCache and PlacesRefresher do on every refresh.
+ * <p>
+ * The rows come from a RowCursor, so the Android cursor itself isn't measured: only what
+ * the mapping code does with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaceSnapshotBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    public int placeCount;
+
+    private RowCursor mCursor;
+    private List<PlaceSnapshot> mPlaces;
+    private List<PlaceSnapshot> mPrevious;
+
+    @Setup
+    public void setUp() {
+        mPlaces = Fixtures.places(placeCount);
+        mCursor = new RowCursor(mPlaces);
+        // The previous read differs in a single place
+        mPrevious = copy(mPlaces);
+        PlaceSnapshot last = mPrevious.get(placeCount - 1);
+        mPrevious.set(placeCount - 1, new PlaceSnapshot(
+                last.getPlaceId(),
+                last.getName(),
+                last.getAddress(),
+                last.getLatitude(),
+                last.getLongitude(),
+                last.getRadius(),
+                !last.isEnabled(),
+                last.getSize(),
+                last.getResponsiveness(),
+                last.getLoiteringDelay()
+        ));
+    }
+
+    /**
+     * Looks every column up on every row, as PlaceCache.toSnapshot() does
+     */
+    @Benchmark
+    public List<PlaceSnapshot> mapRowsLookingUpColumns() {
+        List<PlaceSnapshot> places = new ArrayList<>(mCursor.getCount());
+        mCursor.moveToPosition(-1);
+        while (mCursor.moveToNext()) {
+            places.add(new PlaceSnapshot(
+                    mCursor.getString(mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_ID)),
+                    mCursor.getString(mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_NAME)),
+                    mCursor.getString(mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_ADDRESS)),
+                    mCursor.getDouble(mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_LATITUDE)),
+                    mCursor.getDouble(mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_LONGITUDE)),
+                    mCursor.getFloat(mCursor.getColumnIndex(RowCursor.COLUMN_RADIUS)),
+                    mCursor.getInt(mCursor.getColumnIndex(RowCursor.COLUMN_ENABLED)) != 0,
+                    mCursor.getFloat(mCursor.getColumnIndex(RowCursor.COLUMN_SIZE)),
+                    mCursor.getInt(mCursor.getColumnIndex(RowCursor.COLUMN_RESPONSIVENESS)),
+                    mCursor.getInt(mCursor.getColumnIndex(RowCursor.COLUMN_LOITERING_DELAY))
+            ));
+        }
+        return places;
+    }
+
+    /**
+     * Looks the columns up once per read
+     */
+    @Benchmark
+    public List<PlaceSnapshot> mapRowsWithCachedColumns() {
+        int placeIdIndex = mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_ID);
+        int nameIndex = mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_NAME);
+        int addressIndex = mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_ADDRESS);
+        int latitudeIndex = mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_LATITUDE);
+        int longitudeIndex = mCursor.getColumnIndex(RowCursor.COLUMN_PLACE_LONGITUDE);
+        int radiusIndex = mCursor.getColumnIndex(RowCursor.COLUMN_RADIUS);
+        int enabledIndex = mCursor.getColumnIndex(RowCursor.COLUMN_ENABLED);
+        int sizeIndex = mCursor.getColumnIndex(RowCursor.COLUMN_SIZE);
+        int responsivenessIndex = mCursor.getColumnIndex(RowCursor.COLUMN_RESPONSIVENESS);
+        int loiteringDelayIndex = mCursor.getColumnIndex(RowCursor.COLUMN_LOITERING_DELAY);
+
+        List<PlaceSnapshot> places = new ArrayList<>(mCursor.getCount());
+        mCursor.moveToPosition(-1);
+        while (mCursor.moveToNext()) {
+            places.add(new PlaceSnapshot(
+                    mCursor.getString(placeIdIndex),
+                    mCursor.getString(nameIndex),
+                    mCursor.getString(addressIndex),
+                    mCursor.getDouble(latitudeIndex),
+                    mCursor.getDouble(longitudeIndex),
+                    mCursor.getFloat(radiusIndex),
+                    mCursor.getInt(enabledIndex) != 0,
+                    mCursor.getFloat(sizeIndex),
+                    mCursor.getInt(responsivenessIndex),
+                    mCursor.getInt(loiteringDelayIndex)
+            ));
+        }
+        return places;
+    }
+
+    /**
+     * Copies every place, as PlaceCache.copyAndRelease() does with a PlaceBuffer
+     */
+    @Benchmark
+    public List<PlaceSnapshot> copySnapshots() {
+        return copy(mPlaces);
+    }
+
+    /**
+     * Compares a read with the previous one, to tell whether the geofences must be updated
+     */
+    @Benchmark
+    public boolean diffSnapshots() {
+        return mPlaces.equals(mPrevious);
+    }
+
+    private static List<PlaceSnapshot> copy(List<PlaceSnapshot> places) {
+        List<PlaceSnapshot> copies = new ArrayList<>(places.size());
+        for (PlaceSnapshot place : places) {
+            copies.add(new PlaceSnapshot(
+                    place.getPlaceId(),
+                    place.getName(),
+                    place.getAddress(),
+                    place.getLatitude(),
+                    place.getLongitude(),
+                    place.getRadius(),
+                    place.isEnabled(),
+                    place.getSize(),
+                    place.getResponsiveness(),
+                    place.getLoiteringDelay()
+            ));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.schedule.TimeWindow;
+import com.example.android.shushme.transfer.PlaceFormat;
+import com.example.android.shushme.transfer.PlaceReader;
+import com.example.android.shushme.transfer.PlaceRecord;
+import com.example.android.shushme.transfer.PlaceWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and writes a file of places in each format, as an import or export does, minus
+ * the database. The files live in memory, so only the formats themselves are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaceTransferBenchmark {
+
+    @Param({"CSV", "JSON", "BINARY"})
+    public PlaceFormat format;
+
+    @Param({"1000", "10000"})
+    public int placeCount;
+
+    private List<PlaceRecord> mRecords;
+    private byte[] mFile;
+    private ByteArrayOutputStream mOutput;
+
+    @Setup
+    public void setUp() throws IOException {
+        // A third of the places have a weekday schedule
+        List<TimeWindow> weekdays = Arrays.asList(new TimeWindow(0x3e, 9 * 60, 17 * 60 + 30));
+        mRecords = new ArrayList<>(placeCount);
+        for (PlaceSnapshot place : Fixtures.places(placeCount)) {
+            mRecords.add(new PlaceRecord(place, mRecords.size() % 3 == 0
+                    ? weekdays
+                    : Collections.<TimeWindow>emptyList()));
+        }
+
+        mOutput = new ByteArrayOutputStream();
+        write();
+        mFile = mOutput.toByteArray();
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        PlaceReader reader = PlaceFormat.detect(Channels.newChannel(new ByteArrayInputStream(mFile)));
+        int count = 0;
+        while (reader.read() != null) count++;
+        return count;
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        mOutput.reset();
+        PlaceWriter writer = format.newWriter(Channels.newChannel(mOutput));
+        for (PlaceRecord record : mRecords) {
+            writer.write(record);
+        }
+        writer.finish();
+        return mOutput.size();
+    }
+}
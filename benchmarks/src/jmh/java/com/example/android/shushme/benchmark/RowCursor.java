@@ -0,0 +1,122 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.model.PlaceSnapshot;
+
+import java.util.List;
+
+/**
+ * Stands in for a cursor over the places table: the rows are kept column by column, and
+ * getColumnIndex() scans the column names the way AbstractCursor does.
+ */
+final class RowCursor {
+
+    // The columns of the places table (see PlaceContract), in the order the database returns them
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_PLACE_ID = "placeID";
+    static final String COLUMN_PLACE_NAME = "name";
+    static final String COLUMN_PLACE_ADDRESS = "address";
+    static final String COLUMN_PLACE_LATITUDE = "latitude";
+    static final String COLUMN_PLACE_LONGITUDE = "longitude";
+    static final String COLUMN_FETCHED_AT = "fetchedAt";
+    static final String COLUMN_RADIUS = "radius";
+    static final String COLUMN_ENABLED = "enabled";
+    static final String COLUMN_SIZE = "size";
+    static final String COLUMN_RESPONSIVENESS = "responsiveness";
+    static final String COLUMN_LOITERING_DELAY = "loiteringDelay";
+
+    private final String[] mColumnNames = {
+            COLUMN_ID,
+            COLUMN_PLACE_ID,
+            COLUMN_PLACE_NAME,
+            COLUMN_PLACE_ADDRESS,
+            COLUMN_PLACE_LATITUDE,
+            COLUMN_PLACE_LONGITUDE,
+            COLUMN_FETCHED_AT,
+            COLUMN_RADIUS,
+            COLUMN_ENABLED,
+            COLUMN_SIZE,
+            COLUMN_RESPONSIVENESS,
+            COLUMN_LOITERING_DELAY
+    };
+
+    private final int mCount;
+    private final String[][] mStrings;
+    private final double[][] mNumbers;
+    private int mPosition = -1;
+
+    RowCursor(List<PlaceSnapshot> places) {
+        mCount = places.size();
+        mStrings = new String[mColumnNames.length][mCount];
+        mNumbers = new double[mColumnNames.length][mCount];
+        for (int i = 0; i < mCount; i++) {
+            PlaceSnapshot place = places.get(i);
+            mNumbers[0][i] = i + 1;
+            mStrings[1][i] = place.getPlaceId();
+            mStrings[2][i] = place.getName();
+            mStrings[3][i] = place.getAddress();
+            mNumbers[4][i] = place.getLatitude();
+            mNumbers[5][i] = place.getLongitude();
+            mNumbers[6][i] = 1500000000000L + i;
+            mNumbers[7][i] = place.getRadius();
+            mNumbers[8][i] = place.isEnabled() ? 1 : 0;
+            mNumbers[9][i] = place.getSize();
+            mNumbers[10][i] = place.getResponsiveness();
+            mNumbers[11][i] = place.getLoiteringDelay();
+        }
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    boolean moveToPosition(int position) {
+        mPosition = Math.max(-1, Math.min(position, mCount));
+        return mPosition >= 0 && mPosition < mCount;
+    }
+
+    boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    int getColumnIndex(String columnName) {
+        for (int i = 0; i < mColumnNames.length; i++) {
+            if (mColumnNames[i].equalsIgnoreCase(columnName)) return i;
+        }
+        return -1;
+    }
+
+    String getString(int columnIndex) {
+        return mStrings[columnIndex][mPosition];
+    }
+
+    double getDouble(int columnIndex) {
+        return mNumbers[columnIndex][mPosition];
+    }
+
+    float getFloat(int columnIndex) {
+        return (float) mNumbers[columnIndex][mPosition];
+    }
+
+    int getInt(int columnIndex) {
+        return (int) mNumbers[columnIndex][mPosition];
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.android.shushme.benchmark;
+
+/**
+ * Part of the Udacity-Google Advanced Android App Development course.
+ * <p>
+ * The base example code belongs to The Android Open Source Project under the Apache 2.0 licence
+ * All code further implemented as part of the course is under the same licence.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.example.android.shushme.fence.FenceSpec;
+import com.example.android.shushme.fence.GeofenceBackend;
+import com.example.android.shushme.fence.PlaceFences;
+import com.example.android.shushme.fence.SimulatedGeofenceBackend;
+import com.example.android.shushme.model.PlaceSnapshot;
+import com.example.android.shushme.transition.HysteresisConfig;
+import com.example.android.shushme.transition.RingerStateMachine;
+import com.example.android.shushme.transition.TransitionPipeline;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles geofence transitions: the pipeline on its own (as GeofenceBroadcastReceived runs
+ * it), and the simulated backend feeding it location fixes.
+ * <p>
+ * The flip benchmarks park the device at the edge of a place with GPS jitter, and count how
+ * often the ringer would be switched, with and without hysteresis.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransitionBenchmark {
+
+    private static final int FENCES = 50;
+    private static final int FIXES = 4096;
+    private static final float RADIUS = 100;
+    // One fix a second
+    private static final long FIX_INTERVAL = 1000;
+
+    @Param({"none", "default"})
+    public String hysteresis;
+
+    private HysteresisConfig mHysteresis;
+    private List<String> mEntered;
+    private List<String> mExited;
+    private long mNow;
+
+    private TransitionPipeline mPipeline;
+    private SimulatedGeofenceBackend mBackend;
+    private double[][] mWalk;
+    private double[][] mJitter;
+    private PlaceSnapshot mParkedPlace;
+
+    /**
+     * Counts the ringer switches of the flip benchmarks
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Flips {
+        public long flips;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            flips = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mHysteresis = "none".equals(hysteresis)
+                ? new HysteresisConfig(0, 1f, 0)
+                : HysteresisConfig.DEFAULT;
+        mEntered = Collections.singletonList(Fixtures.placeId(0));
+        mExited = Collections.singletonList(mHysteresis.hasExitFence()
+                ? HysteresisConfig.exitFenceId(Fixtures.placeId(0))
+                : Fixtures.placeId(0));
+        mWalk = Fixtures.walk(FIXES, 20);
+        // Parked right on the boundary, fixes off by up to 15 meters
+        mJitter = Fixtures.jitter(FIXES, RADIUS, 15);
+        mParkedPlace = new PlaceSnapshot(Fixtures.placeId(0), "Parked", null,
+                Fixtures.CENTER_LATITUDE, Fixtures.CENTER_LONGITUDE, RADIUS, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        mNow = 0;
+        mPipeline = new TransitionPipeline(
+                Collections.<String>emptyList(),
+                mHysteresis.getDebounceWindow(),
+                new HashMap<String, Long>()
+        );
+        mBackend = newBackend(Fixtures.places(FENCES), new SimulatedGeofenceBackend.TransitionListener() {
+            @Override
+            public void onTransition(int transition, List<String> requestIds, long time) {
+                mPipeline.onTransition(transition, requestIds, time);
+            }
+        });
+    }
+
+    /**
+     * A single place entered and left again, each exit held back and then flushed
+     */
+    @Benchmark
+    public int pipelineEnterExit() {
+        mNow += FIX_INTERVAL;
+        int action = mPipeline.onTransition(RingerStateMachine.TRANSITION_ENTER, mEntered, mNow);
+        mPipeline.onTransition(RingerStateMachine.TRANSITION_EXIT, mExited, mNow);
+        return action + mPipeline.flush(mNow + mHysteresis.getDebounceWindow());
+    }
+
+    /**
+     * A walk through the places, each fix checked against every fence
+     */
+    @Benchmark
+    @OperationsPerInvocation(FIXES)
+    public boolean backendWalk() {
+        double[] latitudes = mWalk[0];
+        double[] longitudes = mWalk[1];
+        for (int i = 0; i < FIXES; i++) {
+            mNow += FIX_INTERVAL;
+            mBackend.onLocation(latitudes[i], longitudes[i], mNow);
+            if (mPipeline.getNextDeadline() <= mNow) mPipeline.flush(mNow);
+        }
+        return mPipeline.isOccupied();
+    }
+
+    /**
+     * The device parked on the boundary of a place, from a fresh registration
+     */
+    @Benchmark
+    @OperationsPerInvocation(FIXES)
+    public int boundaryFlips(final Flips flips) {
+        final TransitionPipeline pipeline = new TransitionPipeline(
+                Collections.<String>emptyList(),
+                mHysteresis.getDebounceWindow(),
+                new HashMap<String, Long>()
+        );
+        SimulatedGeofenceBackend backend = newBackend(Collections.singletonList(mParkedPlace),
+                new SimulatedGeofenceBackend.TransitionListener() {
+                    @Override
+                    public void onTransition(int transition, List<String> requestIds, long time) {
+                        if (pipeline.onTransition(transition, requestIds, time)
+                                != RingerStateMachine.ACTION_NONE) {
+                            flips.flips++;
+                        }
+                    }
+                });
+
+        double[] latitudes = mJitter[0];
+        double[] longitudes = mJitter[1];
+        long now = 0;
+        for (int i = 0; i < FIXES; i++) {
+            now += FIX_INTERVAL;
+            backend.onLocation(latitudes[i], longitudes[i], now);
+            if (pipeline.getNextDeadline() <= now
+                    && pipeline.flush(now) != RingerStateMachine.ACTION_NONE) {
+                flips.flips++;
+            }
+        }
+        return backend.getGeofenceCount();
+    }
+
+    private SimulatedGeofenceBackend newBackend(List<PlaceSnapshot> places,
+                                                SimulatedGeofenceBackend.TransitionListener listener) {
+        SimulatedGeofenceBackend backend = new SimulatedGeofenceBackend(listener);
+        List<FenceSpec> fences = new ArrayList<>();
+        for (PlaceSnapshot place : places) {
+            fences.addAll(PlaceFences.build(place, RADIUS, mHysteresis.getLoiteringDelay(), 0,
+                    FenceSpec.NEVER_EXPIRE, mHysteresis));
+        }
+        backend.addGeofences(fences, PlaceFences.getInitialTrigger(),
+                new GeofenceBackend.Callback() {
+                    @Override
+                    public void onResult(int statusCode) {
+                        if (statusCode != GeofenceBackend.STATUS_SUCCESS) {
+                            throw new IllegalStateException("Failed to add the fences: " + statusCode);
+                        }
+                    }
+                });
+        return backend;
+    }
+}